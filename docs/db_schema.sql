@@ -27,5 +27,56 @@ CREATE TABLE IF NOT EXISTS appointments (
 -- Add user_id to existing appointments if table already exists
 ALTER TABLE appointments ADD COLUMN IF NOT EXISTS user_id INTEGER REFERENCES users(id);
 
+-- Idempotency key for bookings sent from a client's outbox; retries upsert on it
+ALTER TABLE appointments ADD COLUMN IF NOT EXISTS client_ref UUID;
+CREATE UNIQUE INDEX IF NOT EXISTS appointments_client_ref_key ON appointments (client_ref);
+
+-- Tombstones for deleted appointments, read by clients doing incremental sync
+CREATE TABLE IF NOT EXISTS appointment_deletions (
+  id BIGSERIAL PRIMARY KEY,
+  appointment_id INTEGER NOT NULL,
+  deleted_at TIMESTAMPTZ DEFAULT NOW()
+);
+
+CREATE OR REPLACE FUNCTION record_appointment_deletion() RETURNS TRIGGER AS $$
+BEGIN
+  INSERT INTO appointment_deletions (appointment_id) VALUES (OLD.id);
+  RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS appointments_record_deletion ON appointments;
+CREATE TRIGGER appointments_record_deletion
+  AFTER DELETE ON appointments
+  FOR EACH ROW EXECUTE FUNCTION record_appointment_deletion();
+
+-- Push appointment changes to open dashboards through Supabase Realtime
+ALTER PUBLICATION supabase_realtime ADD TABLE appointments;
+
+-- Change token: bumped once per statement that writes to appointments, read by
+-- clients through rpc/appointments_change_token to skip syncs when nothing changed
+CREATE TABLE IF NOT EXISTS table_versions (
+  table_name TEXT PRIMARY KEY,
+  version BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO table_versions (table_name) VALUES ('appointments') ON CONFLICT DO NOTHING;
+
+CREATE OR REPLACE FUNCTION bump_table_version() RETURNS TRIGGER AS $$
+BEGIN
+  UPDATE table_versions SET version = version + 1 WHERE table_name = TG_TABLE_NAME;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS appointments_bump_version ON appointments;
+CREATE TRIGGER appointments_bump_version
+  AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON appointments
+  FOR EACH STATEMENT EXECUTE FUNCTION bump_table_version();
+
+CREATE OR REPLACE FUNCTION appointments_change_token() RETURNS BIGINT AS $$
+  SELECT version FROM table_versions WHERE table_name = 'appointments';
+$$ LANGUAGE sql STABLE;
+
 -- Note: Sample data has been removed. You'll need to register users through the application
 -- to ensure passwords are properly hashed and salted. 
\ No newline at end of file
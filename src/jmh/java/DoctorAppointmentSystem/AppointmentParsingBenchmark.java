@@ -0,0 +1,58 @@
+package DoctorAppointmentSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding an appointments response body, as done for every page and every
+ * full load. The body is already in memory, so this measures the parser alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class AppointmentParsingBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private byte[] body;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        body = BenchmarkData.appointmentsJson(rows);
+    }
+
+    // Rows handed straight to a consumer, as the paged loader does
+    @Benchmark
+    public void stream(Blackhole blackhole) throws IOException {
+        DatabaseService.readAppointments(new ByteArrayInputStream(body), blackhole::consume);
+    }
+
+    // Rows collected into a list, as a full load does
+    @Benchmark
+    public List<Appointment> collect() throws IOException {
+        List<Appointment> appointments = new ArrayList<>();
+        DatabaseService.readAppointments(new ByteArrayInputStream(body), appointments::add);
+        return appointments;
+    }
+}
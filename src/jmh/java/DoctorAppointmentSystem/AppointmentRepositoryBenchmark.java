@@ -0,0 +1,90 @@
+package DoctorAppointmentSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The local stores on the operations a dashboard performs: a patient's
+ * appointments, the whole table, and a booking. The embedded store's
+ * booking includes the fsync of its journal, so it shows what the disk
+ * costs; the in-memory store is the floor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class AppointmentRepositoryBenchmark {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"memory", "embedded"})
+    public String store;
+
+    private Path directory;
+    private AppointmentRepository repository;
+    private String patientName;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (store.equals("embedded")) {
+            directory = Files.createTempDirectory("appointment-store");
+            repository = EmbeddedAppointmentRepository.open(directory.resolve("appointments.store"));
+        } else {
+            repository = new InMemoryAppointmentRepository("memory");
+        }
+        List<Appointment> appointments = BenchmarkData.appointments(rows);
+        for (int from = 0; from < appointments.size(); from += 1000) {
+            repository.insertAppointmentBatchAsync(
+                    appointments.subList(from, Math.min(appointments.size(), from + 1000)), null).join();
+        }
+        patientName = appointments.get(rows / 2).getPatientName();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (repository instanceof EmbeddedAppointmentRepository) {
+            ((EmbeddedAppointmentRepository) repository).close().join();
+            Files.deleteIfExists(directory.resolve("appointments.store"));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    @Benchmark
+    public int readPatientAppointments(Blackhole blackhole) {
+        return repository.fetchAppointmentPagesAsync(0, 1000, patientName, blackhole::consume).join();
+    }
+
+    @Benchmark
+    public List<Appointment> readAllAppointments() {
+        return repository.getAllAppointmentsAsync().join();
+    }
+
+    @Benchmark
+    public List<Appointment> bookAppointment() {
+        Appointment booking = new Appointment(patientName, BenchmarkData.ANCHOR_DATE.toString());
+        booking.setClientRef(UUID.randomUUID().toString());
+        return repository.upsertAppointmentBatchAsync(List.of(booking)).join();
+    }
+}
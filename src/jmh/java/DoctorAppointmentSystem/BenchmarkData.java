@@ -0,0 +1,62 @@
+package DoctorAppointmentSystem;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic datasets for the benchmarks. Everything is derived from a fixed
+ * seed and a fixed anchor date, so two runs (or two machines) measure exactly
+ * the same input.
+ */
+final class BenchmarkData {
+
+    static final long SEED = 20250601L;
+
+    // "Today" as far as the benchmarks are concerned
+    static final LocalDate ANCHOR_DATE = LocalDate.of(2025, 6, 15);
+
+    // Appointments are spread over this many days either side of the anchor
+    private static final int DAY_SPREAD = 365;
+
+    private BenchmarkData() {
+    }
+
+    // Roughly four appointments per patient, like a clinic with regular visitors
+    static List<Appointment> appointments(int rows) {
+        Random random = new Random(SEED);
+        int patients = Math.max(1, rows / 4);
+        List<Appointment> appointments = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            String patientName = patientName(random.nextInt(patients));
+            LocalDate date = ANCHOR_DATE.plusDays(random.nextInt(2 * DAY_SPREAD + 1) - DAY_SPREAD);
+            appointments.add(new Appointment(i + 1, patientName, date.toString()));
+        }
+        return appointments;
+    }
+
+    /**
+     * The same rows as {@link #appointments}, encoded the way PostgREST returns
+     * them from {@code select=*}, including the columns the client skips.
+     */
+    static byte[] appointmentsJson(int rows) {
+        Random random = new Random(SEED + 1);
+        JsonWriter json = new JsonWriter(new StringBuilder(rows * 128)).beginArray();
+        for (Appointment appointment : appointments(rows)) {
+            json.beginObject()
+                .name("id").value(appointment.getId())
+                .name("patient_name").value(appointment.getPatientName())
+                .name("appointment_date").value(appointment.getDate())
+                .name("user_id").value(1 + random.nextInt(1000))
+                .name("created_at").value(appointment.getDate() + "T09:" + (10 + random.nextInt(50)) + ":00.000000+00:00")
+                .endObject();
+        }
+        return json.endArray().toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String patientName(int patient) {
+        return "Patient " + patient;
+    }
+}
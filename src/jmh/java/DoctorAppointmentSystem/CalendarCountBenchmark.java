@@ -0,0 +1,60 @@
+package DoctorAppointmentSystem;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-day counts the calendar draws for a month, plus the one-off cost of
+ * building the date index they come from. Uses javafx.base collections only,
+ * so no toolkit is started.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class CalendarCountBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private List<Appointment> appointments;
+    private AppointmentIndex index;
+    private YearMonth month;
+
+    @Setup
+    public void setUp() {
+        appointments = BenchmarkData.appointments(rows);
+        index = new AppointmentIndex(FXCollections.observableArrayList(appointments));
+        month = YearMonth.from(BenchmarkData.ANCHOR_DATE);
+    }
+
+    // What the calendar pays each time it is redrawn
+    @Benchmark
+    public int[] countsForMonth() {
+        return index.countsForMonth(month);
+    }
+
+    // What the calendar pays when it opens on a fresh load
+    @Benchmark
+    public AppointmentIndex buildIndex() {
+        ObservableList<Appointment> source = FXCollections.observableArrayList(appointments);
+        return new AppointmentIndex(source);
+    }
+}
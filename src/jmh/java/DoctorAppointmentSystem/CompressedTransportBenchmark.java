@@ -0,0 +1,136 @@
+package DoctorAppointmentSystem;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * End-to-end full-table read through DatabaseService against a local
+ * PostgREST-like stand-in, with and without gzip, over an uplink throttled
+ * to a clinic-like bandwidth. The bytes each variant puts on the wire are
+ * printed at setup, since they do not vary between runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms1g", "-Xmx1g"})
+public class CompressedTransportBenchmark {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    // What the server sends: identity ignores Accept-Encoding, as a server without compression would
+    @Param({"identity", "gzip"})
+    public String encoding;
+
+    // Simulated downlink to the clinic in megabits per second; 0 for loopback speed
+    @Param({"0", "20"})
+    public int megabitsPerSecond;
+
+    private HttpServer server;
+    private DatabaseService databaseService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] plain = BenchmarkData.appointmentsJson(rows);
+        byte[] body = encoding.equals("gzip") ? gzip(plain) : plain;
+        System.out.printf("%n%d rows: %d bytes as JSON, %d bytes on the wire (%s)%n",
+                rows, plain.length, body.length, encoding);
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/rest/v1/appointments", exchange -> respond(exchange, body));
+        // No change token, so every read downloads the table
+        server.createContext("/rest/v1/rpc/", exchange -> {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        });
+        server.start();
+
+        databaseService = DatabaseService.getInstance(
+                "http://127.0.0.1:" + server.getAddress().getPort(), "benchmark-key");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Benchmark
+    public List<Appointment> readAllAppointments() {
+        return databaseService.getAllAppointmentsAsync().join();
+    }
+
+    private void respond(HttpExchange exchange, byte[] body) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (encoding.equals("gzip")) {
+            if (accepted == null || !accepted.contains("gzip")) {
+                throw new IOException("Client did not ask for gzip");
+            }
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            writeThrottled(out, body);
+        }
+    }
+
+    // Writes in 16 KB slices, pausing so the average rate matches the simulated link
+    private void writeThrottled(OutputStream out, byte[] body) throws IOException {
+        if (megabitsPerSecond == 0) {
+            out.write(body);
+            return;
+        }
+        long bytesPerSecond = megabitsPerSecond * 1_000_000L / 8;
+        long start = System.nanoTime();
+        int slice = 16 * 1024;
+        for (int offset = 0; offset < body.length; offset += slice) {
+            int length = Math.min(slice, body.length - offset);
+            out.write(body, offset, length);
+            long due = start + (offset + length) * 1_000_000_000L / bytesPerSecond;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+        }
+    }
+
+    private static byte[] gzip(byte[] plain) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(plain.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(plain);
+        }
+        return compressed.toByteArray();
+    }
+}
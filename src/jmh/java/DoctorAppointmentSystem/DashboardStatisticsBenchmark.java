@@ -0,0 +1,60 @@
+package DoctorAppointmentSystem;
+
+import javafx.collections.FXCollections;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The aggregation behind the admin dashboard cards and monthly chart: a full
+ * pass over a list or columns, against reading the running totals.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = {"-Xms2g", "-Xmx2g"})
+public class DashboardStatisticsBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int rows;
+
+    private List<Appointment> appointments;
+    private AppointmentColumns columns;
+    private AppointmentAnalytics analytics;
+
+    @Setup
+    public void setUp() {
+        appointments = BenchmarkData.appointments(rows);
+        columns = AppointmentColumns.of(appointments);
+        analytics = new AppointmentAnalytics(FXCollections.observableArrayList(appointments));
+    }
+
+    @Benchmark
+    public AppointmentStatistics compute() {
+        return AppointmentStatistics.of(appointments, BenchmarkData.ANCHOR_DATE);
+    }
+
+    @Benchmark
+    public AppointmentStatistics computeFromColumns() {
+        return AppointmentStatistics.of(columns, BenchmarkData.ANCHOR_DATE);
+    }
+
+    // What a dashboard refresh costs now that the totals are kept up to date as rows change
+    @Benchmark
+    public AppointmentStatistics snapshotFromAnalytics() {
+        return analytics.snapshot(BenchmarkData.ANCHOR_DATE);
+    }
+}
@@ -0,0 +1,339 @@
+package DoctorAppointmentSystem;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates many front desks using the system at once, without the UI.
+ * Each session logs in, then books, refreshes and cancels appointments in
+ * a configurable mix through an {@link AppointmentRepository}, the same
+ * calls the dashboard makes. The report gives throughput and latency
+ * percentiles per operation.
+ *
+ * Sessions follow a schedule: operations arrive at random (Poisson)
+ * intervals around the configured rate. A desk still waits for one
+ * operation before starting the next, so when the system stalls the
+ * following operations start late. Latency is measured from when each
+ * operation was due, not from when it was sent, so the waiting counts
+ * against the system. Measuring from the send time instead would
+ * coordinate with the stall and hide it (coordinated omission); that
+ * service time is reported alongside for comparison.
+ */
+public class LoadGenerator {
+
+    private static final String[] OPERATIONS = {"login", "book", "refresh", "cancel"};
+
+    // Registrations in flight at once; each hashes a password, and the hashing queue turns away more than 64
+    private static final int REGISTRATION_CONCURRENCY = 16;
+
+    private final AppointmentRepository repository;
+    private int sessions = 50;
+    private double ratePerSession = 1.0;
+    private long warmupMillis = 10_000;
+    private long durationMillis = 60_000;
+    private int bookWeight = 60;
+    private int refreshWeight = 30;
+    private int cancelWeight = 10;
+    private long seed = 1;
+
+    public LoadGenerator(AppointmentRepository repository) {
+        this.repository = repository;
+    }
+
+    public void setSessions(int sessions) {
+        this.sessions = sessions;
+    }
+
+    // Average operations per second each session attempts
+    public void setRatePerSession(double ratePerSession) {
+        this.ratePerSession = ratePerSession;
+    }
+
+    // Operations due before the warmup ends are run but not recorded
+    public void setWarmup(long warmupMillis) {
+        this.warmupMillis = warmupMillis;
+    }
+
+    // How long operations are recorded for, after the warmup
+    public void setDuration(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    // Relative weights of the operations after login; a cancel with nothing to cancel books instead
+    public void setMix(int book, int refresh, int cancel) {
+        this.bookWeight = book;
+        this.refreshWeight = refresh;
+        this.cancelWeight = cancel;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // What one run measured, per operation
+    public static class Result {
+        private final Map<String, LatencyHistogram> latency = new LinkedHashMap<>();
+        private final Map<String, LatencyHistogram> serviceTime = new LinkedHashMap<>();
+        private final Map<String, Long> errors = new LinkedHashMap<>();
+        private final long measuredNanos;
+
+        Result(long measuredNanos) {
+            this.measuredNanos = measuredNanos;
+            for (String operation : OPERATIONS) {
+                latency.put(operation, new LatencyHistogram());
+                serviceTime.put(operation, new LatencyHistogram());
+                errors.put(operation, 0L);
+            }
+        }
+
+        // Latency from when the operation was due, corrected for coordinated omission
+        public LatencyHistogram getLatency(String operation) {
+            return latency.get(operation);
+        }
+
+        // Latency from when the operation was actually sent
+        public LatencyHistogram getServiceTime(String operation) {
+            return serviceTime.get(operation);
+        }
+
+        public synchronized long getErrors(String operation) {
+            return errors.get(operation);
+        }
+
+        synchronized void recordError(String operation) {
+            errors.merge(operation, 1L, Long::sum);
+        }
+
+        public void print(PrintStream out) {
+            double seconds = measuredNanos / 1e9;
+            out.printf(Locale.ROOT, "%-8s %8s %7s %9s %9s %9s %9s %9s %12s%n",
+                    "op", "count", "errors", "ops/s", "p50 ms", "p95 ms", "p99 ms", "max ms", "p99 sent ms");
+            for (String operation : OPERATIONS) {
+                LatencyHistogram histogram = latency.get(operation);
+                out.printf(Locale.ROOT, "%-8s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f %12.2f%n",
+                        operation, histogram.getCount(), getErrors(operation), histogram.getCount() / seconds,
+                        millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(95)),
+                        millis(histogram.getValueAtPercentile(99)), millis(histogram.getMax()),
+                        millis(serviceTime.get(operation).getValueAtPercentile(99)));
+            }
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+
+    // One simulated front desk; only touched by the operation it is waiting on
+    private class Session {
+        final int number;
+        final Random random;
+        final List<Appointment> booked = new ArrayList<>();
+        final CompletableFuture<Void> finished = new CompletableFuture<>();
+        User user;
+        long due;
+        int bookings;
+
+        Session(int number) {
+            this.number = number;
+            this.random = new Random(seed * 1_000_003L + number);
+        }
+
+        String username() {
+            return "load-desk-" + number;
+        }
+    }
+
+    /**
+     * Registers the session users if needed, runs the sessions for the
+     * warmup plus the duration, waits for the last operations to finish and
+     * returns what was measured. Sessions start one after another across
+     * the warmup, so their logins do not all wait on password hashing at
+     * the same moment.
+     */
+    public Result run() {
+        List<Session> all = new ArrayList<>(sessions);
+        List<CompletableFuture<Boolean>> registrations = new ArrayList<>(sessions);
+        Semaphore inFlight = new Semaphore(REGISTRATION_CONCURRENCY);
+        for (int i = 0; i < sessions; i++) {
+            Session session = new Session(i);
+            all.add(session);
+            inFlight.acquireUninterruptibly();
+            // False when the user exists from an earlier run, which is fine
+            CompletableFuture<Boolean> registration = repository.registerUserAsync(
+                    new User(0, session.username(), session.username(), "admin", session.username() + "@example.com"));
+            registration.whenComplete((registered, error) -> inFlight.release());
+            registrations.add(registration);
+        }
+        CompletableFuture.allOf(registrations.toArray(new CompletableFuture<?>[0])).join();
+
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+                Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+                    Thread thread = new Thread(runnable, "load-generator");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        long start = System.nanoTime();
+        long recordFrom = start + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+        long stopAt = recordFrom + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        Result result = new Result(stopAt - recordFrom);
+        // Each session logs in at a random point in its own slot of the warmup, or of the first interval without one
+        long rampNanos = Math.max(recordFrom - start, (long) (1e9 / ratePerSession));
+        double slotNanos = (double) rampNanos / all.size();
+        try {
+            for (Session session : all) {
+                session.due = start + (long) ((session.number + session.random.nextDouble()) * slotNanos);
+                schedule(scheduler, session, "login", recordFrom, stopAt, result);
+            }
+            for (Session session : all) {
+                session.finished.join();
+            }
+        } finally {
+            scheduler.shutdownNow();
+        }
+        return result;
+    }
+
+    private void schedule(ScheduledExecutorService scheduler, Session session, String operation,
+                          long recordFrom, long stopAt, Result result) {
+        if (session.due >= stopAt) {
+            session.finished.complete(null);
+            return;
+        }
+        long delay = Math.max(0, session.due - System.nanoTime());
+        scheduler.schedule(() -> {
+            long sent = System.nanoTime();
+            CompletableFuture<?> call;
+            try {
+                call = perform(session, operation);
+            } catch (RuntimeException e) {
+                call = CompletableFuture.failedFuture(e);
+            }
+            call.whenComplete((value, error) -> {
+                long done = System.nanoTime();
+                // A failed login leaves the session without a user, so it counts as an error
+                boolean failed = error != null || (operation.equals("login") && session.user == null);
+                if (session.due >= recordFrom) {
+                    if (failed) {
+                        result.recordError(operation);
+                    } else {
+                        result.getLatency(operation).record(done - session.due);
+                        result.getServiceTime(operation).record(done - sent);
+                    }
+                }
+                if (operation.equals("login") && session.user == null) {
+                    // Try again on the next turn rather than running as nobody
+                    session.due += nextInterval(session.random);
+                    schedule(scheduler, session, "login", recordFrom, stopAt, result);
+                    return;
+                }
+                session.due += nextInterval(session.random);
+                schedule(scheduler, session, pickOperation(session), recordFrom, stopAt, result);
+            });
+        }, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private CompletableFuture<?> perform(Session session, String operation) {
+        switch (operation) {
+            case "login":
+                return repository.authenticateUserAsync(session.username(), session.username())
+                        .thenAccept(user -> session.user = user);
+            case "book":
+                Appointment booking = new Appointment("Load patient " + session.number + "-" + session.bookings++,
+                        LocalDate.now().plusDays(1 + session.random.nextInt(60)).toString());
+                booking.setUserId(session.user.getId());
+                booking.setClientRef(UUID.randomUUID().toString());
+                return repository.upsertAppointmentBatchAsync(List.of(booking))
+                        .thenAccept(saved -> session.booked.addAll(saved));
+            case "refresh":
+                return repository.getAllAppointmentsAsync();
+            case "cancel":
+                Appointment cancelled = session.booked.remove(session.random.nextInt(session.booked.size()));
+                return repository.deleteAppointmentAsync(cancelled.getId());
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+
+    private String pickOperation(Session session) {
+        int draw = session.random.nextInt(Math.max(1, bookWeight + refreshWeight + cancelWeight));
+        if (draw < bookWeight) {
+            return "book";
+        }
+        if (draw < bookWeight + refreshWeight) {
+            return "refresh";
+        }
+        return session.booked.isEmpty() ? "book" : "cancel";
+    }
+
+    // Exponentially distributed, so arrivals are a Poisson process at the configured rate
+    private long nextInterval(Random random) {
+        return (long) (-Math.log(1 - random.nextDouble()) * 1e9 / ratePerSession);
+    }
+
+    /**
+     * Runs a load test and prints the report. Options: {@code --sessions},
+     * {@code --rate} (operations per second per session), {@code --warmup}
+     * and {@code --duration} (seconds), {@code --mix book,refresh,cancel}
+     * and {@code --seed}. The target is the configured store, or with
+     * {@code --stand-in} a local {@link PostgrestStandInServer} started in
+     * this process, which also takes {@code --rows}, {@code --latency},
+     * {@code --jitter} and {@code --error-rate}.
+     */
+    public static void main(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i].replaceFirst("^--", "");
+            boolean flag = i + 1 == args.length || args[i + 1].startsWith("--");
+            options.put(name, flag ? "true" : args[++i]);
+        }
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+
+        PostgrestStandInServer standIn = null;
+        AppointmentRepository repository;
+        try {
+            if (options.containsKey("stand-in")) {
+                standIn = new PostgrestStandInServer();
+                standIn.setSeed(seed);
+                standIn.setLatency(Long.parseLong(options.getOrDefault("latency", "0")),
+                        Long.parseLong(options.getOrDefault("jitter", "0")));
+                standIn.setErrorRate(Double.parseDouble(options.getOrDefault("error-rate", "0")), 503);
+                standIn.seedAppointments(Integer.parseInt(options.getOrDefault("rows", "1000")), seed);
+                repository = DatabaseService.getInstance(standIn.getUrl(), "load-test");
+            } else {
+                repository = Config.getRepository();
+            }
+
+            LoadGenerator generator = new LoadGenerator(repository);
+            generator.setSessions(Integer.parseInt(options.getOrDefault("sessions", "50")));
+            generator.setRatePerSession(Double.parseDouble(options.getOrDefault("rate", "1")));
+            generator.setWarmup(Long.parseLong(options.getOrDefault("warmup", "10")) * 1000);
+            generator.setDuration(Long.parseLong(options.getOrDefault("duration", "60")) * 1000);
+            String[] mix = options.getOrDefault("mix", "60,30,10").split(",");
+            generator.setMix(Integer.parseInt(mix[0].trim()), Integer.parseInt(mix[1].trim()),
+                    Integer.parseInt(mix[2].trim()));
+            generator.setSeed(seed);
+
+            System.out.println("Load test against " + repository.getLocation());
+            generator.run().print(System.out);
+        } catch (IOException e) {
+            System.err.println("Could not start the stand-in server: " + e.getMessage());
+        } finally {
+            if (standIn != null) {
+                standIn.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package DoctorAppointmentSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of hashing and checking a password, i.e. of every login and
+ * registration. The salt and iteration count are fixed so runs are
+ * comparable; the application calibrates its own count per machine.
+ * {@code legacyVerify} checks an old single SHA-256 hash, for scale.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordHashingBenchmark {
+
+    private static final String PASSWORD = "correct horse battery staple";
+    private static final String SALT = "c2FsdHNhbHRzYWx0c2FsdA==";
+
+    @Param({"100000", "600000"})
+    public int iterations;
+
+    private String storedHash;
+    private String legacyHash;
+
+    @Setup
+    public void setUp() throws Exception {
+        storedHash = PasswordUtils.hashPassword(PASSWORD, SALT, iterations);
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        md.update(SALT.getBytes(StandardCharsets.UTF_8));
+        legacyHash = Base64.getEncoder().encodeToString(md.digest(PASSWORD.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public String hashPassword() {
+        return PasswordUtils.hashPassword(PASSWORD, SALT, iterations);
+    }
+
+    @Benchmark
+    public boolean verifyPassword() {
+        return PasswordUtils.verifyPassword(PASSWORD, storedHash, SALT);
+    }
+
+    @Benchmark
+    public boolean verifyWrongPassword() {
+        return PasswordUtils.verifyPassword("Tr0ub4dor&3", storedHash, SALT);
+    }
+
+    @Benchmark
+    public boolean legacyVerify() {
+        return PasswordUtils.verifyPassword(PASSWORD, legacyHash, SALT);
+    }
+}
@@ -0,0 +1,980 @@
+package DoctorAppointmentSystem;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local stand-in for the Supabase REST API, for measuring
+ * {@link DatabaseService} without a Supabase project. It serves
+ * {@code /rest/v1/appointments}, {@code /rest/v1/users},
+ * {@code /rest/v1/appointment_deletions} and the
+ * {@code appointments_change_token} function from tables in memory, with
+ * the filters, constraints, {@code Prefer} headers, status codes and error
+ * bodies the client relies on.
+ *
+ * Latency, bandwidth and failures can be injected. The random draws come
+ * from a seeded generator, so a run with the same seed and request count
+ * sees the same distribution of delays and errors; which request gets which
+ * draw still depends on thread timing.
+ *
+ * Only the PostgREST features this client uses are implemented: eq, neq,
+ * gt, gte, lt, lte, in and ilike filters, order, limit, select and upserts
+ * on client_ref.
+ */
+public class PostgrestStandInServer implements AutoCloseable {
+
+    private static final String PREFIX = "/rest/v1/";
+    private static final String[] APPOINTMENT_COLUMNS = {"id", "user_id", "patient_name", "appointment_date", "client_ref"};
+    private static final String[] USER_COLUMNS = {"id", "username", "role", "email", "password_hash", "password_salt"};
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "postgrest-stand-in");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Tables tables = new Tables();
+    private final AtomicLong requestCount = new AtomicLong();
+
+    // Fault injection; changed between runs, read by every request
+    private volatile Random random = new Random(0);
+    private volatile long latencyMillis;
+    private volatile long jitterMillis;
+    private volatile long bytesPerSecond;
+    private volatile double errorRate;
+    private volatile int errorStatus = 503;
+    private volatile double dropRate;
+    private volatile boolean compression = true;
+    private volatile boolean changeTokenEnabled = true;
+
+    public PostgrestStandInServer() throws IOException {
+        this(0);
+    }
+
+    // Listens on the loopback interface; port 0 picks a free one
+    public PostgrestStandInServer(int port) throws IOException {
+        // Without TCP_NODELAY small responses wait out the peer's delayed ACK, adding ~40 ms to each;
+        // the JDK server reads this once, so it only takes effect if no server was created before
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext(PREFIX, this::handle);
+        server.start();
+    }
+
+    // Base URL to use in place of the Supabase project URL
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    // Restarts the random draws for latency jitter and failures
+    public void setSeed(long seed) {
+        random = new Random(seed);
+    }
+
+    // Every response waits latencyMillis plus a uniform draw of up to jitterMillis before it is sent
+    public void setLatency(long latencyMillis, long jitterMillis) {
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+    }
+
+    // Caps how fast each response body is written, in bytes per second; 0 for no limit
+    public void setBandwidth(long bytesPerSecond) {
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    // Answers this fraction of requests with the given status and a PostgREST error body
+    public void setErrorRate(double errorRate, int errorStatus) {
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+    }
+
+    // Closes the connection without answering this fraction of requests, as a network failure would.
+    // The JDK client quietly retries a GET once, so fewer reads than this fail at the caller
+    public void setDropRate(double dropRate) {
+        this.dropRate = dropRate;
+    }
+
+    // Whether responses are gzipped for clients that accept it, as Supabase does
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    // When false the change token function is missing, as before its migration
+    public void setChangeTokenEnabled(boolean changeTokenEnabled) {
+        this.changeTokenEnabled = changeTokenEnabled;
+    }
+
+    /**
+     * Adds {@code rows} appointments spread over a year either side of
+     * today, about four per patient, named "Patient 0", "Patient 1" and so
+     * on. The same seed always produces the same rows.
+     */
+    public void seedAppointments(int rows, long seed) {
+        Random generator = new Random(seed);
+        int patients = Math.max(1, rows / 4);
+        LocalDate today = LocalDate.now();
+        List<Appointment> batch = new ArrayList<>(1000);
+        for (int i = 0; i < rows; i++) {
+            LocalDate date = today.plusDays(generator.nextInt(731) - 365);
+            Appointment appointment = new Appointment("Patient " + generator.nextInt(patients), date.toString());
+            appointment.setUserId(1 + generator.nextInt(1000));
+            batch.add(appointment);
+            if (batch.size() == 1000 || i == rows - 1) {
+                tables.insert(batch, false);
+                batch.clear();
+            }
+        }
+    }
+
+    // Adds a user who can log in with the given password
+    public void seedUser(String username, String password, String role) {
+        String salt = PasswordUtils.generateSalt();
+        tables.addUser(new UserRow(0, username, role, username + "@example.com",
+                PasswordUtils.hashPassword(password, salt), salt));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try {
+            byte[] body = decode(exchange);
+            if (exchange.getRequestHeaders().getFirst("apikey") == null) {
+                sendError(exchange, 401, "PGRST301", "No API key found in request");
+                return;
+            }
+
+            double draw;
+            long delay;
+            synchronized (this) {
+                draw = random.nextDouble();
+                delay = latencyMillis + (jitterMillis > 0 ? (long) (random.nextDouble() * jitterMillis) : 0);
+            }
+            if (delay > 0) {
+                TimeUnit.MILLISECONDS.sleep(delay);
+            }
+            if (draw < dropRate) {
+                exchange.close();
+                return;
+            }
+            if (draw < dropRate + errorRate) {
+                sendError(exchange, errorStatus, "PGRST000", "Injected failure");
+                return;
+            }
+
+            route(exchange, body);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, "PGRST100", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.close();
+        } catch (Exception e) {
+            sendError(exchange, 500, "XX000", String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange, byte[] body) throws IOException {
+        String resource = exchange.getRequestURI().getPath().substring(PREFIX.length());
+        List<Filter> filters = new ArrayList<>();
+        Map<String, String> params = new LinkedHashMap<>();
+        parseQuery(exchange.getRequestURI().getRawQuery(), filters, params);
+        String method = exchange.getRequestMethod();
+
+        switch (resource) {
+            case "appointments":
+                if (method.equals("GET")) {
+                    getAppointments(exchange, filters, params);
+                } else if (method.equals("POST")) {
+                    postAppointments(exchange, body, params);
+                } else if (method.equals("DELETE")) {
+                    deleteAppointments(exchange, filters);
+                } else {
+                    sendError(exchange, 405, "PGRST117", "Unsupported HTTP method " + method);
+                }
+                break;
+            case "appointment_deletions":
+                getDeletions(exchange, filters, params);
+                break;
+            case "users":
+                if (method.equals("GET")) {
+                    getUsers(exchange, filters, params);
+                } else if (method.equals("POST")) {
+                    postUser(exchange, body);
+                } else if (method.equals("PATCH")) {
+                    patchUser(exchange, body, filters);
+                } else {
+                    sendError(exchange, 405, "PGRST117", "Unsupported HTTP method " + method);
+                }
+                break;
+            case "rpc/appointments_change_token":
+                if (!changeTokenEnabled) {
+                    sendError(exchange, 404, "PGRST202", "Could not find the function public.appointments_change_token");
+                    return;
+                }
+                send(exchange, 200, String.valueOf(tables.changeToken()));
+                break;
+            default:
+                sendError(exchange, 404, "42P01", "relation \"public." + resource + "\" does not exist");
+        }
+    }
+
+    private void getAppointments(HttpExchange exchange, List<Filter> filters, Map<String, String> params)
+            throws IOException {
+        String order = params.getOrDefault("order", "");
+        int limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : Integer.MAX_VALUE;
+        List<Appointment> rows;
+
+        // Keyset pages, the query the client runs most, walk the id index from the cursor
+        Filter afterId = find(filters, "id", "gt");
+        if (afterId != null && (order.isEmpty() || order.equals("id.asc"))) {
+            rows = tables.page(Integer.parseInt(afterId.value), limit,
+                    row -> matches(filters, column -> appointmentColumn(row, column)));
+        } else {
+            rows = tables.page(0, Integer.MAX_VALUE, row -> matches(filters, column -> appointmentColumn(row, column)));
+            sort(rows, order);
+            if (rows.size() > limit) {
+                rows = rows.subList(0, limit);
+            }
+        }
+
+        String[] columns = columns(params, APPOINTMENT_COLUMNS);
+        JsonWriter json = new JsonWriter(new StringBuilder(rows.size() * 128 + 2)).beginArray();
+        for (Appointment row : rows) {
+            writeAppointment(json, row, columns);
+        }
+        send(exchange, 200, json.endArray().toString());
+    }
+
+    private void postAppointments(HttpExchange exchange, byte[] body, Map<String, String> params) throws IOException {
+        List<Appointment> batch;
+        try {
+            batch = readAppointments(body);
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, "23502", e.getMessage());
+            return;
+        }
+        for (Appointment row : batch) {
+            if (!row.hasDate()) {
+                sendError(exchange, 400, "22007", "invalid input syntax for type date: \"" + row.getDate() + "\"");
+                return;
+            }
+        }
+        String prefer = exchange.getRequestHeaders().getFirst("Prefer");
+        prefer = prefer == null ? "" : prefer;
+
+        List<Appointment> saved;
+        try {
+            if (prefer.contains("resolution=merge-duplicates")) {
+                if (!"client_ref".equals(params.get("on_conflict"))) {
+                    sendError(exchange, 400, "42P10",
+                            "there is no unique or exclusion constraint matching the ON CONFLICT specification");
+                    return;
+                }
+                saved = tables.insert(batch, true);
+            } else {
+                saved = tables.insert(batch, false);
+            }
+        } catch (IllegalStateException e) {
+            sendError(exchange, 409, "23505", "duplicate key value violates unique constraint \"appointments_client_ref_key\"");
+            return;
+        }
+
+        if (!prefer.contains("return=representation")) {
+            send(exchange, 201, "");
+            return;
+        }
+        JsonWriter json = new JsonWriter(new StringBuilder(saved.size() * 128 + 2)).beginArray();
+        for (Appointment row : saved) {
+            writeAppointment(json, row, APPOINTMENT_COLUMNS);
+        }
+        send(exchange, 201, json.endArray().toString());
+    }
+
+    private void deleteAppointments(HttpExchange exchange, List<Filter> filters) throws IOException {
+        if (filters.isEmpty()) {
+            // PostgREST is normally set up to refuse this too, and the client never means it
+            sendError(exchange, 400, "21000", "DELETE requires a WHERE clause");
+            return;
+        }
+        tables.delete(row -> matches(filters, column -> appointmentColumn(row, column)));
+        send(exchange, 204, "");
+    }
+
+    private void getDeletions(HttpExchange exchange, List<Filter> filters, Map<String, String> params)
+            throws IOException {
+        Filter afterId = find(filters, "id", "gt");
+        List<AppointmentDeletion> deletions = new ArrayList<>();
+        for (AppointmentDeletion deletion : tables.deletionsAfter(afterId == null ? 0 : Long.parseLong(afterId.value))) {
+            if (matches(filters, column -> column.equals("id") ? String.valueOf(deletion.getId())
+                    : column.equals("appointment_id") ? String.valueOf(deletion.getAppointmentId()) : null)) {
+                deletions.add(deletion);
+            }
+        }
+        if (params.getOrDefault("order", "").equals("id.desc")) {
+            deletions.sort(Comparator.comparingLong(AppointmentDeletion::getId).reversed());
+        }
+        if (params.containsKey("limit")) {
+            int limit = Integer.parseInt(params.get("limit"));
+            if (deletions.size() > limit) {
+                deletions = deletions.subList(0, limit);
+            }
+        }
+
+        JsonWriter json = new JsonWriter().beginArray();
+        for (AppointmentDeletion deletion : deletions) {
+            json.beginObject()
+                .name("id").value(deletion.getId())
+                .name("appointment_id").value(deletion.getAppointmentId())
+                .endObject();
+        }
+        send(exchange, 200, json.endArray().toString());
+    }
+
+    private void getUsers(HttpExchange exchange, List<Filter> filters, Map<String, String> params) throws IOException {
+        Filter username = find(filters, "username", "eq");
+        if (username == null || filters.size() != 1) {
+            sendError(exchange, 400, "PGRST100", "Stand-in only looks users up by username");
+            return;
+        }
+        UserRow user = tables.findUser(username.value);
+
+        String[] columns = columns(params, USER_COLUMNS);
+        JsonWriter json = new JsonWriter().beginArray();
+        if (user != null) {
+            json.beginObject();
+            for (String column : columns) {
+                switch (column) {
+                    case "id":
+                        json.name("id").value(user.id);
+                        break;
+                    case "username":
+                        json.name("username").value(user.username);
+                        break;
+                    case "role":
+                        json.name("role").value(user.role);
+                        break;
+                    case "email":
+                        json.name("email").value(user.email);
+                        break;
+                    case "password_hash":
+                        json.name("password_hash").value(user.passwordHash);
+                        break;
+                    case "password_salt":
+                        json.name("password_salt").value(user.passwordSalt);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            json.endObject();
+        }
+        send(exchange, 200, json.endArray().toString());
+    }
+
+    private void postUser(HttpExchange exchange, byte[] body) throws IOException {
+        Map<String, String> fields = readFields(body);
+
+        if (fields.get("username") == null || fields.get("password_hash") == null || fields.get("password_salt") == null) {
+            sendError(exchange, 400, "23502", "null value in a not-null column of \"users\"");
+            return;
+        }
+        if (!tables.addUser(new UserRow(0, fields.get("username"), fields.get("role"), fields.get("email"),
+                fields.get("password_hash"), fields.get("password_salt")))) {
+            sendError(exchange, 409, "23505", "duplicate key value violates unique constraint \"users_username_key\"");
+            return;
+        }
+        send(exchange, 201, "");
+    }
+
+    // Only what a client does after sign-in: replacing one user's password hash
+    private void patchUser(HttpExchange exchange, byte[] body, List<Filter> filters) throws IOException {
+        Filter id = find(filters, "id", "eq");
+        if (id == null || filters.size() != 1) {
+            sendError(exchange, 400, "PGRST100", "Stand-in only updates users by id");
+            return;
+        }
+        Map<String, String> fields = readFields(body);
+        if (fields.get("password_hash") == null || fields.get("password_salt") == null
+                || fields.size() != 2) {
+            sendError(exchange, 400, "PGRST100", "Stand-in only updates password_hash and password_salt");
+            return;
+        }
+        int userId;
+        try {
+            userId = Integer.parseInt(id.value);
+        } catch (NumberFormatException e) {
+            sendError(exchange, 400, "22P02", "invalid input syntax for type integer: \"" + id.value + "\"");
+            return;
+        }
+        // PostgREST answers 204 whether or not a row matched
+        tables.updatePassword(userId, fields.get("password_hash"), fields.get("password_salt"));
+        send(exchange, 204, "");
+    }
+
+    // A flat JSON object of string values
+    private static Map<String, String> readFields(byte[] body) throws IOException {
+        Map<String, String> fields = new LinkedHashMap<>();
+        JsonReader reader = new JsonReader(new ByteArrayInputStream(body));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonReader.Token.NULL) {
+                reader.nextNull();
+            } else {
+                fields.put(name, reader.nextString());
+            }
+        }
+        reader.endObject();
+        return fields;
+    }
+
+    // A single object or an array of them; rows missing a not-null column are rejected
+    private static List<Appointment> readAppointments(byte[] body) throws IOException {
+        List<Appointment> rows = new ArrayList<>();
+        JsonReader reader = new JsonReader(new ByteArrayInputStream(body));
+        boolean array = reader.peek() == JsonReader.Token.BEGIN_ARRAY;
+        if (array) {
+            reader.beginArray();
+        }
+        do {
+            int userId = 0;
+            String patientName = null;
+            String date = null;
+            String clientRef = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonReader.Token.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "user_id":
+                        userId = reader.nextInt();
+                        break;
+                    case "patient_name":
+                        patientName = reader.nextString();
+                        break;
+                    case "appointment_date":
+                        date = reader.nextString();
+                        break;
+                    case "client_ref":
+                        clientRef = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (patientName == null || date == null) {
+                throw new IllegalArgumentException("null value in a not-null column of \"appointments\"");
+            }
+            Appointment row = new Appointment(patientName, date);
+            row.setUserId(userId);
+            row.setClientRef(clientRef);
+            rows.add(row);
+        } while (array && reader.hasNext());
+        if (array) {
+            reader.endArray();
+        }
+        return rows;
+    }
+
+    private static void writeAppointment(JsonWriter json, Appointment row, String[] columns) {
+        json.beginObject();
+        for (String column : columns) {
+            switch (column) {
+                case "id":
+                    json.name("id").value(row.getId());
+                    break;
+                case "user_id":
+                    if (row.getUserId() == 0) {
+                        json.name("user_id").value((String) null);
+                    } else {
+                        json.name("user_id").value(row.getUserId());
+                    }
+                    break;
+                default:
+                    json.name(column).value(appointmentColumn(row, column));
+            }
+        }
+        json.endObject();
+    }
+
+    private static String appointmentColumn(Appointment row, String column) {
+        switch (column) {
+            case "id":
+                return String.valueOf(row.getId());
+            case "user_id":
+                return row.getUserId() == 0 ? null : String.valueOf(row.getUserId());
+            case "patient_name":
+                return row.getPatientName();
+            case "appointment_date":
+                return row.getDate();
+            case "client_ref":
+                return row.getClientRef();
+            default:
+                throw new IllegalArgumentException("column appointments." + column + " does not exist");
+        }
+    }
+
+    // The selected columns, in the order requested; all of them for select=* or no select
+    private static String[] columns(Map<String, String> params, String[] all) {
+        String select = params.get("select");
+        if (select == null || select.equals("*")) {
+            return all;
+        }
+        String[] columns = select.split(",");
+        for (String column : columns) {
+            if (!List.of(all).contains(column)) {
+                throw new IllegalArgumentException("column " + column + " does not exist");
+            }
+        }
+        return columns;
+    }
+
+    // order=column.asc|desc[,...]; ids compare as numbers, everything else as text
+    private static void sort(List<Appointment> rows, String order) {
+        if (order.isEmpty()) {
+            rows.sort(Comparator.comparingInt(Appointment::getId));
+            return;
+        }
+        Comparator<Appointment> comparator = null;
+        for (String term : order.split(",")) {
+            int dot = term.lastIndexOf('.');
+            String column = dot < 0 ? term : term.substring(0, dot);
+            boolean descending = dot >= 0 && term.substring(dot + 1).equals("desc");
+            Comparator<Appointment> next = column.equals("id") || column.equals("user_id")
+                    ? Comparator.comparingLong(row -> {
+                        String value = appointmentColumn(row, column);
+                        return value == null ? 0 : Long.parseLong(value);
+                    })
+                    : Comparator.comparing(row -> appointmentColumn(row, column),
+                            Comparator.nullsLast(Comparator.naturalOrder()));
+            if (descending) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+        rows.sort(comparator);
+    }
+
+    // A users row, including the credential columns
+    private static final class UserRow {
+        final int id;
+        final String username;
+        final String role;
+        final String email;
+        final String passwordHash;
+        final String passwordSalt;
+
+        UserRow(int id, String username, String role, String email, String passwordHash, String passwordSalt) {
+            this.id = id;
+            this.username = username;
+            this.role = role;
+            this.email = email;
+            this.passwordHash = passwordHash;
+            this.passwordSalt = passwordSalt;
+        }
+    }
+
+    /**
+     * The tables behind the endpoints, with the constraints of the real
+     * schema: unique client references and usernames, and a tombstone for
+     * every deleted appointment. Every method holds the monitor, so each
+     * request sees and makes its changes as one unit; rows are copied in
+     * and out.
+     */
+    private static final class Tables {
+        private final TreeMap<Integer, Appointment> appointments = new TreeMap<>();
+        private final Map<String, Appointment> byClientRef = new HashMap<>();
+        private final List<AppointmentDeletion> deletions = new ArrayList<>();
+        private final Map<String, UserRow> users = new HashMap<>();
+        private int lastAppointmentId;
+        private long lastDeletionId;
+        private int lastUserId;
+        private long changeToken;
+
+        // Saves the batch and returns copies with their ids. Without merge a client reference
+        // already taken fails the whole batch with IllegalStateException; with merge it updates that row
+        synchronized List<Appointment> insert(List<Appointment> batch, boolean merge) {
+            Set<String> clientRefs = new HashSet<>();
+            for (Appointment row : batch) {
+                String clientRef = row.getClientRef();
+                if (!merge && clientRef != null && (byClientRef.containsKey(clientRef) || !clientRefs.add(clientRef))) {
+                    throw new IllegalStateException("Duplicate client reference " + clientRef);
+                }
+            }
+            List<Appointment> saved = new ArrayList<>(batch.size());
+            for (Appointment appointment : batch) {
+                Appointment row = new Appointment(appointment);
+                Appointment existing = row.getClientRef() == null ? null : byClientRef.get(row.getClientRef());
+                if (existing == null) {
+                    row.setId(++lastAppointmentId);
+                } else {
+                    row.setId(existing.getId());
+                    if (row.getUserId() == 0) {
+                        row.setUserId(existing.getUserId());
+                    }
+                }
+                appointments.put(row.getId(), row);
+                if (row.getClientRef() != null) {
+                    byClientRef.put(row.getClientRef(), row);
+                }
+                saved.add(new Appointment(row));
+            }
+            changeToken++;
+            return saved;
+        }
+
+        // Up to limit rows with an id above afterId that pass the test, in id order
+        synchronized List<Appointment> page(int afterId, int limit, Predicate<Appointment> test) {
+            List<Appointment> rows = new ArrayList<>(Math.min(limit, 1024));
+            for (Appointment row : appointments.tailMap(afterId, false).values()) {
+                if (rows.size() == limit) {
+                    break;
+                }
+                if (test.test(row)) {
+                    rows.add(new Appointment(row));
+                }
+            }
+            return rows;
+        }
+
+        synchronized void delete(Predicate<Appointment> test) {
+            List<Appointment> matches = new ArrayList<>();
+            for (Appointment row : appointments.values()) {
+                if (test.test(row)) {
+                    matches.add(row);
+                }
+            }
+            for (Appointment row : matches) {
+                appointments.remove(row.getId());
+                if (row.getClientRef() != null) {
+                    byClientRef.remove(row.getClientRef(), row);
+                }
+                deletions.add(new AppointmentDeletion(++lastDeletionId, row.getId()));
+            }
+            if (!matches.isEmpty()) {
+                changeToken++;
+            }
+        }
+
+        synchronized List<AppointmentDeletion> deletionsAfter(long afterId) {
+            List<AppointmentDeletion> after = new ArrayList<>();
+            for (AppointmentDeletion deletion : deletions) {
+                if (deletion.getId() > afterId) {
+                    after.add(deletion);
+                }
+            }
+            return after;
+        }
+
+        synchronized long changeToken() {
+            return changeToken;
+        }
+
+        synchronized UserRow findUser(String username) {
+            return users.get(username);
+        }
+
+        // False if the name is taken; the row's id is assigned here
+        synchronized boolean addUser(UserRow user) {
+            if (users.containsKey(user.username)) {
+                return false;
+            }
+            users.put(user.username, new UserRow(++lastUserId, user.username, user.role, user.email,
+                    user.passwordHash, user.passwordSalt));
+            return true;
+        }
+
+        synchronized void updatePassword(int userId, String passwordHash, String passwordSalt) {
+            for (UserRow user : users.values()) {
+                if (user.id == userId) {
+                    users.put(user.username, new UserRow(user.id, user.username, user.role, user.email,
+                            passwordHash, passwordSalt));
+                    return;
+                }
+            }
+        }
+    }
+
+    // A column=op.value query parameter
+    private static final class Filter {
+        final String column;
+        final String op;
+        final String value;
+
+        Filter(String column, String op, String value) {
+            this.column = column;
+            this.op = op;
+            this.value = value;
+        }
+
+        boolean test(String actual) {
+            if (actual == null) {
+                return false;
+            }
+            switch (op) {
+                case "eq":
+                    return compare(actual, value) == 0;
+                case "neq":
+                    return compare(actual, value) != 0;
+                case "gt":
+                    return compare(actual, value) > 0;
+                case "gte":
+                    return compare(actual, value) >= 0;
+                case "lt":
+                    return compare(actual, value) < 0;
+                case "lte":
+                    return compare(actual, value) <= 0;
+                case "in":
+                    return inList(value).contains(actual);
+                case "ilike":
+                    String pattern = value.toLowerCase(Locale.ROOT).replace("*", "%");
+                    return likeMatches(actual.toLowerCase(Locale.ROOT), pattern);
+                default:
+                    throw new IllegalArgumentException("Unsupported operator " + op);
+            }
+        }
+    }
+
+    private static boolean matches(List<Filter> filters, Function<String, String> columns) {
+        for (Filter filter : filters) {
+            if (!filter.test(columns.apply(filter.column))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Filter find(List<Filter> filters, String column, String op) {
+        for (Filter filter : filters) {
+            if (filter.column.equals(column) && filter.op.equals(op)) {
+                return filter;
+            }
+        }
+        return null;
+    }
+
+    // Numbers compare as numbers; dates in yyyy-MM-dd and names compare as text
+    private static int compare(String actual, String expected) {
+        if (isInteger(actual) && isInteger(expected)) {
+            return Long.compare(Long.parseLong(actual), Long.parseLong(expected));
+        }
+        return actual.compareTo(expected);
+    }
+
+    private static boolean isInteger(String value) {
+        if (value.isEmpty() || value.length() > 18) {
+            return false;
+        }
+        for (int i = value.charAt(0) == '-' ? 1 : 0; i < value.length(); i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // (a,"b, c",d) with PostgREST's double-quote escaping
+    private static List<String> inList(String value) {
+        if (!value.startsWith("(") || !value.endsWith(")")) {
+            throw new IllegalArgumentException("in. filters take a (list)");
+        }
+        List<String> items = new ArrayList<>();
+        StringBuilder item = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 1; i < value.length() - 1; i++) {
+            char c = value.charAt(i);
+            if (quoted && c == '\\' && i + 1 < value.length() - 1) {
+                item.append(value.charAt(++i));
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                items.add(item.toString());
+                item.setLength(0);
+            } else {
+                item.append(c);
+            }
+        }
+        items.add(item.toString());
+        return items;
+    }
+
+    // SQL LIKE with % for any run of characters
+    private static boolean likeMatches(String text, String pattern) {
+        return Pattern.compile("\\Q" + pattern.replace("%", "\\E.*\\Q") + "\\E", Pattern.DOTALL)
+                .matcher(text).matches();
+    }
+
+    private static void parseQuery(String rawQuery, List<Filter> filters, Map<String, String> params) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals < 0) {
+                continue;
+            }
+            String name = URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            switch (name) {
+                case "select":
+                case "order":
+                case "limit":
+                case "offset":
+                case "on_conflict":
+                    params.put(name, value);
+                    break;
+                default:
+                    int dot = value.indexOf('.');
+                    if (dot < 0) {
+                        throw new IllegalArgumentException("\"failed to parse filter (" + value + ")\"");
+                    }
+                    filters.add(new Filter(name, value.substring(0, dot), value.substring(dot + 1)));
+            }
+        }
+    }
+
+    // The request body, unzipped if the client compressed it
+    private static byte[] decode(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        if ("gzip".equalsIgnoreCase(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            in = new GZIPInputStream(in);
+        }
+        try (InputStream body = in) {
+            return body.readAllBytes();
+        }
+    }
+
+    private void sendError(HttpExchange exchange, int status, String code, String message) throws IOException {
+        send(exchange, status, new JsonWriter().beginObject()
+                .name("code").value(code)
+                .name("details").value((String) null)
+                .name("hint").value((String) null)
+                .name("message").value(message)
+                .endObject().toString());
+    }
+
+    private void send(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        if (body.length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        String accepted = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (compression && accepted != null && accepted.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            writeThrottled(out, body);
+        }
+    }
+
+    // Writes in 16 KB slices, pausing so the average rate matches the configured bandwidth
+    private void writeThrottled(OutputStream out, byte[] body) throws IOException {
+        long rate = bytesPerSecond;
+        if (rate <= 0) {
+            out.write(body);
+            return;
+        }
+        long start = System.nanoTime();
+        int slice = 16 * 1024;
+        for (int offset = 0; offset < body.length; offset += slice) {
+            int length = Math.min(slice, body.length - offset);
+            out.write(body, offset, length);
+            long due = start + (offset + length) * 1_000_000_000L / rate;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the stand-in until the process is stopped. Options:
+     * {@code --port}, {@code --rows} (appointments to seed), {@code --seed},
+     * {@code --latency} and {@code --jitter} (milliseconds),
+     * {@code --bandwidth} (kilobits per second), {@code --error-rate} and
+     * {@code --drop-rate} (fractions of requests). A user "demo" with
+     * password "demo" is always created.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+
+        PostgrestStandInServer server = new PostgrestStandInServer(Integer.parseInt(options.getOrDefault("port", "54321")));
+        server.setSeed(seed);
+        server.setLatency(Long.parseLong(options.getOrDefault("latency", "0")),
+                Long.parseLong(options.getOrDefault("jitter", "0")));
+        server.setBandwidth(Long.parseLong(options.getOrDefault("bandwidth", "0")) * 1000 / 8);
+        server.setErrorRate(Double.parseDouble(options.getOrDefault("error-rate", "0")), 503);
+        server.setDropRate(Double.parseDouble(options.getOrDefault("drop-rate", "0")));
+        server.seedAppointments(Integer.parseInt(options.getOrDefault("rows", "1000")), seed);
+        server.seedUser("demo", "demo", "patient");
+
+        System.out.println("PostgREST stand-in listening on " + server.getUrl()
+                + " (set SUPABASE_URL to this and SUPABASE_API_KEY to anything)");
+        Thread.currentThread().join();
+    }
+}
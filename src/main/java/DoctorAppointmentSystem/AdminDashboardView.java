@@ -2,31 +2,35 @@ package DoctorAppointmentSystem;
 
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.chart.BarChart;
 import javafx.scene.chart.CategoryAxis;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
 import javafx.scene.control.Label;
-import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
-import javafx.scene.layout.StackPane;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
 
-import java.time.LocalDate;
 import java.time.YearMonth;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 public class AdminDashboardView extends VBox {
     
-    private List<Appointment> appointments;
+    // Built once; updates only change label text and bar values
+    private final Label placeholder;
+    private final HBox statisticsCards;
+    private final VBox chartContainer;
+    
+    private final Label totalValue;
+    private final Label monthlyValue;
+    private final Label todayValue;
+    private final Label patientsValue;
+    
+    private final XYChart.Series<String, Number> series = new XYChart.Series<>();
+    private YearMonth firstMonthShown;
     
     public AdminDashboardView() {
         this.setSpacing(20);
@@ -38,70 +42,86 @@ public class AdminDashboardView extends VBox {
         titleLabel.setFont(Font.font("System", FontWeight.BOLD, 18));
         this.getChildren().add(titleLabel);
         
+        // Shown instead of the cards and chart while there is no data
+        placeholder = new Label("No appointment data available");
+        placeholder.setStyle("-fx-text-fill: #757575;");
+        
+        // Add statistics cards
+        totalValue = createValueLabel("#4285f4");
+        monthlyValue = createValueLabel("#34a853");
+        todayValue = createValueLabel("#ea4335");
+        patientsValue = createValueLabel("#fbbc05");
+        statisticsCards = new HBox(15);
+        statisticsCards.setAlignment(Pos.CENTER);
+        statisticsCards.getChildren().addAll(
+                createStatCard("Total Appointments", totalValue, "#4285f4"),
+                createStatCard("This Month", monthlyValue, "#34a853"),
+                createStatCard("Today", todayValue, "#ea4335"),
+                createStatCard("Unique Patients", patientsValue, "#fbbc05"));
+        
+        // Add monthly appointments chart
+        chartContainer = createMonthlyAppointmentsChart();
+        
+        this.getChildren().addAll(placeholder, statisticsCards, chartContainer);
+        
         // Initialize with empty data
         updateDashboard(null);
     }
     
-    public void updateDashboard(List<Appointment> appointments) {
-        this.appointments = appointments;
-        
-        // Clear existing content (except title)
-        if (this.getChildren().size() > 1) {
-            this.getChildren().remove(1, this.getChildren().size());
-        }
-        
+    public void updateDashboard(AppointmentStatistics statistics) {
         // If no appointments, show placeholder
-        if (appointments == null || appointments.isEmpty()) {
-            Label placeholder = new Label("No appointment data available");
-            placeholder.setStyle("-fx-text-fill: #757575;");
-            this.getChildren().add(placeholder);
+        boolean hasData = statistics != null && statistics.getTotal() > 0;
+        setShown(placeholder, !hasData);
+        setShown(statisticsCards, hasData);
+        setShown(chartContainer, hasData);
+        if (!hasData) {
             return;
         }
         
-        // Add statistics cards
-        this.getChildren().add(createStatisticsCards());
-        
-        // Add monthly appointments chart
-        this.getChildren().add(createMonthlyAppointmentsChart());
+        setValue(totalValue, statistics.getTotal());
+        setValue(monthlyValue, statistics.getThisMonth());
+        setValue(todayValue, statistics.getToday());
+        setValue(patientsValue, statistics.getUniquePatients());
+        
+        // Month names only change when the calendar month rolls over
+        boolean monthsChanged = !statistics.getMonth(0).equals(firstMonthShown);
+        firstMonthShown = statistics.getMonth(0);
+        for (int i = 0; i < AppointmentStatistics.MONTHS_SHOWN; i++) {
+            XYChart.Data<String, Number> bar = series.getData().get(i);
+            if (monthsChanged) {
+                bar.setXValue(monthLabel(statistics.getMonth(i)));
+            }
+            if (bar.getYValue().intValue() != statistics.getMonthlyCount(i)) {
+                bar.setYValue(statistics.getMonthlyCount(i));
+            }
+        }
+    }
+    
+    private static String monthLabel(YearMonth month) {
+        return month.getMonth().toString() + " " + month.getYear();
     }
     
-    private HBox createStatisticsCards() {
-        HBox cards = new HBox(15);
-        cards.setAlignment(Pos.CENTER);
-        
-        // Total appointments
-        VBox totalCard = createStatCard("Total Appointments", String.valueOf(appointments.size()), "#4285f4");
-        
-        // Appointments this month
-        YearMonth currentMonth = YearMonth.now();
-        long appointmentsThisMonth = appointments.stream()
-                .filter(a -> {
-                    LocalDate date = LocalDate.parse(a.getDate());
-                    YearMonth appointmentMonth = YearMonth.from(date);
-                    return appointmentMonth.equals(currentMonth);
-                })
-                .count();
-        VBox monthlyCard = createStatCard("This Month", String.valueOf(appointmentsThisMonth), "#34a853");
-        
-        // Appointments today
-        String today = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-        long appointmentsToday = appointments.stream()
-                .filter(a -> a.getDate().equals(today))
-                .count();
-        VBox todayCard = createStatCard("Today", String.valueOf(appointmentsToday), "#ea4335");
-        
-        // Unique patients
-        long uniquePatients = appointments.stream()
-                .map(Appointment::getPatientName)
-                .distinct()
-                .count();
-        VBox patientsCard = createStatCard("Unique Patients", String.valueOf(uniquePatients), "#fbbc05");
-        
-        cards.getChildren().addAll(totalCard, monthlyCard, todayCard, patientsCard);
-        return cards;
+    private static void setShown(Node node, boolean shown) {
+        node.setVisible(shown);
+        node.setManaged(shown);
     }
     
-    private VBox createStatCard(String title, String value, String color) {
+    // Only touches the label when the number changed, so an unchanged refresh costs no layout pass
+    private static void setValue(Label label, int value) {
+        String text = Integer.toString(value);
+        if (!text.equals(label.getText())) {
+            label.setText(text);
+        }
+    }
+    
+    private static Label createValueLabel(String color) {
+        Label valueLabel = new Label("0");
+        valueLabel.setFont(Font.font("System", FontWeight.BOLD, 24));
+        valueLabel.setStyle("-fx-text-fill: " + color + ";");
+        return valueLabel;
+    }
+    
+    private VBox createStatCard(String title, Label valueLabel, String color) {
         VBox card = new VBox(5);
         card.setPadding(new Insets(15));
         card.setMinWidth(150);
@@ -114,10 +134,6 @@ public class AdminDashboardView extends VBox {
         colorIndicator.setArcWidth(5);
         colorIndicator.setArcHeight(5);
         
-        Label valueLabel = new Label(value);
-        valueLabel.setFont(Font.font("System", FontWeight.BOLD, 24));
-        valueLabel.setStyle("-fx-text-fill: " + color + ";");
-        
         Label titleLabel = new Label(title);
         titleLabel.setStyle("-fx-text-fill: #757575;");
         
@@ -138,46 +154,20 @@ public class AdminDashboardView extends VBox {
         xAxis.setLabel("Month");
         yAxis.setLabel("Appointments");
         
-        // Create the chart
+        // Create the chart; animations would replay on every refresh
         BarChart<String, Number> barChart = new BarChart<>(xAxis, yAxis);
         barChart.setTitle("Monthly Appointments");
         barChart.setLegendVisible(false);
-        
-        // Count appointments by month
-        Map<YearMonth, Integer> appointmentsByMonth = new HashMap<>();
-        
-        // Get data for the last 6 months
-        YearMonth currentMonth = YearMonth.now();
-        for (int i = 5; i >= 0; i--) {
-            YearMonth month = currentMonth.minusMonths(i);
-            appointmentsByMonth.put(month, 0);
+        barChart.setAnimated(false);
+        xAxis.setAnimated(false);
+        yAxis.setAnimated(false);
+        
+        // One bar per month, oldest first; values are filled in by updateDashboard
+        firstMonthShown = YearMonth.now().minusMonths(AppointmentStatistics.MONTHS_SHOWN - 1);
+        for (int i = 0; i < AppointmentStatistics.MONTHS_SHOWN; i++) {
+            series.getData().add(new XYChart.Data<>(monthLabel(firstMonthShown.plusMonths(i)), 0));
         }
         
-        // Count appointments
-        for (Appointment appointment : appointments) {
-            try {
-                LocalDate date = LocalDate.parse(appointment.getDate());
-                YearMonth month = YearMonth.from(date);
-                
-                if (appointmentsByMonth.containsKey(month)) {
-                    appointmentsByMonth.put(month, appointmentsByMonth.get(month) + 1);
-                }
-            } catch (Exception e) {
-                // Skip invalid dates
-            }
-        }
-        
-        // Create dataset
-        XYChart.Series<String, Number> series = new XYChart.Series<>();
-        
-        // Add data points in chronological order
-        appointmentsByMonth.keySet().stream()
-                .sorted()
-                .forEach(month -> {
-                    String monthLabel = month.getMonth().toString() + " " + month.getYear();
-                    series.getData().add(new XYChart.Data<>(monthLabel, appointmentsByMonth.get(month)));
-                });
-        
         barChart.getData().add(series);
         
         // Style the bars
@@ -188,4 +178,4 @@ public class AdminDashboardView extends VBox {
         chartContainer.getChildren().addAll(chartTitle, barChart);
         return chartContainer;
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
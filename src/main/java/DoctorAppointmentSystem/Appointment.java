@@ -1,32 +1,137 @@
 package DoctorAppointmentSystem;
 
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
 public class Appointment {
+    // Stands in for the epoch day when the date could not be parsed
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private int id; // 0 until the row has been saved
+    private int userId; // 0 when not booked by a registered user
     private String patientName;
-    private String date;
-    
+    private int epochDay;
+    private String unparsedDate; // only kept for dates that are not yyyy-MM-dd
+    private String clientRef; // idempotency key of a booking made on this client, if any
+
     public Appointment(String patientName, String date) {
+        this(0, patientName, date);
+    }
+
+    public Appointment(int id, String patientName, String date) {
+        this.id = id;
         this.patientName = patientName;
-        this.date = date;
+        setDate(date);
+    }
+
+    public Appointment(int id, int userId, String patientName, int epochDay) {
+        this.id = id;
+        this.userId = userId;
+        this.patientName = patientName;
+        this.epochDay = epochDay;
+    }
+
+    public Appointment(Appointment other) {
+        this.id = other.id;
+        this.userId = other.userId;
+        this.patientName = other.patientName;
+        this.epochDay = other.epochDay;
+        this.unparsedDate = other.unparsedDate;
+        this.clientRef = other.clientRef;
     }
-    
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getUserId() {
+        return userId;
+    }
+
+    public void setUserId(int userId) {
+        this.userId = userId;
+    }
+
+    public String getClientRef() {
+        return clientRef;
+    }
+
+    public void setClientRef(String clientRef) {
+        this.clientRef = clientRef;
+    }
+
     public String getPatientName() {
         return patientName;
     }
-    
+
     public void setPatientName(String patientName) {
         this.patientName = patientName;
     }
-    
+
+    // Days since 1970-01-01, or NO_DATE
+    public int getEpochDay() {
+        return epochDay;
+    }
+
+    public boolean hasDate() {
+        return epochDay != NO_DATE;
+    }
+
+    // Null if the date could not be parsed
+    public LocalDate getLocalDate() {
+        return hasDate() ? LocalDate.ofEpochDay(epochDay) : null;
+    }
+
+    // The date as yyyy-MM-dd, or as it was given if it could not be parsed
     public String getDate() {
-        return date;
+        return hasDate() ? LocalDate.ofEpochDay(epochDay).toString() : unparsedDate;
     }
-    
+
     public void setDate(String date) {
-        this.date = date;
+        this.epochDay = parseEpochDay(date);
+        this.unparsedDate = epochDay == NO_DATE ? date : null;
     }
-    
+
+    /**
+     * Parses an ISO yyyy-MM-dd date, the format Postgres uses for date
+     * columns, without the overhead of a DateTimeFormatter. Returns NO_DATE
+     * for anything else, including impossible dates such as 2025-02-30.
+     */
+    public static int parseEpochDay(CharSequence date) {
+        if (date == null || date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+            return NO_DATE;
+        }
+        int year = digits(date, 0, 4);
+        int month = digits(date, 5, 7);
+        int day = digits(date, 8, 10);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return NO_DATE;
+        }
+        try {
+            return (int) LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException e) {
+            return NO_DATE;
+        }
+    }
+
+    private static int digits(CharSequence text, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
     @Override
     public String toString() {
-        return patientName + " - " + date;
+        return patientName + " - " + getDate();
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,158 @@
+package DoctorAppointmentSystem;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running totals behind the admin dashboard, kept in step with an observable
+ * appointment list. Each add or remove updates a handful of counters, so a
+ * dashboard refresh costs a few lookups rather than a pass over every row.
+ *
+ * Distinct patients are counted exactly up to {@link #EXACT_DISTINCT_LIMIT}
+ * names. Beyond that the count switches to a HyperLogLog estimate, which
+ * cannot see removals: it only goes back to exact once the list is emptied.
+ *
+ * Methods are synchronized so the dashboard may read from a background
+ * thread while the list is edited on the FX thread.
+ */
+public class AppointmentAnalytics {
+
+    // Above this many distinct names the exact set is swapped for an estimate
+    public static final int EXACT_DISTINCT_LIMIT = 100_000;
+
+    private int total;
+    private final Map<Integer, int[]> perDay = new HashMap<>();
+    // Keyed by year * 12 + month - 1
+    private final Map<Integer, int[]> perMonth = new HashMap<>();
+
+    // Appointments per patient name, while counting exactly
+    private Map<String, int[]> patients = new HashMap<>();
+    private HyperLogLog patientEstimate;
+
+    public AppointmentAnalytics(ObservableList<Appointment> source) {
+        addAll(source);
+        source.addListener((ListChangeListener<Appointment>) change -> {
+            while (change.next()) {
+                if (change.wasRemoved()) {
+                    removeAll(change.getRemoved());
+                }
+                if (change.wasAdded()) {
+                    addAll(change.getAddedSubList());
+                }
+            }
+        });
+    }
+
+    public synchronized int getTotal() {
+        return total;
+    }
+
+    public synchronized int countOn(LocalDate date) {
+        return count(perDay, (int) date.toEpochDay());
+    }
+
+    public synchronized int countIn(YearMonth month) {
+        return count(perMonth, monthKey(month));
+    }
+
+    public synchronized long distinctPatients() {
+        return patientEstimate != null ? patientEstimate.estimate() : patients.size();
+    }
+
+    // True once the distinct patient count has become an estimate
+    public synchronized boolean isPatientCountEstimated() {
+        return patientEstimate != null;
+    }
+
+    // The dashboard figures as of the given date
+    public synchronized AppointmentStatistics snapshot(LocalDate currentDate) {
+        YearMonth currentMonth = YearMonth.from(currentDate);
+        YearMonth firstMonth = currentMonth.minusMonths(AppointmentStatistics.MONTHS_SHOWN - 1);
+        int[] monthlyCounts = new int[AppointmentStatistics.MONTHS_SHOWN];
+        for (int i = 0; i < monthlyCounts.length; i++) {
+            monthlyCounts[i] = count(perMonth, monthKey(firstMonth.plusMonths(i)));
+        }
+        return new AppointmentStatistics(total, monthlyCounts[monthlyCounts.length - 1], countOn(currentDate),
+                (int) distinctPatients(), firstMonth, monthlyCounts);
+    }
+
+    private synchronized void addAll(List<? extends Appointment> appointments) {
+        for (Appointment appointment : appointments) {
+            total++;
+            addPatient(appointment.getPatientName());
+            if (appointment.hasDate()) {
+                increment(perDay, appointment.getEpochDay(), 1);
+                increment(perMonth, monthKey(appointment.getEpochDay()), 1);
+            }
+        }
+    }
+
+    private synchronized void removeAll(List<? extends Appointment> appointments) {
+        for (Appointment appointment : appointments) {
+            total--;
+            removePatient(appointment.getPatientName());
+            if (appointment.hasDate()) {
+                increment(perDay, appointment.getEpochDay(), -1);
+                increment(perMonth, monthKey(appointment.getEpochDay()), -1);
+            }
+        }
+        if (total == 0) {
+            // Nothing left to estimate, so the exact count can take over again
+            patients = new HashMap<>();
+            patientEstimate = null;
+        }
+    }
+
+    private void addPatient(String patientName) {
+        if (patientEstimate != null) {
+            patientEstimate.add(patientName);
+            return;
+        }
+        patients.computeIfAbsent(patientName, name -> new int[1])[0]++;
+        if (patients.size() > EXACT_DISTINCT_LIMIT) {
+            patientEstimate = new HyperLogLog();
+            for (String name : patients.keySet()) {
+                patientEstimate.add(name);
+            }
+            patients = null;
+        }
+    }
+
+    private void removePatient(String patientName) {
+        if (patientEstimate != null) {
+            return;
+        }
+        int[] count = patients.get(patientName);
+        if (count != null && --count[0] == 0) {
+            patients.remove(patientName);
+        }
+    }
+
+    private static void increment(Map<Integer, int[]> counters, int key, int delta) {
+        int[] count = counters.computeIfAbsent(key, k -> new int[1]);
+        count[0] += delta;
+        if (count[0] <= 0) {
+            counters.remove(key);
+        }
+    }
+
+    private static int count(Map<Integer, int[]> counters, int key) {
+        int[] count = counters.get(key);
+        return count == null ? 0 : count[0];
+    }
+
+    private static int monthKey(int epochDay) {
+        LocalDate date = LocalDate.ofEpochDay(epochDay);
+        return date.getYear() * 12 + date.getMonthValue() - 1;
+    }
+
+    private static int monthKey(YearMonth month) {
+        return month.getYear() * 12 + month.getMonthValue() - 1;
+    }
+}
@@ -0,0 +1,356 @@
+package DoctorAppointmentSystem;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Local on-disk copy of the appointments table, so the dashboard can render
+ * straight away and keep working through network blips.
+ *
+ * The cache is a compact binary snapshot plus an append-only log of changes
+ * made since the snapshot. Both files are memory-mapped when loading. Writes
+ * happen on a single background thread, in the order they were requested.
+ */
+public class AppointmentCache {
+    private static final Log LOG = Log.get("cache");
+
+    private static final int MAGIC = 0x44414331; // "DAC1"
+    // 2: dates stored as epoch days, with the user id
+    private static final int VERSION = 2;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_DELETE = 2;
+    private static final byte OP_DELETION_MARK = 3;
+
+    // Windows cannot replace a file while a mapping of it is still open, and a mapping
+    // is only released by the garbage collector, so there the files are read into the heap
+    private static final boolean MAP_FILES = !System.getProperty("os.name", "").toLowerCase().startsWith("windows");
+
+    // Once the log holds this many records it is folded into a new snapshot
+    private static final int COMPACT_AFTER_RECORDS = 10_000;
+
+    // What was on disk: every known row plus the sync high-water marks
+    public static class Contents {
+        private final List<Appointment> appointments;
+        private final int highWaterId;
+        private final long lastDeletionId;
+
+        Contents(List<Appointment> appointments, int highWaterId, long lastDeletionId) {
+            this.appointments = appointments;
+            this.highWaterId = highWaterId;
+            this.lastDeletionId = lastDeletionId;
+        }
+
+        public List<Appointment> getAppointments() {
+            return appointments;
+        }
+
+        public int getHighWaterId() {
+            return highWaterId;
+        }
+
+        public long getLastDeletionId() {
+            return lastDeletionId;
+        }
+    }
+
+    private final Path snapshotPath;
+    private final Path logPath;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "appointment-cache-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private DataOutputStream log;
+    private volatile int logRecords;
+    // Length of the log up to its last whole record, as found by load; -1 once it has been trimmed to that
+    private volatile long intactLogBytes = -1;
+
+    public AppointmentCache(String cacheDir, String supabaseUrl) {
+        // One cache per Supabase project, or per patient when the caller scopes it to one
+        String name = "appointments-" + Integer.toHexString(supabaseUrl.hashCode());
+        this.snapshotPath = Paths.get(cacheDir, name + ".snap");
+        this.logPath = Paths.get(cacheDir, name + ".log");
+    }
+
+    /**
+     * Reads the snapshot and replays the log. Returns null if there is no cache
+     * or it cannot be read, in which case the files are discarded.
+     */
+    public Contents load() {
+        if (!Files.exists(snapshotPath)) {
+            return null;
+        }
+
+        try {
+            Map<Integer, Appointment> byId = new LinkedHashMap<>();
+            ByteBuffer snapshot = map(snapshotPath);
+
+            if (snapshot.getInt() != MAGIC || snapshot.getInt() != VERSION) {
+                throw new IOException("Unrecognised cache format");
+            }
+            int count = snapshot.getInt();
+            int highWaterId = snapshot.getInt();
+            long lastDeletionId = snapshot.getLong();
+
+            for (int i = 0; i < count; i++) {
+                Appointment appointment = readAppointment(snapshot);
+                byId.put(appointment.getId(), appointment);
+            }
+
+            int replayed = 0;
+            if (Files.exists(logPath)) {
+                ByteBuffer changes = map(logPath);
+                long intact = 0;
+                try {
+                    while (changes.hasRemaining()) {
+                        byte op = changes.get();
+                        if (op == OP_ADD) {
+                            Appointment appointment = readAppointment(changes);
+                            byId.put(appointment.getId(), appointment);
+                            highWaterId = Math.max(highWaterId, appointment.getId());
+                        } else if (op == OP_DELETE) {
+                            byId.remove(changes.getInt());
+                        } else if (op == OP_DELETION_MARK) {
+                            lastDeletionId = Math.max(lastDeletionId, changes.getLong());
+                        } else {
+                            break;
+                        }
+                        replayed++;
+                        intact = changes.position();
+                    }
+                } catch (BufferUnderflowException e) {
+                    // The last record was cut short by a crash; everything before it is intact
+                }
+                // The writer drops anything after this before appending, so new records follow whole ones
+                intactLogBytes = intact;
+            }
+            logRecords = replayed;
+
+            return new Contents(new ArrayList<>(byId.values()), highWaterId, lastDeletionId);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Discarding unreadable appointment cache: " + e.getMessage());
+            clear();
+            return null;
+        }
+    }
+
+    // Replaces the cache with the given state and starts a fresh log
+    public void writeSnapshotAsync(Collection<Appointment> appointments, int highWaterId, long lastDeletionId) {
+        // Copy on the caller's thread so later edits to the rows cannot race the writer
+        List<Appointment> rows = new ArrayList<>(appointments.size());
+        for (Appointment appointment : appointments) {
+            rows.add(new Appointment(appointment));
+        }
+
+        writer.execute(() -> {
+            try {
+                closeLog();
+                Files.createDirectories(snapshotPath.getParent());
+                Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(rows.size());
+                    out.writeInt(highWaterId);
+                    out.writeLong(lastDeletionId);
+                    for (Appointment appointment : rows) {
+                        writeAppointment(out, appointment);
+                    }
+                }
+
+                Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Files.deleteIfExists(logPath);
+                logRecords = 0;
+                intactLogBytes = -1;
+            } catch (IOException e) {
+                LOG.error("Error writing appointment cache: " + e.getMessage());
+            }
+        });
+    }
+
+    public void appendAddedAsync(List<Appointment> appointments) {
+        List<Appointment> rows = new ArrayList<>(appointments.size());
+        for (Appointment appointment : appointments) {
+            rows.add(new Appointment(appointment));
+        }
+        List<LogRecord> records = new ArrayList<>(rows.size());
+        for (Appointment appointment : rows) {
+            records.add(out -> {
+                out.writeByte(OP_ADD);
+                writeAppointment(out, appointment);
+            });
+        }
+        appendAsync(records);
+    }
+
+    public void appendDeletedAsync(List<Integer> appointmentIds, long lastDeletionId) {
+        List<Integer> ids = new ArrayList<>(appointmentIds);
+        List<LogRecord> records = new ArrayList<>(ids.size() + 1);
+        for (int id : ids) {
+            records.add(out -> {
+                out.writeByte(OP_DELETE);
+                out.writeInt(id);
+            });
+        }
+        records.add(out -> {
+            out.writeByte(OP_DELETION_MARK);
+            out.writeLong(lastDeletionId);
+        });
+        appendAsync(records);
+    }
+
+    // True once the log is long enough that the owner should write a new snapshot
+    public boolean needsCompaction() {
+        return logRecords >= COMPACT_AFTER_RECORDS;
+    }
+
+    public void clear() {
+        writer.execute(() -> {
+            try {
+                closeLog();
+                Files.deleteIfExists(snapshotPath);
+                Files.deleteIfExists(logPath);
+                logRecords = 0;
+                intactLogBytes = -1;
+            } catch (IOException e) {
+                LOG.error("Error clearing appointment cache: " + e.getMessage());
+            }
+        });
+    }
+
+    // One change, encoded in full before any of it reaches the log
+    private interface LogRecord {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    private void appendAsync(List<LogRecord> records) {
+        writer.execute(() -> {
+            // Changes without a snapshot to apply them to would be lost on the next load anyway
+            if (!Files.exists(snapshotPath)) {
+                return;
+            }
+            try {
+                if (log == null) {
+                    trimTornTail();
+                    log = new DataOutputStream(new BufferedOutputStream(
+                            new FileOutputStream(logPath.toFile(), true)));
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+                DataOutputStream record = new DataOutputStream(bytes);
+                for (LogRecord change : records) {
+                    bytes.reset();
+                    try {
+                        change.writeTo(record);
+                    } catch (IOException e) {
+                        // Only the encoding can fail here; leave this change out rather than half of it
+                        LOG.warn("Not caching a change: " + e.getMessage());
+                        continue;
+                    }
+                    bytes.writeTo(log);
+                    logRecords++;
+                }
+                log.flush();
+            } catch (IOException e) {
+                LOG.error("Error appending to appointment cache: " + e.getMessage());
+            }
+        });
+    }
+
+    // Cuts the log back to the end of its last whole record, as found by load
+    private void trimTornTail() throws IOException {
+        long intact = intactLogBytes;
+        intactLogBytes = -1;
+        if (intact < 0 || !Files.exists(logPath)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.WRITE)) {
+            if (intact < channel.size()) {
+                channel.truncate(intact);
+            }
+        }
+    }
+
+    private void closeLog() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (!MAP_FILES) {
+                ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    // keep reading until the whole file is in memory
+                }
+                buffer.flip();
+                return buffer;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static void writeAppointment(DataOutputStream out, Appointment appointment) throws IOException {
+        out.writeInt(appointment.getId());
+        out.writeInt(appointment.getUserId());
+        out.writeInt(appointment.getEpochDay());
+        writeString(out, appointment.getPatientName());
+        if (!appointment.hasDate()) {
+            // Keep malformed dates as the server sent them
+            writeString(out, appointment.getDate() == null ? "" : appointment.getDate());
+        }
+    }
+
+    private static Appointment readAppointment(ByteBuffer in) {
+        int id = in.getInt();
+        int userId = in.getInt();
+        int epochDay = in.getInt();
+        String patientName = readString(in);
+        if (epochDay == Appointment.NO_DATE) {
+            Appointment appointment = new Appointment(id, patientName, readString(in));
+            appointment.setUserId(userId);
+            return appointment;
+        }
+        return new Appointment(id, userId, patientName, epochDay);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("Value too long for the appointment cache");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
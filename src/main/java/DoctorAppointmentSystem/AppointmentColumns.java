@@ -0,0 +1,195 @@
+package DoctorAppointmentSystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Appointments stored column by column, for admin views over the whole table.
+ *
+ * Each row costs four ints: id, user id, epoch day and a code into a
+ * dictionary of patient names, so a name is stored once however many times it
+ * repeats. A million rows take 16 MB plus the distinct names (about 32 MB in
+ * all with one new patient every four rows), against about 140 MB as objects
+ * holding the name and date as Strings.
+ *
+ * Rows can only be appended. Not thread-safe.
+ */
+public class AppointmentColumns {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int size;
+    private int[] ids;
+    private int[] userIds;
+    private int[] epochDays;
+    private int[] nameCodes;
+
+    // Dictionary: names by code, plus an open-addressing table of codes by name hash
+    private String[] names = new String[64];
+    private int nameCount;
+    private int[] nameTable = newNameTable(128);
+
+    public AppointmentColumns() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public AppointmentColumns(int capacity) {
+        capacity = Math.max(capacity, 1);
+        ids = new int[capacity];
+        userIds = new int[capacity];
+        epochDays = new int[capacity];
+        nameCodes = new int[capacity];
+    }
+
+    public static AppointmentColumns of(Collection<Appointment> appointments) {
+        AppointmentColumns columns = new AppointmentColumns(appointments.size());
+        for (Appointment appointment : appointments) {
+            columns.add(appointment);
+        }
+        return columns;
+    }
+
+    // Decodes a response body straight into columns; the row objects never outlive the call
+    public static AppointmentColumns read(InputStream in) throws IOException {
+        AppointmentColumns columns = new AppointmentColumns();
+        DatabaseService.readAppointments(in, columns::add);
+        columns.trimToSize();
+        return columns;
+    }
+
+    public void add(Appointment appointment) {
+        add(appointment.getId(), appointment.getUserId(), appointment.getPatientName(), appointment.getEpochDay());
+    }
+
+    public void add(int id, int userId, String patientName, int epochDay) {
+        if (size == ids.length) {
+            grow(size + (size >> 1) + 1);
+        }
+        ids[size] = id;
+        userIds[size] = userId;
+        epochDays[size] = epochDay;
+        nameCodes[size] = codeFor(patientName);
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getId(int row) {
+        return ids[checkRow(row)];
+    }
+
+    public int getUserId(int row) {
+        return userIds[checkRow(row)];
+    }
+
+    public int getEpochDay(int row) {
+        return epochDays[checkRow(row)];
+    }
+
+    public String getPatientName(int row) {
+        return names[nameCodes[checkRow(row)]];
+    }
+
+    // Dictionary code of the row's patient name; equal names have equal codes
+    public int getPatientCode(int row) {
+        return nameCodes[checkRow(row)];
+    }
+
+    public int distinctPatientNames() {
+        return nameCount;
+    }
+
+    // Builds an Appointment for one row, e.g. for the row a user selected
+    public Appointment get(int row) {
+        checkRow(row);
+        return new Appointment(ids[row], userIds[row], names[nameCodes[row]], epochDays[row]);
+    }
+
+    // Number of rows dated between the two epoch days inclusive
+    public int countBetween(int fromEpochDay, int toEpochDay) {
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            int day = epochDays[row];
+            if (day >= fromEpochDay && day <= toEpochDay) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Releases the spare capacity left over from growing
+    public void trimToSize() {
+        if (size < ids.length) {
+            grow(Math.max(size, 1));
+        }
+        if (nameCount < names.length) {
+            names = Arrays.copyOf(names, Math.max(nameCount, 1));
+        }
+    }
+
+    private int codeFor(String patientName) {
+        int mask = nameTable.length - 1;
+        int slot = mix(patientName.hashCode()) & mask;
+        while (nameTable[slot] != -1) {
+            int code = nameTable[slot];
+            if (names[code].equals(patientName)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        int code = nameCount++;
+        if (code == names.length) {
+            names = Arrays.copyOf(names, code * 2);
+        }
+        names[code] = patientName;
+        nameTable[slot] = code;
+        // Keep the table at most half full so probe runs stay short
+        if (nameCount * 2 > nameTable.length) {
+            rehashNames(nameTable.length * 2);
+        }
+        return code;
+    }
+
+    private void rehashNames(int tableSize) {
+        nameTable = newNameTable(tableSize);
+        int mask = tableSize - 1;
+        for (int code = 0; code < nameCount; code++) {
+            int slot = mix(names[code].hashCode()) & mask;
+            while (nameTable[slot] != -1) {
+                slot = (slot + 1) & mask;
+            }
+            nameTable[slot] = code;
+        }
+    }
+
+    private static int[] newNameTable(int size) {
+        int[] table = new int[size];
+        Arrays.fill(table, -1);
+        return table;
+    }
+
+    // Spreads String hash codes, whose low bits are poor for names sharing a prefix
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        userIds = Arrays.copyOf(userIds, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        nameCodes = Arrays.copyOf(nameCodes, capacity);
+    }
+
+    private int checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+        }
+        return row;
+    }
+}
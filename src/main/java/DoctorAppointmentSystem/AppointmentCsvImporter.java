@@ -0,0 +1,262 @@
+package DoctorAppointmentSystem;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * Imports appointments from a CSV file. The file is read one record at a time
+ * and handed to a {@link BulkAppointmentWriter}, so memory use does not grow
+ * with the size of the file.
+ *
+ * The first line must be a header naming the {@code patient_name} and
+ * {@code appointment_date} columns (in any order; other columns are ignored).
+ * Fields may be quoted as in RFC 4180, including quoted line breaks. Dates
+ * must be ISO formatted (yyyy-MM-dd).
+ */
+public class AppointmentCsvImporter {
+
+    // Errors beyond this are counted but not kept, so a bad file cannot exhaust memory
+    private static final int MAX_REPORTED_ERRORS = 100;
+    // How often progress is reported, in records
+    private static final int PROGRESS_INTERVAL = 1000;
+
+    public static class RowError {
+        private final long rowNumber;
+        private final String message;
+
+        RowError(long rowNumber, String message) {
+            this.rowNumber = rowNumber;
+            this.message = message;
+        }
+
+        public long getRowNumber() {
+            return rowNumber;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Row " + rowNumber + ": " + message;
+        }
+    }
+
+    public static class ImportReport {
+        private final long rowsRead;
+        private final int rowsImported;
+        private final int rowsFailed;
+        private final List<RowError> errors;
+
+        ImportReport(long rowsRead, int rowsImported, int rowsFailed, List<RowError> errors) {
+            this.rowsRead = rowsRead;
+            this.rowsImported = rowsImported;
+            this.rowsFailed = rowsFailed;
+            this.errors = errors;
+        }
+
+        public long getRowsRead() {
+            return rowsRead;
+        }
+
+        public int getRowsImported() {
+            return rowsImported;
+        }
+
+        public int getRowsFailed() {
+            return rowsFailed;
+        }
+
+        // The first errors found, at most MAX_REPORTED_ERRORS of them
+        public List<RowError> getErrors() {
+            return errors;
+        }
+    }
+
+    private final AppointmentRepository repository;
+    private final User user;
+
+    private final List<RowError> errors = Collections.synchronizedList(new ArrayList<>());
+    private int invalidRows;
+
+    public AppointmentCsvImporter(AppointmentRepository repository, User user) {
+        this.repository = repository;
+        this.user = user;
+    }
+
+    public ImportReport importFile(Path file, IntConsumer onProgress) throws IOException, InterruptedException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(reader, onProgress);
+        }
+    }
+
+    /**
+     * Reads every record and saves the valid ones. Blocks until the last batch
+     * has been answered. {@code onProgress} receives the number of records
+     * read so far and may be null.
+     */
+    public ImportReport importFrom(Reader input, IntConsumer onProgress) throws IOException, InterruptedException {
+        CsvReader csv = new CsvReader(input);
+        List<String> header = csv.nextRecord();
+        if (header == null) {
+            throw new IOException("The file is empty");
+        }
+        int nameColumn = indexOf(header, "patient_name");
+        int dateColumn = indexOf(header, "appointment_date");
+        if (nameColumn < 0 || dateColumn < 0) {
+            throw new IOException("The header must contain patient_name and appointment_date columns");
+        }
+
+        BulkAppointmentWriter writer = new BulkAppointmentWriter(repository, user,
+                (row, appointment, error) -> recordError(row, "Rejected by the server: " + error));
+
+        long rowsRead = 0;
+        List<String> record;
+        while ((record = csv.nextRecord()) != null) {
+            rowsRead++;
+            // Row numbers count the header as row 1, matching what spreadsheets show
+            long rowNumber = rowsRead + 1;
+
+            if (record.size() == 1 && record.get(0).isEmpty()) {
+                continue; // blank line
+            }
+            Appointment appointment = toAppointment(record, nameColumn, dateColumn, rowNumber);
+            if (appointment != null) {
+                writer.add(appointment, rowNumber);
+            }
+            if (onProgress != null && rowsRead % PROGRESS_INTERVAL == 0) {
+                onProgress.accept((int) rowsRead);
+            }
+        }
+        writer.close();
+
+        List<RowError> reported;
+        synchronized (errors) {
+            reported = new ArrayList<>(errors);
+        }
+        return new ImportReport(rowsRead, writer.getInserted(), invalidRows + writer.getFailed(), reported);
+    }
+
+    private Appointment toAppointment(List<String> record, int nameColumn, int dateColumn, long rowNumber) {
+        if (record.size() <= Math.max(nameColumn, dateColumn)) {
+            recordError(rowNumber, "Expected at least " + (Math.max(nameColumn, dateColumn) + 1)
+                    + " columns but found " + record.size());
+            invalidRows++;
+            return null;
+        }
+
+        String patientName = record.get(nameColumn).trim();
+        String date = record.get(dateColumn).trim();
+        if (patientName.isEmpty()) {
+            recordError(rowNumber, "Patient name is empty");
+            invalidRows++;
+            return null;
+        }
+        int epochDay = Appointment.parseEpochDay(date);
+        if (epochDay == Appointment.NO_DATE) {
+            recordError(rowNumber, "Invalid date '" + date + "', expected yyyy-MM-dd");
+            invalidRows++;
+            return null;
+        }
+        return new Appointment(0, 0, patientName, epochDay);
+    }
+
+    private void recordError(long rowNumber, String message) {
+        synchronized (errors) {
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new RowError(rowNumber, message));
+            }
+        }
+    }
+
+    private static int indexOf(List<String> header, String column) {
+        for (int i = 0; i < header.size(); i++) {
+            // Tolerate a UTF-8 byte order mark and stray spaces from spreadsheet exports
+            String name = header.get(i).replace("\uFEFF", "").trim();
+            if (name.equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // Minimal RFC 4180 record reader
+    static class CsvReader {
+        private final Reader in;
+        private final StringBuilder field = new StringBuilder();
+        private int lookahead = -2;
+
+        CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        // Returns the fields of the next record, or null at end of input
+        List<String> nextRecord() throws IOException {
+            int c = read();
+            if (c == -1) {
+                return null;
+            }
+
+            List<String> record = new ArrayList<>();
+            boolean quoted = false;
+            field.setLength(0);
+
+            while (true) {
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IOException("Unterminated quoted field");
+                    } else if (c == '"') {
+                        int next = read();
+                        if (next == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            unread(next);
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    quoted = true;
+                } else if (c == ',') {
+                    record.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\r' || c == '\n' || c == -1) {
+                    if (c == '\r') {
+                        int next = read();
+                        if (next != '\n') {
+                            unread(next);
+                        }
+                    }
+                    record.add(field.toString());
+                    return record;
+                } else {
+                    field.append((char) c);
+                }
+                c = read();
+            }
+        }
+
+        private int read() throws IOException {
+            if (lookahead != -2) {
+                int c = lookahead;
+                lookahead = -2;
+                return c;
+            }
+            return in.read();
+        }
+
+        private void unread(int c) {
+            lookahead = c;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package DoctorAppointmentSystem;
+
+// One row of the appointment_deletions tombstone feed
+public class AppointmentDeletion {
+    private final long id;
+    private final int appointmentId;
+    
+    public AppointmentDeletion(long id, int appointmentId) {
+        this.id = id;
+        this.appointmentId = appointmentId;
+    }
+    
+    public long getId() {
+        return id;
+    }
+    
+    public int getAppointmentId() {
+        return appointmentId;
+    }
+}
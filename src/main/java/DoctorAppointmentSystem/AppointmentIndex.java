@@ -0,0 +1,135 @@
+package DoctorAppointmentSystem;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Appointments bucketed by date and by patient-name word, kept in step with an
+ * observable appointment list. Per-day counts, month ranges and name lookups
+ * cost a tree lookup plus the size of the answer, however many appointments
+ * there are in total.
+ *
+ * Rows without a valid date are not indexed. Methods are synchronized so
+ * views may read from a background thread while the list is edited on the
+ * FX thread.
+ */
+public class AppointmentIndex {
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[\\s,.'-]+");
+
+    private final TreeMap<LocalDate, List<Appointment>> byDate = new TreeMap<>();
+    // Each lower-cased word of a patient name, e.g. "john" and "smith" for "John Smith"
+    private final TreeMap<String, List<Appointment>> byNameWord = new TreeMap<>();
+    private int size;
+
+    public AppointmentIndex(ObservableList<Appointment> source) {
+        addAll(source);
+        source.addListener((ListChangeListener<Appointment>) change -> {
+            while (change.next()) {
+                if (change.wasRemoved()) {
+                    removeAll(change.getRemoved());
+                }
+                if (change.wasAdded()) {
+                    addAll(change.getAddedSubList());
+                }
+            }
+        });
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int countOn(LocalDate date) {
+        List<Appointment> bucket = byDate.get(date);
+        return bucket == null ? 0 : bucket.size();
+    }
+
+    public synchronized List<Appointment> on(LocalDate date) {
+        List<Appointment> bucket = byDate.get(date);
+        return bucket == null ? Collections.emptyList() : new ArrayList<>(bucket);
+    }
+
+    // Counts for every day of the month; index 0 is the 1st
+    public synchronized int[] countsForMonth(YearMonth month) {
+        int[] counts = new int[month.lengthOfMonth()];
+        for (Map.Entry<LocalDate, List<Appointment>> entry
+                : byDate.subMap(month.atDay(1), true, month.atEndOfMonth(), true).entrySet()) {
+            counts[entry.getKey().getDayOfMonth() - 1] = entry.getValue().size();
+        }
+        return counts;
+    }
+
+    // Appointments from the first to the last date inclusive, in date order
+    public synchronized List<Appointment> between(LocalDate from, LocalDate to) {
+        List<Appointment> result = new ArrayList<>();
+        for (List<Appointment> bucket : byDate.subMap(from, true, to, true).values()) {
+            result.addAll(bucket);
+        }
+        return result;
+    }
+
+    /**
+     * Appointments whose patient name has a word starting with {@code prefix}
+     * (case-insensitive), e.g. "smi" finds "John Smith". Costs a tree lookup
+     * plus the size of the answer.
+     */
+    public synchronized Set<Appointment> withNameWordPrefix(String prefix) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        Set<Appointment> result = new LinkedHashSet<>();
+        for (List<Appointment> bucket : byNameWord.subMap(key, true, key + Character.MAX_VALUE, false).values()) {
+            result.addAll(bucket);
+        }
+        return result;
+    }
+
+    // The words a name is indexed under; queries should be split the same way
+    public static String[] nameWords(String text) {
+        String trimmed = text.trim().toLowerCase(Locale.ROOT);
+        return trimmed.isEmpty() ? new String[0] : WORD_SEPARATOR.split(trimmed);
+    }
+
+    private synchronized void addAll(List<? extends Appointment> appointments) {
+        for (Appointment appointment : appointments) {
+            LocalDate date = appointment.getLocalDate();
+            if (date != null) {
+                byDate.computeIfAbsent(date, d -> new ArrayList<>()).add(appointment);
+                size++;
+            }
+            for (String word : nameWords(appointment.getPatientName())) {
+                byNameWord.computeIfAbsent(word, w -> new ArrayList<>(1)).add(appointment);
+            }
+        }
+    }
+
+    private synchronized void removeAll(List<? extends Appointment> appointments) {
+        for (Appointment appointment : appointments) {
+            LocalDate date = appointment.getLocalDate();
+            List<Appointment> bucket = date == null ? null : byDate.get(date);
+            if (bucket != null && bucket.remove(appointment)) {
+                size--;
+                if (bucket.isEmpty()) {
+                    byDate.remove(date);
+                }
+            }
+            for (String word : nameWords(appointment.getPatientName())) {
+                List<Appointment> named = byNameWord.get(word);
+                if (named != null && named.remove(appointment) && named.isEmpty()) {
+                    byNameWord.remove(word);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package DoctorAppointmentSystem;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+
+import java.time.format.DateTimeFormatter;
+
+/**
+ * List row showing the patient name and a readable date. The ListView only
+ * creates enough of these to fill the viewport and rebinds them while
+ * scrolling, so each one builds its nodes once.
+ */
+public class AppointmentListCell extends ListCell<Appointment> {
+
+    // Rows are all the same height, which lets the ListView skip measuring them
+    public static final double HEIGHT = 32;
+
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("EEE d MMM yyyy");
+
+    private final HBox row = new HBox(10);
+    private final Label nameLabel = new Label();
+    private final Label dateLabel = new Label();
+
+    public AppointmentListCell() {
+        nameLabel.setFont(Font.font("System", FontWeight.BOLD, 13));
+        dateLabel.setStyle("-fx-text-fill: #757575;");
+
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        row.setAlignment(Pos.CENTER_LEFT);
+        row.getChildren().addAll(nameLabel, spacer, dateLabel);
+
+        setText(null);
+    }
+
+    @Override
+    protected void updateItem(Appointment appointment, boolean empty) {
+        super.updateItem(appointment, empty);
+        if (empty || appointment == null) {
+            setGraphic(null);
+            return;
+        }
+        nameLabel.setText(appointment.getPatientName());
+        dateLabel.setText(appointment.hasDate()
+                ? appointment.getLocalDate().format(DATE_FORMAT)
+                : appointment.getDate());
+        setGraphic(row);
+    }
+}
@@ -0,0 +1,72 @@
+package DoctorAppointmentSystem;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Where appointments and users are stored. The controllers and the classes
+ * that sync, queue and import appointments only talk to this interface, so
+ * the same code runs against Supabase ({@link DatabaseService}), a local
+ * file ({@link EmbeddedAppointmentRepository}) or plain memory
+ * ({@link InMemoryAppointmentRepository}). {@link Config#getRepository()}
+ * picks one from the configuration.
+ *
+ * Every operation is asynchronous. Implementations that answer from memory
+ * may return futures that are already complete, so callers must not assume
+ * the continuation runs on another thread.
+ */
+public interface AppointmentRepository {
+
+    // Identifies the store, e.g. the Supabase URL; local caches and journals are kept per location
+    String getLocation();
+
+    /**
+     * Inserts several appointments as one unit: on failure none of them are
+     * saved. The owner is {@code user} when given, otherwise each row's own
+     * user id.
+     */
+    CompletableFuture<Void> insertAppointmentBatchAsync(List<Appointment> batch, User user);
+
+    /**
+     * Saves a batch keyed on the rows' client references, merging rows that
+     * already exist so the batch can be resent safely. Completes with the
+     * saved rows, including their ids.
+     */
+    CompletableFuture<List<Appointment>> upsertAppointmentBatchAsync(List<Appointment> batch);
+
+    CompletableFuture<List<Appointment>> getAllAppointmentsAsync();
+
+    /**
+     * Walks the appointments with an id greater than afterId in id order,
+     * handing them to {@code onPage} a page at a time; only the named
+     * patient's rows unless patientName is null. Cancelling the returned
+     * future stops before the next page.
+     *
+     * @return a future with the number of rows delivered
+     */
+    CompletableFuture<Integer> fetchAppointmentPagesAsync(int afterId, int pageSize, String patientName,
+                                                          Consumer<List<Appointment>> onPage);
+
+    // A number that changes whenever the appointments do, or null when the store cannot tell
+    CompletableFuture<Long> fetchChangeTokenAsync();
+
+    // Tombstones recorded after the given tombstone id, oldest first
+    CompletableFuture<List<AppointmentDeletion>> fetchDeletionsAsync(long afterDeletionId);
+
+    // Id of the newest tombstone, or 0 if there are none
+    CompletableFuture<Long> fetchLatestDeletionIdAsync();
+
+    // Deletes one row by id; true when the delete went through, including when the row was already gone
+    CompletableFuture<Boolean> deleteAppointmentAsync(int appointmentId);
+
+    // The user without their password, or null if the name or password is wrong
+    CompletableFuture<User> authenticateUserAsync(String username, String password);
+
+    CompletableFuture<Boolean> registerUserAsync(User user);
+
+    // Push notifications for changes made by other clients, or null if the store has none
+    default RealtimeChannel subscribeToAppointmentChanges(RealtimeChannel.Listener listener) {
+        return null;
+    }
+}
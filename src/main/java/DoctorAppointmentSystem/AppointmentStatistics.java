@@ -0,0 +1,116 @@
+package DoctorAppointmentSystem;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The figures shown on the admin dashboard. Either computed in a single pass
+ * over the appointments, or taken from the running totals in
+ * {@link AppointmentAnalytics}. Kept free of JavaFX so it can be benchmarked.
+ */
+public class AppointmentStatistics {
+
+    // Months shown in the chart, ending with the current one
+    public static final int MONTHS_SHOWN = 6;
+
+    private final int total;
+    private final int thisMonth;
+    private final int today;
+    private final int uniquePatients;
+    private final YearMonth firstMonth;
+    private final int[] monthlyCounts;
+
+    AppointmentStatistics(int total, int thisMonth, int today, int uniquePatients,
+                                  YearMonth firstMonth, int[] monthlyCounts) {
+        this.total = total;
+        this.thisMonth = thisMonth;
+        this.today = today;
+        this.uniquePatients = uniquePatients;
+        this.firstMonth = firstMonth;
+        this.monthlyCounts = monthlyCounts;
+    }
+
+    public static AppointmentStatistics of(List<Appointment> appointments, LocalDate currentDate) {
+        Accumulator accumulator = new Accumulator(currentDate);
+        Set<String> patients = new HashSet<>();
+        for (Appointment appointment : appointments) {
+            patients.add(appointment.getPatientName());
+            accumulator.add(appointment.getEpochDay());
+        }
+        return accumulator.finish(appointments.size(), patients.size());
+    }
+
+    // Same figures from the columnar store; names there are already distinct codes
+    public static AppointmentStatistics of(AppointmentColumns columns, LocalDate currentDate) {
+        Accumulator accumulator = new Accumulator(currentDate);
+        for (int row = 0; row < columns.size(); row++) {
+            accumulator.add(columns.getEpochDay(row));
+        }
+        return accumulator.finish(columns.size(), columns.distinctPatientNames());
+    }
+
+    // Date counting shared by both sources, done on epoch days so nothing is parsed
+    private static class Accumulator {
+        private final int today;
+        private final YearMonth firstMonth;
+        // Epoch day each chart month starts on, plus the day after the last one
+        private final int[] monthStarts = new int[MONTHS_SHOWN + 1];
+        private final int[] monthlyCounts = new int[MONTHS_SHOWN];
+        private int todayCount;
+
+        Accumulator(LocalDate currentDate) {
+            today = (int) currentDate.toEpochDay();
+            firstMonth = YearMonth.from(currentDate).minusMonths(MONTHS_SHOWN - 1);
+            for (int i = 0; i <= MONTHS_SHOWN; i++) {
+                monthStarts[i] = (int) firstMonth.plusMonths(i).atDay(1).toEpochDay();
+            }
+        }
+
+        void add(int epochDay) {
+            if (epochDay == today) {
+                todayCount++;
+            }
+            // NO_DATE is below every month start, so rows without a date are skipped here
+            if (epochDay >= monthStarts[0] && epochDay < monthStarts[MONTHS_SHOWN]) {
+                int month = MONTHS_SHOWN - 1;
+                while (epochDay < monthStarts[month]) {
+                    month--;
+                }
+                monthlyCounts[month]++;
+            }
+        }
+
+        AppointmentStatistics finish(int total, int uniquePatients) {
+            return new AppointmentStatistics(total, monthlyCounts[MONTHS_SHOWN - 1], todayCount, uniquePatients,
+                    firstMonth, monthlyCounts);
+        }
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getThisMonth() {
+        return thisMonth;
+    }
+
+    public int getToday() {
+        return today;
+    }
+
+    public int getUniquePatients() {
+        return uniquePatients;
+    }
+
+    // The month at the given chart position; 0 is the oldest
+    public YearMonth getMonth(int index) {
+        return firstMonth.plusMonths(index);
+    }
+
+    public int getMonthlyCount(int index) {
+        return monthlyCounts[index];
+    }
+}
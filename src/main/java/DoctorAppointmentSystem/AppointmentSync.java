@@ -0,0 +1,305 @@
+package DoctorAppointmentSystem;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Keeps a local appointment list in step with the server by fetching only what
+ * changed since the last sync: rows above the id high-water mark, plus the
+ * tombstones recorded in appointment_deletions since the last one seen.
+ * Because ids are not commit-ordered, the delta is backed by a full reconcile
+ * whenever the server reports a change the delta cannot account for, and at
+ * least every few minutes while changes keep coming.
+ *
+ * The bookkeeping is not thread-safe; call everything except
+ * {@link #fetchChangesAsync()} from the thread that owns the list (the FX thread).
+ */
+public class AppointmentSync {
+
+    // Ids come from a sequence, and a row can commit after a higher id is already
+    // visible, so every sync re-reads a small window below the high-water mark
+    private static final int ID_OVERLAP = 50;
+    private static final int PAGE_SIZE = 1000;
+    // A row that commits later than that is only found by a full reconcile, which
+    // runs when the token moves without new rows or tombstones, or after this long
+    private static final long RECONCILE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    // Rows fetched from the server that have not been merged yet
+    public static class Changes {
+        private final List<Appointment> rows;
+        private final List<AppointmentDeletion> deletions;
+        private final Long changeToken;
+        // True when rows holds everything on the server, not just the delta
+        private final boolean reconciled;
+
+        Changes(List<Appointment> rows, List<AppointmentDeletion> deletions, Long changeToken, boolean reconciled) {
+            this.rows = rows;
+            this.deletions = deletions;
+            this.changeToken = changeToken;
+            this.reconciled = reconciled;
+        }
+    }
+
+    private final AppointmentRepository repository;
+    // Only this patient's rows are fetched; null for everyone's
+    private final String patientName;
+    private final Map<Integer, Appointment> knownById = new HashMap<>();
+    // Bookings shown locally that the server has not confirmed yet, by client reference
+    private final Map<String, Appointment> pendingByRef = new LinkedHashMap<>();
+    private int highWaterId;
+    private long lastDeletionId;
+    private boolean primed;
+    // Server change token as of the last applied sync; null when unknown
+    private Long syncedChangeToken;
+    private long lastReconcileNanos = System.nanoTime();
+
+    // Optional; when set, every merged change is also written to the local cache
+    private AppointmentCache cache;
+
+    public AppointmentSync(AppointmentRepository repository) {
+        this(repository, null);
+    }
+
+    // Syncs only the named patient's appointments, filtered on the server
+    public AppointmentSync(AppointmentRepository repository, String patientName) {
+        this.repository = repository;
+        this.patientName = patientName;
+    }
+
+    public void setCache(AppointmentCache cache) {
+        this.cache = cache;
+    }
+
+    // Picks up where a previous session left off, using the rows and marks from the local cache
+    public void restore(AppointmentCache.Contents contents) {
+        knownById.clear();
+        for (Appointment appointment : contents.getAppointments()) {
+            knownById.put(appointment.getId(), appointment);
+        }
+        highWaterId = contents.getHighWaterId();
+        lastDeletionId = contents.getLastDeletionId();
+        primed = true;
+        syncedChangeToken = null;
+        lastReconcileNanos = System.nanoTime();
+    }
+
+    // Writes everything currently known to the cache, e.g. after a full load
+    public void saveSnapshot() {
+        if (cache != null && primed) {
+            cache.writeSnapshotAsync(knownById.values(), highWaterId, lastDeletionId);
+        }
+    }
+
+    // Starts over before a full load; deletionHighWater should be read before the load begins
+    public void reset(long deletionHighWater) {
+        knownById.clear();
+        highWaterId = 0;
+        lastDeletionId = deletionHighWater;
+        primed = true;
+        syncedChangeToken = null;
+        lastReconcileNanos = System.nanoTime();
+    }
+
+    // Used when the deletion feed is unavailable; the next refresh has to be a full load
+    public void invalidate() {
+        knownById.clear();
+        highWaterId = 0;
+        primed = false;
+        syncedChangeToken = null;
+    }
+
+    public boolean isPrimed() {
+        return primed;
+    }
+
+    // Records a row the local list already holds (from a full load or a local insert)
+    public void track(Appointment appointment) {
+        if (appointment.getId() > 0) {
+            knownById.put(appointment.getId(), appointment);
+            highWaterId = Math.max(highWaterId, appointment.getId());
+        }
+    }
+
+    // A row this client inserted itself
+    public void recordInsert(Appointment appointment) {
+        track(appointment);
+        if (cache != null && primed && appointment.getId() > 0) {
+            cache.appendAddedAsync(List.of(appointment));
+        }
+    }
+
+    // A booking from the outbox, shown before it has an id
+    public void trackPending(Appointment appointment) {
+        pendingByRef.put(appointment.getClientRef(), appointment);
+    }
+
+    public Collection<Appointment> getPending() {
+        return pendingByRef.values();
+    }
+
+    /**
+     * Matches a row from the server to a booking still shown as pending. The
+     * local object takes the row's id and is tracked from then on, so the row
+     * is not added a second time.
+     *
+     * @return the local booking, or null if the row is not one of them
+     */
+    public Appointment confirmPending(Appointment saved) {
+        if (saved.getClientRef() == null) {
+            return null;
+        }
+        Appointment local = pendingByRef.remove(saved.getClientRef());
+        if (local != null) {
+            local.setId(saved.getId());
+            local.setUserId(saved.getUserId());
+            recordInsert(local);
+        }
+        return local;
+    }
+
+    // Re-sets an element whose sort key changed, so sorted views of the list move it
+    public static void replaceInPlace(List<Appointment> target, Appointment appointment) {
+        // Bookings are appended, so they are usually near the end
+        int index = target.lastIndexOf(appointment);
+        if (index >= 0) {
+            target.set(index, appointment);
+        }
+    }
+
+    public Appointment dropPending(String clientRef) {
+        return pendingByRef.remove(clientRef);
+    }
+
+    public void forget(Appointment appointment) {
+        if (knownById.remove(appointment.getId()) != null && cache != null && primed) {
+            cache.appendDeletedAsync(List.of(appointment.getId()), lastDeletionId);
+        }
+    }
+
+    /**
+     * Fetches what changed since the last applied sync. The server's change
+     * token is probed first; if it has not moved, nothing else is requested.
+     * If it moved but the delta holds nothing new, or a reconcile is overdue,
+     * every row is fetched again so late-committed ones are not missed.
+     */
+    public CompletableFuture<Changes> fetchChangesAsync() {
+        int afterId = Math.max(0, highWaterId - ID_OVERLAP);
+        long afterDeletionId = lastDeletionId;
+        Long knownToken = syncedChangeToken;
+        // Snapshot for the fetch thread: which ids in the re-read window are already known
+        int knownHighWater = highWaterId;
+        Set<Integer> knownInWindow = new HashSet<>();
+        for (int id = afterId + 1; id <= knownHighWater; id++) {
+            if (knownById.containsKey(id)) {
+                knownInWindow.add(id);
+            }
+        }
+        boolean reconcileDue = System.nanoTime() - lastReconcileNanos >= RECONCILE_INTERVAL_NANOS;
+
+        return repository.fetchChangeTokenAsync().thenCompose(token -> {
+            if (token != null && token.equals(knownToken)) {
+                return CompletableFuture.completedFuture(new Changes(List.of(), List.of(), token, false));
+            }
+
+            // The token is read before the rows, so a write in between is picked up by the next sync
+            List<Appointment> rows = new ArrayList<>();
+            CompletableFuture<List<AppointmentDeletion>> deletions = repository.fetchDeletionsAsync(afterDeletionId);
+            CompletableFuture<Integer> newRows = repository.fetchAppointmentPagesAsync(afterId, PAGE_SIZE, patientName, page -> {
+                synchronized (rows) {
+                    rows.addAll(page);
+                }
+            });
+            return newRows.thenCombine(deletions, (count, deleted) -> new Changes(rows, deleted, token, false))
+                    .thenCompose(changes -> {
+                        // Without a previous token there is nothing to compare; the last full load is recent enough
+                        boolean unexplained = knownToken != null && changes.deletions.isEmpty()
+                                && changes.rows.stream().allMatch(row -> knownInWindow.contains(row.getId()));
+                        if (!unexplained && !reconcileDue) {
+                            return CompletableFuture.completedFuture(changes);
+                        }
+                        return reconcileAsync(changes);
+                    });
+        });
+    }
+
+    // Walks every row from the start; apply() only adds the ones it does not know yet
+    private CompletableFuture<Changes> reconcileAsync(Changes delta) {
+        List<Appointment> rows = new ArrayList<>();
+        return repository.fetchAppointmentPagesAsync(0, PAGE_SIZE, patientName, page -> {
+            synchronized (rows) {
+                rows.addAll(page);
+            }
+        }).thenApply(count -> new Changes(rows, delta.deletions, delta.changeToken, true));
+    }
+
+    /**
+     * Merges fetched changes into the target list with one add and one remove
+     * operation. Rows rejected by {@code visible} are tracked but not shown.
+     *
+     * @return true if the list changed
+     */
+    public boolean apply(Changes changes, List<Appointment> target, Predicate<Appointment> visible) {
+        List<Appointment> newRows = new ArrayList<>();
+        List<Appointment> added = new ArrayList<>();
+        for (Appointment row : changes.rows) {
+            Appointment own = confirmPending(row);
+            if (own != null) {
+                // Our own booking coming back: it is already listed, but its id changed
+                replaceInPlace(target, own);
+                continue;
+            }
+            if (!knownById.containsKey(row.getId())) {
+                track(row);
+                newRows.add(row);
+                if (visible.test(row)) {
+                    added.add(row);
+                }
+            }
+        }
+
+        List<Integer> removedIds = new ArrayList<>();
+        Set<Appointment> removed = new HashSet<>();
+        for (AppointmentDeletion deletion : changes.deletions) {
+            Appointment gone = knownById.remove(deletion.getAppointmentId());
+            if (gone != null) {
+                removedIds.add(gone.getId());
+                removed.add(gone);
+            }
+            lastDeletionId = Math.max(lastDeletionId, deletion.getId());
+        }
+
+        if (cache != null) {
+            if (!newRows.isEmpty()) {
+                cache.appendAddedAsync(newRows);
+            }
+            if (!changes.deletions.isEmpty()) {
+                cache.appendDeletedAsync(removedIds, lastDeletionId);
+            }
+            if (cache.needsCompaction()) {
+                saveSnapshot();
+            }
+        }
+
+        syncedChangeToken = changes.changeToken;
+        if (changes.reconciled) {
+            lastReconcileNanos = System.nanoTime();
+        }
+
+        if (!removed.isEmpty()) {
+            target.removeAll(removed);
+        }
+        if (!added.isEmpty()) {
+            target.addAll(added);
+        }
+        return !added.isEmpty() || !removed.isEmpty();
+    }
+}
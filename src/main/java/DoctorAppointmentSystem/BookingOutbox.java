@@ -0,0 +1,503 @@
+package DoctorAppointmentSystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind queue for bookings. A booking is appended to a journal on
+ * disk and handed back straight away, so it can be shown before the server
+ * has seen it; a background flusher then sends queued bookings in batches
+ * until the server accepts them.
+ *
+ * Every booking carries a random client reference that the server upserts
+ * on, so a batch can be resent after a timeout without creating duplicates.
+ * Bookings that were queued when the application stopped are sent on the
+ * next start.
+ *
+ * Journal writes made close together share one fsync. All file and queue
+ * work happens on a single background thread.
+ */
+public class BookingOutbox {
+    private static final Log LOG = Log.get("outbox");
+
+    // Called on the outbox thread; hand off to the FX thread before touching the UI
+    public interface Listener {
+        // Saved rows as returned by the server, with their ids and client references
+        void onDelivered(List<Appointment> saved);
+
+        // The server refused this booking for a reason that retrying will not fix
+        void onRejected(Appointment booking, String reason);
+
+        // A batch failed and will be retried; pending is the number still queued
+        default void onRetrying(int pending, Throwable error) {
+        }
+    }
+
+    private static final byte OP_QUEUED = 1;
+    private static final byte OP_DONE = 2;
+
+    private static final int BATCH_SIZE = 100;
+    private static final long INITIAL_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    // Once this many records are finished the journal is rewritten with only the pending ones
+    private static final int COMPACT_AFTER_DONE = 1_000;
+
+    private final AppointmentRepository repository;
+    private final Path journalPath;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "booking-outbox");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Listener listener;
+
+    // The fields below are only touched on the outbox thread
+    private final Map<String, Appointment> pending = new LinkedHashMap<>();
+    private FileChannel journal;
+    private int doneRecords;
+
+    // Group commit: appends waiting for the next fsync, and whether one is already scheduled
+    private final List<byte[]> unwritten = new ArrayList<>();
+    private final List<CompletableFuture<Void>> unsynced = new ArrayList<>();
+    private boolean syncScheduled;
+
+    // Client references of the batch on its way to the server, if any
+    private final Map<String, Appointment> sending = new LinkedHashMap<>();
+    private boolean retryScheduled;
+    private int failedAttempts;
+    // Batch size drops to one after a rejection, to find the row the server objects to
+    private int batchLimit = BATCH_SIZE;
+    private boolean closed;
+
+    public BookingOutbox(AppointmentRepository repository, String cacheDir) {
+        this.repository = repository;
+        // One journal per store (for Supabase, per project), next to the appointment cache
+        this.journalPath = Paths.get(cacheDir, "outbox-" + Integer.toHexString(repository.getLocation().hashCode()) + ".journal");
+    }
+
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Opens the journal and starts sending. Completes with copies of the
+     * bookings still waiting from an earlier session, oldest first.
+     */
+    public CompletableFuture<List<Appointment>> open() {
+        return supplyOnOutbox(() -> {
+            try {
+                Files.createDirectories(journalPath.getParent());
+                journal = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                replay();
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            List<Appointment> waiting = new ArrayList<>(pending.size());
+            for (Appointment booking : pending.values()) {
+                waiting.add(new Appointment(booking));
+            }
+            sendNext();
+            return waiting;
+        });
+    }
+
+    /**
+     * Queues a booking and gives it a client reference. The appointment is
+     * not touched again, so it can go straight into the UI. The returned
+     * future completes once the booking is safely on disk.
+     */
+    public CompletableFuture<Void> enqueue(Appointment booking) {
+        booking.setClientRef(UUID.randomUUID().toString());
+        Appointment queued = new Appointment(booking);
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        boolean accepted = runOnOutbox(() -> {
+            if (closed || journal == null) {
+                durable.completeExceptionally(notOpen());
+                return;
+            }
+            try {
+                pending.put(queued.getClientRef(), queued);
+                append(encodeQueued(queued), durable);
+                sendNext();
+            } catch (IOException e) {
+                pending.remove(queued.getClientRef());
+                durable.completeExceptionally(e);
+            }
+        });
+        if (!accepted) {
+            durable.completeExceptionally(notOpen());
+        }
+        return durable;
+    }
+
+    /**
+     * Removes a booking that has not been sent yet. Completes with false if
+     * it is already on its way to the server or saved there, in which case
+     * it has to be deleted like any other appointment.
+     */
+    public CompletableFuture<Boolean> cancel(String clientRef) {
+        return supplyOnOutbox(() -> {
+            if (closed) {
+                throw new CompletionException(notOpen());
+            }
+            if (sending.containsKey(clientRef) || !pending.containsKey(clientRef)) {
+                return false;
+            }
+            pending.remove(clientRef);
+            markDone(List.of(clientRef));
+            return true;
+        });
+    }
+
+    // Skips any backoff wait, e.g. when the user presses Refresh
+    public void flushNow() {
+        runOnOutbox(() -> {
+            failedAttempts = 0;
+            retryScheduled = false;
+            sendNext();
+        });
+    }
+
+    // Safe to call more than once; a batch still on its way is resent on the next open
+    public void close() {
+        runOnOutbox(() -> {
+            closed = true;
+            try {
+                syncJournal();
+                if (journal != null) {
+                    journal.close();
+                }
+            } catch (IOException e) {
+                LOG.error("Error closing booking outbox: " + e.getMessage());
+            }
+            executor.shutdown();
+        });
+    }
+
+    /**
+     * Hands work to the outbox thread. Returns false, dropping the work, once
+     * close has stopped that thread; callers still get an answer, as the
+     * thread itself would have given after close.
+     */
+    private boolean runOnOutbox(Runnable work) {
+        try {
+            executor.execute(work);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private <T> CompletableFuture<T> supplyOnOutbox(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(notOpen());
+        }
+    }
+
+    private static IOException notOpen() {
+        return new IOException("Booking outbox is not open");
+    }
+
+    private void sendNext() {
+        if (closed || !sending.isEmpty() || retryScheduled || pending.isEmpty()) {
+            return;
+        }
+        List<Appointment> batch = new ArrayList<>(Math.min(batchLimit, pending.size()));
+        for (Appointment booking : pending.values()) {
+            if (batch.size() == batchLimit) {
+                break;
+            }
+            batch.add(booking);
+            sending.put(booking.getClientRef(), booking);
+        }
+
+        repository.upsertAppointmentBatchAsync(batch).whenComplete((saved, error) -> runOnOutbox(() -> {
+            sending.clear();
+            // After close the journal still lists the batch as queued, so the next open resends it
+            if (closed) {
+                return;
+            }
+            if (error == null) {
+                delivered(batch, saved);
+            } else {
+                failed(batch, unwrap(error));
+            }
+        }));
+    }
+
+    private void delivered(List<Appointment> batch, List<Appointment> saved) {
+        List<String> done = new ArrayList<>(batch.size());
+        for (Appointment booking : batch) {
+            if (pending.remove(booking.getClientRef()) != null) {
+                done.add(booking.getClientRef());
+            }
+        }
+        markDone(done);
+        failedAttempts = 0;
+        if (batch.size() == 1) {
+            batchLimit = Math.min(BATCH_SIZE, batchLimit * 2);
+        }
+
+        Listener current = listener();
+        if (current != null) {
+            current.onDelivered(saved);
+        }
+        sendNext();
+    }
+
+    private void failed(List<Appointment> batch, Throwable error) {
+        // Local stores reject invalid rows with IllegalArgumentException
+        boolean rejected = error instanceof HttpStatusException && !((HttpStatusException) error).isRetryable()
+                || error instanceof IllegalArgumentException;
+        if (rejected && batch.size() > 1) {
+            // One bad row fails the whole statement; resend singly to find it
+            batchLimit = 1;
+            sendNext();
+            return;
+        }
+        if (rejected) {
+            Appointment booking = batch.get(0);
+            pending.remove(booking.getClientRef());
+            markDone(List.of(booking.getClientRef()));
+            Listener current = listener();
+            if (current != null) {
+                current.onRejected(booking, error.getMessage());
+            }
+            sendNext();
+            return;
+        }
+
+        // Exponential backoff with jitter, so clients coming back online do not all retry at once
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(failedAttempts, 6));
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        failedAttempts++;
+        retryScheduled = true;
+        executor.schedule(() -> {
+            retryScheduled = false;
+            sendNext();
+        }, delay, TimeUnit.MILLISECONDS);
+
+        Listener current = listener();
+        if (current != null) {
+            current.onRetrying(pending.size(), error);
+        }
+    }
+
+    private synchronized Listener listener() {
+        return listener;
+    }
+
+    // Finished records only need to reach the disk eventually: replaying one just resends a saved row
+    private void markDone(List<String> clientRefs) {
+        if (clientRefs.isEmpty()) {
+            return;
+        }
+        try {
+            if (pending.isEmpty() || doneRecords + clientRefs.size() >= COMPACT_AFTER_DONE) {
+                compact();
+                return;
+            }
+            for (String clientRef : clientRefs) {
+                append(encodeDone(clientRef), null);
+            }
+            doneRecords += clientRefs.size();
+        } catch (IOException e) {
+            LOG.error("Error updating booking outbox: " + e.getMessage());
+        }
+    }
+
+    private void append(byte[] record, CompletableFuture<Void> durable) {
+        unwritten.add(record);
+        if (durable != null) {
+            unsynced.add(durable);
+        }
+        // Anything appended before this task runs shares its write and fsync
+        if (!syncScheduled) {
+            syncScheduled = true;
+            executor.execute(() -> {
+                try {
+                    syncJournal();
+                } catch (IOException e) {
+                    LOG.error("Error writing booking outbox: " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    private void syncJournal() throws IOException {
+        syncScheduled = false;
+        if (unwritten.isEmpty()) {
+            return;
+        }
+        List<CompletableFuture<Void>> waiting = new ArrayList<>(unsynced);
+        unsynced.clear();
+        try {
+            int size = 0;
+            for (byte[] record : unwritten) {
+                size += record.length;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            for (byte[] record : unwritten) {
+                buffer.put(record);
+            }
+            unwritten.clear();
+            buffer.flip();
+            journal.position(journal.size());
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            journal.force(false);
+        } catch (IOException e) {
+            for (CompletableFuture<Void> future : waiting) {
+                future.completeExceptionally(e);
+            }
+            throw e;
+        }
+        for (CompletableFuture<Void> future : waiting) {
+            future.complete(null);
+        }
+    }
+
+    // Rewrites the journal with only the pending bookings, replacing the old one atomically
+    private void compact() throws IOException {
+        syncJournal();
+        Path temp = journalPath.resolveSibling(journalPath.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Appointment booking : pending.values()) {
+                ByteBuffer record = ByteBuffer.wrap(encodeQueued(booking));
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+            out.force(false);
+        }
+        journal.close();
+        Files.move(temp, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal = FileChannel.open(journalPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        doneRecords = 0;
+    }
+
+    private void replay() throws IOException {
+        ByteBuffer records = ByteBuffer.allocate((int) journal.size());
+        while (records.hasRemaining() && journal.read(records, records.position()) >= 0) {
+            // keep reading until the whole file is in memory
+        }
+        records.flip();
+
+        long intact = 0;
+        try {
+            while (records.hasRemaining()) {
+                byte op = records.get();
+                if (op == OP_QUEUED) {
+                    Appointment booking = readQueued(records);
+                    pending.put(booking.getClientRef(), booking);
+                } else if (op == OP_DONE) {
+                    pending.remove(readString(records));
+                    doneRecords++;
+                } else {
+                    break;
+                }
+                intact = records.position();
+            }
+        } catch (BufferUnderflowException e) {
+            // The last record was cut short by a crash; everything before it is intact
+        }
+        // Drop a torn tail so new records are not appended after it
+        if (intact < journal.size()) {
+            journal.truncate(intact);
+        }
+    }
+
+    private static byte[] encodeQueued(Appointment booking) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_QUEUED);
+        writeString(out, booking.getClientRef());
+        out.writeInt(booking.getUserId());
+        out.writeInt(booking.getEpochDay());
+        writeString(out, booking.getPatientName());
+        if (!booking.hasDate()) {
+            writeString(out, booking.getDate() == null ? "" : booking.getDate());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeDone(String clientRef) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_DONE);
+        writeString(out, clientRef);
+        return bytes.toByteArray();
+    }
+
+    private static Appointment readQueued(ByteBuffer in) {
+        String clientRef = readString(in);
+        int userId = in.getInt();
+        int epochDay = in.getInt();
+        String patientName = readString(in);
+        Appointment booking;
+        if (epochDay == Appointment.NO_DATE) {
+            booking = new Appointment(patientName, readString(in));
+            booking.setUserId(userId);
+        } else {
+            booking = new Appointment(0, userId, patientName, epochDay);
+        }
+        booking.setClientRef(clientRef);
+        return booking;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("Value too long for the booking outbox");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getShort() & 0xFFFF;
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof UncheckedIOException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error;
+    }
+}
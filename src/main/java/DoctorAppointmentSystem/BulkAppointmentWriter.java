@@ -0,0 +1,165 @@
+package DoctorAppointmentSystem;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams appointments to the server as JSON-array batches, with at most
+ * {@code maxInFlight} requests outstanding. {@link #add} blocks while that
+ * limit is reached, which keeps a large import at constant memory instead of
+ * queueing the whole file in requests.
+ *
+ * When the server rejects a batch, its rows are retried one at a time so the
+ * caller learns exactly which rows were bad. Not thread-safe: feed it from a
+ * single (background) thread.
+ */
+public class BulkAppointmentWriter {
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 4;
+
+    // Told about every row that could not be saved; called from HTTP client threads
+    public interface RowErrorListener {
+        void onRowFailed(long rowNumber, Appointment appointment, String error);
+    }
+
+    private final AppointmentRepository repository;
+    private final User user;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final RowErrorListener listener;
+
+    private List<Appointment> batch;
+    private List<Long> batchRows;
+    private final AtomicInteger inserted = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    public BulkAppointmentWriter(AppointmentRepository repository, User user, int batchSize, int maxInFlight,
+                                 RowErrorListener listener) {
+        this.repository = repository;
+        this.user = user;
+        this.batchSize = batchSize;
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.listener = listener;
+        startBatch();
+    }
+
+    public BulkAppointmentWriter(AppointmentRepository repository, User user, RowErrorListener listener) {
+        this(repository, user, DEFAULT_BATCH_SIZE, DEFAULT_MAX_IN_FLIGHT, listener);
+    }
+
+    // Queues one row; rowNumber is only used when reporting errors
+    public void add(Appointment appointment, long rowNumber) throws InterruptedException {
+        batch.add(appointment);
+        batchRows.add(rowNumber);
+        if (batch.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    // Sends whatever is buffered, waiting first if too many requests are already in flight
+    public void flush() throws InterruptedException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Appointment> sending = batch;
+        List<Long> rows = batchRows;
+        startBatch();
+
+        inFlight.acquire();
+        insertAsync(sending).whenComplete((result, error) -> {
+            if (error == null) {
+                inserted.addAndGet(sending.size());
+                inFlight.release();
+            } else if (sending.size() == 1) {
+                failed.incrementAndGet();
+                listener.onRowFailed(rows.get(0), sending.get(0), describe(error));
+                inFlight.release();
+            } else {
+                // Find the offending rows; the retries reuse this batch's permit
+                retryOneByOne(sending, rows, 0);
+            }
+        });
+    }
+
+    private void retryOneByOne(List<Appointment> appointments, List<Long> rows, int index) {
+        if (index == appointments.size()) {
+            inFlight.release();
+            return;
+        }
+        Appointment appointment = appointments.get(index);
+        insertAsync(List.of(appointment)).whenComplete((result, error) -> {
+            if (error == null) {
+                inserted.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+                listener.onRowFailed(rows.get(index), appointment, describe(error));
+            }
+            retryOneByOne(appointments, rows, index + 1);
+        });
+    }
+
+    // A repository that throws instead of failing the future must still release the permit
+    private CompletableFuture<Void> insertAsync(List<Appointment> appointments) {
+        try {
+            return repository.insertAppointmentBatchAsync(appointments, user);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    // Flushes the last batch and waits for every outstanding request
+    public void close() throws InterruptedException {
+        flush();
+        inFlight.acquire(maxInFlight);
+        inFlight.release(maxInFlight);
+    }
+
+    public int getInserted() {
+        return inserted.get();
+    }
+
+    public int getFailed() {
+        return failed.get();
+    }
+
+    private void startBatch() {
+        batch = new ArrayList<>(batchSize);
+        batchRows = new ArrayList<>(batchSize);
+    }
+
+    private static String describe(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof UncheckedIOException)
+                && error.getCause() != null) {
+            error = error.getCause();
+        }
+        return error.getMessage();
+    }
+
+    // Convenience for callers that already hold the rows in memory. Runs on the
+    // background task threads, since add() blocks while requests are in flight
+    public static CompletableFuture<Integer> insertAll(AppointmentRepository repository, User user,
+                                                       List<Appointment> appointments, RowErrorListener listener) {
+        return CompletableFuture.supplyAsync(() -> {
+            BulkAppointmentWriter writer = new BulkAppointmentWriter(repository, user, listener);
+            try {
+                long row = 0;
+                for (Appointment appointment : appointments) {
+                    writer.add(appointment, ++row);
+                }
+                writer.close();
+                return writer.getInserted();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }, TaskRunner.backgroundExecutor());
+    }
+}
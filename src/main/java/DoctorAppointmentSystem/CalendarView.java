@@ -1,5 +1,8 @@
 package DoctorAppointmentSystem;
 
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Label;
@@ -10,28 +13,55 @@ import javafx.scene.shape.Rectangle;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Font;
 import javafx.scene.text.FontWeight;
+import javafx.util.Duration;
 
-import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.time.YearMonth;
-import java.time.format.DateTimeFormatter;
 import java.time.format.TextStyle;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.function.Consumer;
 
 public class CalendarView extends VBox {
+    private static final Log LOG = Log.get("calendar");
+    
+    // Six weeks always fit a month, so the grid is a fixed pool of cells rebound to new dates
+    private static final int WEEKS_SHOWN = 6;
+    
+    // Month counts kept around for quick navigation; older entries are dropped
+    private static final int CACHED_MONTHS = 24;
+    
+    // Holding an arrow steps this often after the initial delay
+    private static final Duration REPEAT_DELAY = Duration.millis(400);
+    private static final Duration REPEAT_INTERVAL = Duration.millis(80);
+    
+    private static final String PREFETCH_TASK = "calendar-prefetch";
     
     private YearMonth currentYearMonth;
     private GridPane calendarGrid;
     private Label monthYearLabel;
-    private List<Appointment> appointments;
+    private AppointmentIndex appointmentIndex;
     private Consumer<LocalDate> onDateSelected;
     
+    private final DayCell[] cells = new DayCell[WEEKS_SHOWN * 7];
+    
+    // Per-day counts by month, filled for the neighbours of the month on screen
+    private final Map<YearMonth, int[]> monthCounts = new LinkedHashMap<YearMonth, int[]>(32, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<YearMonth, int[]> eldest) {
+            return size() > CACHED_MONTHS;
+        }
+    };
+    // Bumped whenever the data changes, so late prefetch results for older data are ignored
+    private int countsGeneration;
+    private final TaskRunner tasks = new TaskRunner();
+    
     public CalendarView() {
         this.currentYearMonth = YearMonth.now();
-        this.appointments = new ArrayList<>();
         setupCalendarView();
     }
     
@@ -39,8 +69,15 @@ public class CalendarView extends VBox {
         this.onDateSelected = onDateSelected;
     }
     
-    public void setAppointments(List<Appointment> appointments) {
-        this.appointments = new ArrayList<>(appointments);
+    public void setAppointmentIndex(AppointmentIndex appointmentIndex) {
+        this.appointmentIndex = appointmentIndex;
+        refresh();
+    }
+    
+    // Redraws the current month after the indexed appointments changed
+    public void refresh() {
+        monthCounts.clear();
+        countsGeneration++;
         updateCalendar();
     }
     
@@ -56,20 +93,14 @@ public class CalendarView extends VBox {
         
         Label prevMonth = new Label("◀");
         prevMonth.setStyle("-fx-text-fill: #4285f4; -fx-cursor: hand;");
-        prevMonth.setOnMouseClicked(e -> {
-            currentYearMonth = currentYearMonth.minusMonths(1);
-            updateCalendar();
-        });
+        installRepeatingStep(prevMonth, -1);
         
         monthYearLabel = new Label();
         monthYearLabel.setFont(Font.font("System", FontWeight.BOLD, 16));
         
         Label nextMonth = new Label("▶");
         nextMonth.setStyle("-fx-text-fill: #4285f4; -fx-cursor: hand;");
-        nextMonth.setOnMouseClicked(e -> {
-            currentYearMonth = currentYearMonth.plusMonths(1);
-            updateCalendar();
-        });
+        installRepeatingStep(nextMonth, 1);
         
         navigationPane.add(prevMonth, 0, 0);
         navigationPane.add(monthYearLabel, 1, 0);
@@ -83,19 +114,6 @@ public class CalendarView extends VBox {
         calendarGrid.setVgap(5);
         calendarGrid.setAlignment(Pos.CENTER);
         
-        this.getChildren().add(calendarGrid);
-        
-        updateCalendar();
-    }
-    
-    private void updateCalendar() {
-        calendarGrid.getChildren().clear();
-        
-        // Update month/year label
-        String monthYear = currentYearMonth.getMonth().getDisplayName(TextStyle.FULL, Locale.getDefault()) 
-                         + " " + currentYearMonth.getYear();
-        monthYearLabel.setText(monthYear);
-        
         // Add day of week headers
         String[] dayNames = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
         for (int i = 0; i < 7; i++) {
@@ -107,90 +125,173 @@ public class CalendarView extends VBox {
             calendarGrid.add(dayLabel, i, 0);
         }
         
-        // Get date information
-        int daysInMonth = currentYearMonth.lengthOfMonth();
-        int firstDayOfMonth = currentYearMonth.atDay(1).getDayOfWeek().getValue() - 1; // 0-indexed (0=Monday)
-        
-        // Create calendar days
-        for (int i = 0; i < daysInMonth; i++) {
-            int day = i + 1;
-            int column = (firstDayOfMonth + i) % 7;
-            int row = ((firstDayOfMonth + i) / 7) + 1; // Add 1 to account for header row
-            
-            LocalDate date = currentYearMonth.atDay(day);
-            
-            StackPane dayPane = createDayPane(day, date);
-            calendarGrid.add(dayPane, column, row);
+        // Create the day cells once
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = new DayCell();
+            calendarGrid.add(cells[i], i % 7, i / 7 + 1); // Add 1 to account for header row
         }
+        
+        this.getChildren().add(calendarGrid);
+        
+        updateCalendar();
     }
     
-    private StackPane createDayPane(int day, LocalDate date) {
-        StackPane dayPane = new StackPane();
-        dayPane.setMinSize(60, 60);
+    // Steps one month per click, and keeps stepping while the arrow is held down
+    private void installRepeatingStep(Label arrow, int months) {
+        Timeline repeat = new Timeline(new KeyFrame(REPEAT_INTERVAL, e -> stepMonths(months)));
+        repeat.setCycleCount(Animation.INDEFINITE);
+        repeat.setDelay(REPEAT_DELAY);
         
-        Rectangle background = new Rectangle(58, 58);
-        background.setFill(Color.TRANSPARENT);
-        background.setStroke(Color.LIGHTGRAY);
-        background.setArcWidth(5);
-        background.setArcHeight(5);
+        arrow.setOnMousePressed(e -> {
+            stepMonths(months);
+            repeat.playFromStart();
+        });
+        arrow.setOnMouseReleased(e -> repeat.stop());
+        arrow.setOnMouseExited(e -> repeat.stop());
+    }
+    
+    private void stepMonths(int months) {
+        currentYearMonth = currentYearMonth.plusMonths(months);
+        updateCalendar();
+    }
+    
+    private void updateCalendar() {
+        // Update month/year label
+        String monthYear = currentYearMonth.getMonth().getDisplayName(TextStyle.FULL, Locale.getDefault()) 
+                         + " " + currentYearMonth.getYear();
+        monthYearLabel.setText(monthYear);
         
-        VBox content = new VBox(5);
-        content.setAlignment(Pos.TOP_CENTER);
-        content.setPadding(new Insets(5));
+        // Get date information
+        int daysInMonth = currentYearMonth.lengthOfMonth();
+        int firstDayOfMonth = currentYearMonth.atDay(1).getDayOfWeek().getValue() - 1; // 0-indexed (0=Monday)
+        LocalDate today = LocalDate.now();
         
-        Label dayLabel = new Label(String.valueOf(day));
-        dayLabel.setFont(Font.font("System", 14));
+        int[] appointmentCounts = countsFor(currentYearMonth);
         
-        // Highlight current day
-        if (date.equals(LocalDate.now())) {
-            dayLabel.setStyle("-fx-font-weight: bold; -fx-text-fill: #4285f4;");
-            background.setStroke(Color.web("#4285f4"));
+        // Rebind the cells: days of this month, blanks either side
+        for (int i = 0; i < cells.length; i++) {
+            int day = i - firstDayOfMonth + 1;
+            if (day >= 1 && day <= daysInMonth) {
+                LocalDate date = currentYearMonth.atDay(day);
+                cells[i].bind(date, appointmentCounts[day - 1], date.equals(today));
+            } else {
+                cells[i].clear();
+            }
         }
         
-        content.getChildren().add(dayLabel);
+        prefetchNeighbours();
+    }
+    
+    private int[] countsFor(YearMonth month) {
+        if (appointmentIndex == null) {
+            return new int[month.lengthOfMonth()];
+        }
+        int[] counts = monthCounts.get(month);
+        if (counts == null) {
+            // One index lookup for the whole month
+            counts = appointmentIndex.countsForMonth(month);
+            monthCounts.put(month, counts);
+        }
+        return counts;
+    }
+    
+    // Works out the months either side in the background, so stepping to them needs no lookup
+    private void prefetchNeighbours() {
+        if (appointmentIndex == null) {
+            return;
+        }
+        List<YearMonth> missing = new ArrayList<>(2);
+        for (YearMonth month : new YearMonth[] {currentYearMonth.minusMonths(1), currentYearMonth.plusMonths(1)}) {
+            if (!monthCounts.containsKey(month)) {
+                missing.add(month);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        
+        AppointmentIndex index = appointmentIndex;
+        int generation = countsGeneration;
+        tasks.submit(PREFETCH_TASK, context -> {
+            Map<YearMonth, int[]> counts = new HashMap<>();
+            for (YearMonth month : missing) {
+                counts.put(month, index.countsForMonth(month));
+            }
+            return counts;
+        }, counts -> {
+            if (generation == countsGeneration) {
+                monthCounts.putAll(counts);
+            }
+        }, error -> LOG.warn("Error prefetching calendar counts: " + error.getMessage()));
+    }
+    
+    // One reusable day square; its handlers read whatever date it is currently bound to
+    private class DayCell extends StackPane {
+        private final Rectangle background = new Rectangle(58, 58);
+        private final Label dayLabel = new Label();
+        private final Label countLabel = new Label();
+        private final StackPane indicatorPane;
+        private LocalDate date;
         
-        // Add appointment indicators
-        int appointmentsForDay = countAppointmentsForDay(date);
-        if (appointmentsForDay > 0) {
+        DayCell() {
+            setMinSize(60, 60);
+            
+            background.setFill(Color.TRANSPARENT);
+            background.setStroke(Color.LIGHTGRAY);
+            background.setArcWidth(5);
+            background.setArcHeight(5);
+            
+            VBox content = new VBox(5);
+            content.setAlignment(Pos.TOP_CENTER);
+            content.setPadding(new Insets(5));
+            
+            dayLabel.setFont(Font.font("System", 14));
+            
+            // Appointment indicator
             Rectangle indicator = new Rectangle(40, 10);
             indicator.setFill(Color.web("#4caf50"));
             indicator.setArcWidth(5);
             indicator.setArcHeight(5);
-            
-            Label countLabel = new Label(String.valueOf(appointmentsForDay));
             countLabel.setStyle("-fx-text-fill: white; -fx-font-size: 8;");
+            indicatorPane = new StackPane(indicator, countLabel);
+            
+            content.getChildren().addAll(dayLabel, indicatorPane);
+            getChildren().addAll(background, content);
+            setStyle("-fx-cursor: hand;");
+            
+            // Add click handler
+            setOnMouseClicked(e -> {
+                if (date != null && onDateSelected != null) {
+                    onDateSelected.accept(date);
+                }
+            });
             
-            StackPane indicatorPane = new StackPane(indicator, countLabel);
-            content.getChildren().add(indicatorPane);
+            // Add hover effect
+            setOnMouseEntered(e -> background.setFill(Color.web("#f5f5f5")));
+            setOnMouseExited(e -> background.setFill(Color.TRANSPARENT));
         }
         
-        dayPane.getChildren().addAll(background, content);
-        
-        // Add click handler
-        dayPane.setOnMouseClicked(e -> {
-            if (onDateSelected != null) {
-                onDateSelected.accept(date);
+        void bind(LocalDate date, int appointmentsForDay, boolean isToday) {
+            this.date = date;
+            setVisible(true);
+            dayLabel.setText(String.valueOf(date.getDayOfMonth()));
+            
+            // Highlight current day
+            dayLabel.setStyle(isToday ? "-fx-font-weight: bold; -fx-text-fill: #4285f4;" : "");
+            background.setStroke(isToday ? Color.web("#4285f4") : Color.LIGHTGRAY);
+            
+            indicatorPane.setVisible(appointmentsForDay > 0);
+            if (appointmentsForDay > 0) {
+                countLabel.setText(String.valueOf(appointmentsForDay));
             }
-        });
-        
-        // Add hover effect
-        dayPane.setOnMouseEntered(e -> {
-            background.setFill(Color.web("#f5f5f5"));
-            dayPane.setStyle("-fx-cursor: hand;");
-        });
+        }
         
-        dayPane.setOnMouseExited(e -> {
+        // Cells outside the month keep their place in the grid but show nothing
+        void clear() {
+            this.date = null;
+            setVisible(false);
             background.setFill(Color.TRANSPARENT);
-        });
-        
-        return dayPane;
-    }
-    
-    private int countAppointmentsForDay(LocalDate date) {
-        String dateStr = date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-        return (int) appointments.stream()
-                .filter(a -> a.getDate().equals(dateStr))
-                .count();
+        }
     }
     
     public void goToMonth(YearMonth yearMonth) {
@@ -201,4 +302,4 @@ public class CalendarView extends VBox {
     public YearMonth getCurrentYearMonth() {
         return currentYearMonth;
     }
-} 
\ No newline at end of file
+}
@@ -2,19 +2,62 @@ package DoctorAppointmentSystem;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class Config {
+    private static final Log LOG = Log.get("config");
+    
     // Default values
     public static String SUPABASE_URL = "https://your-supabase-project-url.supabase.co";
     public static String SUPABASE_API_KEY = "your-supabase-api-key";
     
+    // Where the local appointment cache is kept
+    public static String CACHE_DIR = Paths.get(System.getProperty("user.home"), ".doctor-appointment-system").toString();
+    
+    // Whether open dashboards subscribe to Supabase Realtime for appointment changes
+    public static boolean REALTIME_ENABLED = true;
+    
+    // Whether large request bodies (bulk inserts) are sent gzip-compressed; the server or
+    // a proxy in front of it must accept Content-Encoding: gzip, which plain PostgREST does not
+    public static boolean COMPRESS_REQUESTS = false;
+    
+    // Where appointments and users are stored: "supabase", "embedded" (a local file, for
+    // single-site clinics) or "memory" (nothing persisted; for benchmarks and demos)
+    public static String STORAGE = "supabase";
+    
+    // The file used by the embedded store
+    public static String EMBEDDED_STORE = Paths.get(System.getProperty("user.home"), ".doctor-appointment-system", "appointments.store").toString();
+    
+    // How often, in seconds, a summary of database call timings is printed; 0 turns it off.
+    // The same numbers are always available over JMX
+    public static long METRICS_LOG_SECONDS = 300;
+    
+    // Log levels: a default level, then any per-category overrides, e.g. "info,database=debug".
+    // Levels are debug, info, warn, error and off
+    public static String LOG_LEVEL = "info";
+    
+    // How long hashing one password should take on this machine; the cost is calibrated to it on first use
+    public static long PASSWORD_HASH_MILLIS = 250;
+    
+    // A fixed PBKDF2 iteration count instead of calibrating, e.g. to match hashes made by other machines; 0 calibrates
+    public static int PASSWORD_HASH_ITERATIONS = 0;
+    
+    // Threads that hash passwords; 0 uses half the cores. Sign-ins beyond these queue, and then are turned away
+    public static int PASSWORD_HASH_THREADS = 0;
+    
     // Current logged in user
     private static User currentUser;
     
+    // The store chosen by STORAGE, opened on first use
+    private static AppointmentRepository repository;
+    
     static {
         loadEnvVariables();
     }
@@ -23,7 +66,7 @@ public class Config {
         try {
             // First check if .env file exists
             Path envPath = Paths.get(".env");
-            System.out.println("Looking for .env file at: " + envPath.toAbsolutePath());
+            LOG.debug(() -> "Looking for .env file at: " + envPath.toAbsolutePath());
             
             if (Files.exists(envPath)) {
                 Properties envProps = new Properties();
@@ -39,14 +82,64 @@ public class Config {
                         SUPABASE_API_KEY = envProps.getProperty("SUPABASE_API_KEY").trim();
                     }
                     
-                    System.out.println("Loaded Supabase credentials from .env file");
-                    System.out.println("URL: " + SUPABASE_URL);
-                    System.out.println("API key length: " + SUPABASE_API_KEY.length());
+                    if (envProps.containsKey("CACHE_DIR")) {
+                        CACHE_DIR = envProps.getProperty("CACHE_DIR").trim();
+                    }
+                    
+                    if (envProps.containsKey("REALTIME_ENABLED")) {
+                        REALTIME_ENABLED = Boolean.parseBoolean(envProps.getProperty("REALTIME_ENABLED").trim());
+                    }
+                    
+                    if (envProps.containsKey("COMPRESS_REQUESTS")) {
+                        COMPRESS_REQUESTS = Boolean.parseBoolean(envProps.getProperty("COMPRESS_REQUESTS").trim());
+                    }
+                    
+                    if (envProps.containsKey("STORAGE")) {
+                        STORAGE = envProps.getProperty("STORAGE").trim().toLowerCase();
+                    }
+                    
+                    if (envProps.containsKey("EMBEDDED_STORE")) {
+                        EMBEDDED_STORE = envProps.getProperty("EMBEDDED_STORE").trim();
+                    }
+                    
+                    if (envProps.containsKey("METRICS_LOG_SECONDS")) {
+                        METRICS_LOG_SECONDS = Long.parseLong(envProps.getProperty("METRICS_LOG_SECONDS").trim());
+                    }
+                    
+                    if (envProps.containsKey("PASSWORD_HASH_MILLIS")) {
+                        PASSWORD_HASH_MILLIS = Long.parseLong(envProps.getProperty("PASSWORD_HASH_MILLIS").trim());
+                    }
+                    
+                    if (envProps.containsKey("PASSWORD_HASH_ITERATIONS")) {
+                        PASSWORD_HASH_ITERATIONS = Integer.parseInt(envProps.getProperty("PASSWORD_HASH_ITERATIONS").trim());
+                    }
+                    
+                    if (envProps.containsKey("PASSWORD_HASH_THREADS")) {
+                        PASSWORD_HASH_THREADS = Integer.parseInt(envProps.getProperty("PASSWORD_HASH_THREADS").trim());
+                    }
+                    
+                    if (envProps.containsKey("LOG_LEVEL")) {
+                        LOG_LEVEL = envProps.getProperty("LOG_LEVEL").trim();
+                        Log.configure(LOG_LEVEL);
+                    }
+                    
+                    LOG.info("Loaded configuration from .env file");
+                    LOG.debug(() -> "URL: " + SUPABASE_URL + ", API key length: " + SUPABASE_API_KEY.length());
                 }
             } else {
                 // If .env file doesn't exist, try to load from environment variables
                 String envUrl = System.getenv("SUPABASE_URL");
                 String envKey = System.getenv("SUPABASE_API_KEY");
+                String envCacheDir = System.getenv("CACHE_DIR");
+                String envRealtime = System.getenv("REALTIME_ENABLED");
+                String envCompress = System.getenv("COMPRESS_REQUESTS");
+                String envStorage = System.getenv("STORAGE");
+                String envEmbeddedStore = System.getenv("EMBEDDED_STORE");
+                String envMetricsLog = System.getenv("METRICS_LOG_SECONDS");
+                String envHashMillis = System.getenv("PASSWORD_HASH_MILLIS");
+                String envHashIterations = System.getenv("PASSWORD_HASH_ITERATIONS");
+                String envHashThreads = System.getenv("PASSWORD_HASH_THREADS");
+                String envLogLevel = System.getenv("LOG_LEVEL");
                 
                 if (envUrl != null && !envUrl.isEmpty()) {
                     SUPABASE_URL = envUrl.trim();
@@ -56,20 +149,98 @@ public class Config {
                     SUPABASE_API_KEY = envKey.trim();
                 }
                 
-                System.out.println("Tried loading Supabase credentials from environment variables");
+                if (envCacheDir != null && !envCacheDir.isEmpty()) {
+                    CACHE_DIR = envCacheDir.trim();
+                }
+                
+                if (envRealtime != null && !envRealtime.isEmpty()) {
+                    REALTIME_ENABLED = Boolean.parseBoolean(envRealtime.trim());
+                }
+                
+                if (envCompress != null && !envCompress.isEmpty()) {
+                    COMPRESS_REQUESTS = Boolean.parseBoolean(envCompress.trim());
+                }
+                
+                if (envStorage != null && !envStorage.isEmpty()) {
+                    STORAGE = envStorage.trim().toLowerCase();
+                }
+                
+                if (envEmbeddedStore != null && !envEmbeddedStore.isEmpty()) {
+                    EMBEDDED_STORE = envEmbeddedStore.trim();
+                }
+                
+                if (envMetricsLog != null && !envMetricsLog.isEmpty()) {
+                    METRICS_LOG_SECONDS = Long.parseLong(envMetricsLog.trim());
+                }
+                
+                if (envHashMillis != null && !envHashMillis.isEmpty()) {
+                    PASSWORD_HASH_MILLIS = Long.parseLong(envHashMillis.trim());
+                }
+                
+                if (envHashIterations != null && !envHashIterations.isEmpty()) {
+                    PASSWORD_HASH_ITERATIONS = Integer.parseInt(envHashIterations.trim());
+                }
+                
+                if (envHashThreads != null && !envHashThreads.isEmpty()) {
+                    PASSWORD_HASH_THREADS = Integer.parseInt(envHashThreads.trim());
+                }
+                
+                if (envLogLevel != null && !envLogLevel.isEmpty()) {
+                    LOG_LEVEL = envLogLevel.trim();
+                    Log.configure(LOG_LEVEL);
+                }
+                
+                LOG.info("No .env file; loaded configuration from environment variables");
             }
             
             // Validate credentials
-            if (SUPABASE_URL.equals("https://your-supabase-project-url.supabase.co") ||
-                SUPABASE_API_KEY.equals("your-supabase-api-key")) {
-                System.err.println("Warning: Using default Supabase credentials. Please update your .env file.");
+            if (STORAGE.equals("supabase") && (SUPABASE_URL.equals("https://your-supabase-project-url.supabase.co") ||
+                SUPABASE_API_KEY.equals("your-supabase-api-key"))) {
+                LOG.warn("Using default Supabase credentials. Please update your .env file.");
             }
         } catch (IOException e) {
-            System.err.println("Error loading .env file: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Error loading .env file: " + e.getMessage(), e);
         } catch (Exception e) {
-            System.err.println("Unexpected error loading configuration: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("Unexpected error loading configuration: " + e.getMessage(), e);
+        }
+    }
+
+    // The shared appointment store; every controller uses the same one
+    public static synchronized AppointmentRepository getRepository() {
+        if (repository == null) {
+            switch (STORAGE) {
+                case "embedded":
+                    try {
+                        repository = EmbeddedAppointmentRepository.open(Paths.get(EMBEDDED_STORE));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not open the appointment store at " + EMBEDDED_STORE, e);
+                    }
+                    LOG.info("Using the embedded appointment store at " + repository.getLocation());
+                    break;
+                case "memory":
+                    repository = new InMemoryAppointmentRepository("memory");
+                    LOG.info("Using an in-memory appointment store; nothing will be saved");
+                    break;
+                default:
+                    if (!STORAGE.equals("supabase")) {
+                        LOG.warn("Unknown STORAGE '" + STORAGE + "', using Supabase");
+                    }
+                    repository = DatabaseService.getInstance(SUPABASE_URL, SUPABASE_API_KEY);
+            }
+        }
+        return repository;
+    }
+
+    // Called when the application exits, so writes the embedded store has not yet synced reach the disk
+    public static synchronized void closeRepository() {
+        if (repository instanceof EmbeddedAppointmentRepository) {
+            try {
+                ((EmbeddedAppointmentRepository) repository).close().get(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                LOG.error("Error closing the appointment store: " + e);
+            }
         }
     }
 
@@ -1,7 +1,14 @@
 package DoctorAppointmentSystem;
 
+import javafx.application.Platform;
+import javafx.animation.Animation;
+import javafx.animation.PauseTransition;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.SortedList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
@@ -9,6 +16,7 @@ import javafx.fxml.Initializable;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.DatePicker;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListView;
@@ -19,19 +27,26 @@ import javafx.scene.input.MouseButton;
 import javafx.scene.layout.VBox;
 import javafx.scene.layout.StackPane;
 import javafx.scene.layout.BorderPane;
+import javafx.stage.FileChooser;
+import javafx.util.Duration;
 import javafx.stage.Stage;
 import javafx.scene.control.Tab;
 import javafx.stage.Screen;
 import javafx.geometry.Rectangle2D;
 import javafx.geometry.Insets;
 
+import java.io.File;
 import java.net.URL;
 import java.time.format.DateTimeFormatter;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
 
 public class DashboardController implements Initializable {
+    private static final Log LOG = Log.get("dashboard");
     
     @FXML
     private TextField patientNameField;
@@ -57,6 +72,24 @@ public class DashboardController implements Initializable {
     @FXML
     private Button logoutButton;
     
+    @FXML
+    private Button importCsvButton;
+    
+    @FXML
+    private TextField searchField;
+    
+    @FXML
+    private DatePicker filterFromPicker;
+    
+    @FXML
+    private DatePicker filterToPicker;
+    
+    @FXML
+    private ComboBox<String> sortChoice;
+    
+    @FXML
+    private Label resultCountLabel;
+    
     @FXML
     private StackPane calendarContainer;
     
@@ -73,22 +106,83 @@ public class DashboardController implements Initializable {
     private ObservableList<Appointment> appointments = FXCollections.observableArrayList();
     
     // Database service
-    private DatabaseService databaseService;
+    private AppointmentRepository repository;
     
     private CalendarView calendarView;
     
     private AdminDashboardView adminDashboardView;
     
+    // Rows requested per round trip when loading appointments
+    private static final int PAGE_SIZE = 1000;
+    
+    // Loads and syncs share one key, so a new refresh cancels a stale one
+    private static final String APPOINTMENTS_TASK = "appointments";
+    
+    private final TaskRunner tasks = new TaskRunner();
+    
+    private AppointmentSync appointmentSync;
+    
+    private AppointmentCache appointmentCache;
+    
+    // Bookings are saved locally first and sent to the database in the background
+    private BookingOutbox bookingOutbox;
+    
+    // Appointments by date, kept up to date with the appointments list
+    private AppointmentIndex appointmentIndex;
+    
+    // Running dashboard totals, kept up to date with the appointments list
+    private AppointmentAnalytics appointmentAnalytics;
+    
+    private static final Duration DASHBOARD_REFRESH_INTERVAL = Duration.seconds(30);
+    
+    private Timeline dashboardRefresh;
+    
+    // Pushes from the database that trigger a delta sync while this view is open
+    private RealtimeChannel realtimeChannel;
+    
+    // A load or sync is in flight; pushes arriving meanwhile wait for it rather than superseding it
+    private boolean appointmentsBusy;
+    private boolean pushedChangesPending;
+    
+    // The list shows one of two sorted views: every appointment, or the current filter's matches
+    private static final String SORT_DATE_ASCENDING = "Date (earliest first)";
+    private static final String SORT_DATE_DESCENDING = "Date (latest first)";
+    private static final String SORT_PATIENT = "Patient name";
+    
+    private static final Comparator<Appointment> BY_DATE = Comparator
+            .comparingInt(Appointment::getEpochDay)
+            .thenComparing(Appointment::getPatientName)
+            .thenComparingInt(Appointment::getId);
+    private static final Comparator<Appointment> BY_PATIENT = Comparator
+            .comparing(Appointment::getPatientName)
+            .thenComparingInt(Appointment::getEpochDay)
+            .thenComparingInt(Appointment::getId);
+    
+    // Typing pauses this long before the filter runs, so a burst of keystrokes costs one query
+    private static final Duration FILTER_DELAY = Duration.millis(150);
+    
+    private final ObservableList<Appointment> filterMatches = FXCollections.observableArrayList();
+    private SortedList<Appointment> sortedAppointments;
+    private SortedList<Appointment> sortedMatches;
+    private PauseTransition filterDelay;
+    
     @Override
     public void initialize(URL location, ResourceBundle resources) {
-        // Initialize database service
-        databaseService = DatabaseService.getInstance(
-            Config.SUPABASE_URL,
-            Config.SUPABASE_API_KEY
-        );
+        // The configured store: Supabase, or a local one for single-site clinics
+        repository = Config.getRepository();
+        // Patients only download their own appointments, so their cache only holds those
+        String patientScope = patientScope();
+        appointmentSync = new AppointmentSync(repository, patientScope);
+        appointmentCache = new AppointmentCache(Config.CACHE_DIR,
+                patientScope == null ? repository.getLocation() : repository.getLocation() + "#patient=" + patientScope);
+        appointmentSync.setCache(appointmentCache);
+        bookingOutbox = new BookingOutbox(repository, Config.CACHE_DIR);
         
-        // Set the appointments list as the data source for the ListView
-        appointmentsListView.setItems(appointments);
+        appointmentIndex = new AppointmentIndex(appointments);
+        appointmentAnalytics = new AppointmentAnalytics(appointments);
+        
+        // Sorted, filterable views of the appointments for the ListView
+        setupAppointmentList();
         
         // Initialize Calendar View
         initializeCalendarView();
@@ -102,16 +196,146 @@ public class DashboardController implements Initializable {
         // Apply responsive design
         setupResponsiveDesign();
         
-        // Load appointments from the database
-        loadAppointmentsFromDatabase();
+        // Show cached appointments straight away, then catch up with the database
+        loadAppointmentsFromCache();
         
         // Set up context menu for appointment deletion
         setupContextMenu();
+        
+        // Follow other users' bookings and deletions as they happen
+        subscribeToRealtimeChanges();
+        
+        // Resume sending bookings left over from the last session
+        openBookingOutbox();
+    }
+    
+    private void openBookingOutbox() {
+        bookingOutbox.setListener(new BookingOutbox.Listener() {
+            @Override
+            public void onDelivered(List<Appointment> saved) {
+                Platform.runLater(() -> {
+                    for (Appointment row : saved) {
+                        Appointment local = appointmentSync.confirmPending(row);
+                        if (local != null) {
+                            AppointmentSync.replaceInPlace(appointments, local);
+                        }
+                    }
+                    statusLabel.setText(saved.size() == 1
+                            ? "Appointment saved to database"
+                            : saved.size() + " appointments saved to database");
+                });
+            }
+            
+            @Override
+            public void onRejected(Appointment booking, String reason) {
+                Platform.runLater(() -> {
+                    Appointment local = appointmentSync.dropPending(booking.getClientRef());
+                    if (local != null) {
+                        appointments.remove(local);
+                        refreshAppointmentViews();
+                    }
+                    statusLabel.setText("Booking for " + booking.getPatientName() + " was rejected: " + reason);
+                });
+            }
+            
+            @Override
+            public void onRetrying(int pending, Throwable error) {
+                Platform.runLater(() -> statusLabel.setText("Offline - " + pending
+                        + " booking(s) saved locally, will retry (" + error.getMessage() + ")"));
+            }
+        });
+        
+        tasks.submit(null, context -> context.await(bookingOutbox.open()), waiting -> {
+            for (Appointment booking : waiting) {
+                appointmentSync.trackPending(booking);
+                if (isVisibleToCurrentUser(booking)) {
+                    appointments.add(booking);
+                }
+            }
+            if (!waiting.isEmpty()) {
+                refreshAppointmentViews();
+            }
+        }, error -> {
+            statusLabel.setText("Bookings cannot be saved locally: " + error.getMessage());
+            LOG.error("Bookings cannot be saved locally", error);
+        });
+    }
+    
+    // Bookings not yet confirmed by the database, for showing again after the list is reloaded
+    private List<Appointment> visiblePendingBookings() {
+        List<Appointment> visible = new ArrayList<>();
+        for (Appointment booking : appointmentSync.getPending()) {
+            if (isVisibleToCurrentUser(booking)) {
+                visible.add(booking);
+            }
+        }
+        return visible;
+    }
+    
+    private void subscribeToRealtimeChanges() {
+        if (!Config.REALTIME_ENABLED) {
+            return;
+        }
+        realtimeChannel = repository.subscribeToAppointmentChanges(new RealtimeChannel.Listener() {
+            @Override
+            public void onChanges(int changeCount, boolean resumed) {
+                // One call per pulse however many rows changed; the sync fetches them all at once
+                Platform.runLater(DashboardController.this::handlePushedChanges);
+            }
+            
+            @Override
+            public void onConnectionChanged(boolean connected) {
+                if (!connected) {
+                    LOG.info("Realtime updates interrupted, reconnecting");
+                }
+            }
+        });
+        if (realtimeChannel != null) {
+            realtimeChannel.start();
+        }
+    }
+    
+    private void handlePushedChanges() {
+        if (realtimeChannel == null || !appointmentSync.isPrimed()) {
+            // The full load still running will include these rows
+            return;
+        }
+        if (appointmentsBusy) {
+            pushedChangesPending = true;
+        } else {
+            syncAppointments(false);
+        }
+    }
+    
+    // Called when a load or sync finishes, so a push that arrived meanwhile is not lost
+    private void appointmentsIdle() {
+        appointmentsBusy = false;
+        if (pushedChangesPending) {
+            pushedChangesPending = false;
+            handlePushedChanges();
+        }
     }
     
     private void initializeAdminDashboardView() {
         adminDashboardView = new AdminDashboardView();
         analyticsContainer.getChildren().add(adminDashboardView);
+        
+        // While the analytics tab is open, refresh it periodically so "Today" and
+        // "This Month" roll over; each refresh only touches values that changed
+        dashboardRefresh = new Timeline(new KeyFrame(DASHBOARD_REFRESH_INTERVAL, event -> updateAdminDashboard()));
+        dashboardRefresh.setCycleCount(Animation.INDEFINITE);
+        analyticsTab.selectedProperty().addListener((observable, wasSelected, selected) -> {
+            if (selected) {
+                updateAdminDashboard();
+                dashboardRefresh.play();
+            } else {
+                dashboardRefresh.stop();
+            }
+        });
+    }
+    
+    private void updateAdminDashboard() {
+        adminDashboardView.updateDashboard(appointmentAnalytics.snapshot(LocalDate.now()));
     }
     
     private void configureUIForUserRole() {
@@ -169,33 +393,191 @@ public class DashboardController implements Initializable {
         });
     }
     
+    private void setupAppointmentList() {
+        sortedAppointments = new SortedList<>(appointments, BY_DATE);
+        sortedMatches = new SortedList<>(filterMatches, BY_DATE);
+        appointmentsListView.setItems(sortedAppointments);
+        
+        // Cells are recycled while scrolling; a fixed height spares measuring every row
+        appointmentsListView.setCellFactory(listView -> new AppointmentListCell());
+        appointmentsListView.setFixedCellSize(AppointmentListCell.HEIGHT);
+        
+        sortChoice.getItems().addAll(SORT_DATE_ASCENDING, SORT_DATE_DESCENDING, SORT_PATIENT);
+        sortChoice.setValue(SORT_DATE_ASCENDING);
+        sortChoice.valueProperty().addListener((observable, oldValue, newValue) -> {
+            Comparator<Appointment> comparator = comparatorFor(newValue);
+            sortedAppointments.setComparator(comparator);
+            sortedMatches.setComparator(comparator);
+        });
+        
+        filterDelay = new PauseTransition(FILTER_DELAY);
+        filterDelay.setOnFinished(event -> applyFilter());
+        searchField.textProperty().addListener((observable, oldValue, newValue) -> filterDelay.playFromStart());
+        filterFromPicker.valueProperty().addListener((observable, oldValue, newValue) -> applyFilter());
+        filterToPicker.valueProperty().addListener((observable, oldValue, newValue) -> applyFilter());
+        
+        // Keep an active filter's matches current as appointments arrive or go
+        appointments.addListener((ListChangeListener<Appointment>) change -> {
+            if (isFilterActive()) {
+                filterDelay.playFromStart();
+            }
+            updateResultCount();
+        });
+        updateResultCount();
+    }
+    
+    private static Comparator<Appointment> comparatorFor(String sortOption) {
+        if (SORT_DATE_DESCENDING.equals(sortOption)) {
+            return BY_DATE.reversed();
+        } else if (SORT_PATIENT.equals(sortOption)) {
+            return BY_PATIENT;
+        }
+        return BY_DATE;
+    }
+    
+    private boolean isFilterActive() {
+        return AppointmentIndex.nameWords(searchField.getText()).length > 0
+                || filterFromPicker.getValue() != null
+                || filterToPicker.getValue() != null;
+    }
+    
+    /**
+     * Shows the appointments matching the search words and date range. Matches
+     * come from the index, so the cost follows the number of matches rather
+     * than the number of appointments.
+     */
+    private void applyFilter() {
+        if (!isFilterActive()) {
+            filterMatches.clear();
+            appointmentsListView.setItems(sortedAppointments);
+            updateResultCount();
+            return;
+        }
+        
+        String[] words = AppointmentIndex.nameWords(searchField.getText());
+        LocalDate from = filterFromPicker.getValue();
+        LocalDate to = filterToPicker.getValue();
+        
+        List<Appointment> matches = new ArrayList<>();
+        if (words.length == 0) {
+            matches.addAll(appointmentIndex.between(
+                    from != null ? from : LocalDate.MIN,
+                    to != null ? to : LocalDate.MAX));
+        } else {
+            // Look up the longest word, which usually has the fewest hits, and check the rest per hit
+            String longest = words[0];
+            for (String word : words) {
+                if (word.length() > longest.length()) {
+                    longest = word;
+                }
+            }
+            int fromDay = from != null ? (int) from.toEpochDay() : Integer.MIN_VALUE;
+            int toDay = to != null ? (int) to.toEpochDay() : Integer.MAX_VALUE;
+            boolean dateFiltered = from != null || to != null;
+            
+            for (Appointment appointment : appointmentIndex.withNameWordPrefix(longest)) {
+                if (dateFiltered && (!appointment.hasDate()
+                        || appointment.getEpochDay() < fromDay || appointment.getEpochDay() > toDay)) {
+                    continue;
+                }
+                if (words.length == 1 || matchesAllWords(appointment, words)) {
+                    matches.add(appointment);
+                }
+            }
+        }
+        
+        filterMatches.setAll(matches);
+        appointmentsListView.setItems(sortedMatches);
+        updateResultCount();
+    }
+    
+    private static boolean matchesAllWords(Appointment appointment, String[] words) {
+        String[] nameWords = AppointmentIndex.nameWords(appointment.getPatientName());
+        for (String word : words) {
+            boolean found = false;
+            for (String nameWord : nameWords) {
+                if (nameWord.startsWith(word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private void updateResultCount() {
+        if (appointmentsListView.getItems() == sortedMatches) {
+            resultCountLabel.setText("Showing " + filterMatches.size() + " of " + appointments.size());
+        } else {
+            resultCountLabel.setText(appointments.size() + " appointment(s)");
+        }
+    }
+    
+    @FXML
+    private void handleClearFilterButton(ActionEvent event) {
+        filterDelay.stop();
+        searchField.clear();
+        filterFromPicker.setValue(null);
+        filterToPicker.setValue(null);
+        applyFilter();
+    }
+    
+    // Position of an appointment in the sorted list, found by binary search rather than a scan
+    private static int indexInSorted(List<Appointment> sorted, Comparator<? super Appointment> comparator,
+                                     Appointment appointment) {
+        int low = 0;
+        int high = sorted.size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int order = comparator.compare(sorted.get(middle), appointment);
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+    
     private void initializeCalendarView() {
         calendarView = new CalendarView();
         calendarContainer.getChildren().add(calendarView);
         
         // Set date selection handler
         calendarView.setOnDateSelected(this::handleDateSelected);
+        calendarView.setAppointmentIndex(appointmentIndex);
     }
     
     private void handleDateSelected(LocalDate date) {
         // Set the selected date in the date picker
         appointmentDatePicker.setValue(date);
         
-        // Filter appointments for the selected date
         String dateStr = date.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
         
-        // Highlight appointments for the selected date
-        appointmentsListView.getItems().forEach(appointment -> {
-            if (appointment.getDate().equals(dateStr)) {
-                appointmentsListView.getSelectionModel().select(appointment);
-                appointmentsListView.scrollTo(appointment);
+        // Highlight the appointment on the selected date that comes first in the list
+        List<Appointment> appointmentsOnDate = appointmentIndex.on(date);
+        if (!appointmentsOnDate.isEmpty()) {
+            SortedList<Appointment> shown = (SortedList<Appointment>) appointmentsListView.getItems();
+            Comparator<? super Appointment> comparator = shown.getComparator();
+            appointmentsOnDate.sort(comparator);
+            for (Appointment appointment : appointmentsOnDate) {
+                // Rows hidden by the current filter are skipped
+                int position = indexInSorted(shown, comparator, appointment);
+                if (position >= 0) {
+                    appointmentsListView.getSelectionModel().clearAndSelect(position);
+                    appointmentsListView.scrollTo(position);
+                    break;
+                }
             }
-        });
+        }
         
         // Show a notification of how many appointments are on this day
-        long count = appointments.stream()
-                .filter(a -> a.getDate().equals(dateStr))
-                .count();
+        int count = appointmentsOnDate.size();
         
         if (count > 0) {
             statusLabel.setText(count + " appointment(s) scheduled for " + dateStr);
@@ -204,119 +586,297 @@ public class DashboardController implements Initializable {
         }
     }
     
-    private void loadAppointmentsFromDatabase() {
-        try {
-            // Clear current appointments
-            appointments.clear();
-            
-            // Load appointments from Supabase
-            List<Appointment> dbAppointments = databaseService.getAllAppointments();
+    private void loadAppointmentsFromCache() {
+        statusLabel.setText("Loading appointments...");
+        
+        tasks.submit(APPOINTMENTS_TASK, context -> appointmentCache.load(), cached -> {
+            if (cached == null) {
+                // Nothing usable on disk: first start on this machine
+                loadAppointmentsFromDatabase();
+                return;
+            }
             
-            // If patient, filter to only show their appointments
-            if (Config.isPatient()) {
-                String patientName = Config.getCurrentUser().getUsername();
-                for (Appointment appointment : dbAppointments) {
-                    if (appointment.getPatientName().equals(patientName)) {
-                        appointments.add(appointment);
-                    }
+            appointmentSync.restore(cached);
+            List<Appointment> visible = new ArrayList<>(cached.getAppointments().size());
+            for (Appointment appointment : cached.getAppointments()) {
+                if (isVisibleToCurrentUser(appointment)) {
+                    visible.add(appointment);
                 }
-            } else {
-                // Add all appointments for admin
-                appointments.addAll(dbAppointments);
             }
+            visible.addAll(visiblePendingBookings());
+            appointments.setAll(visible);
+            refreshAppointmentViews();
             
-            // Update the calendar view with the appointments
-            calendarView.setAppointments(appointments);
-            
-            // Update admin dashboard with appointments
-            adminDashboardView.updateDashboard(appointments);
+            // Reconcile with the server in the background
+            syncAppointments(true);
+        }, error -> loadAppointmentsFromDatabase());
+    }
+    
+    private void loadAppointmentsFromDatabase() {
+        // Clear current appointments, keeping bookings that are still on their way to the database
+        appointments.setAll(visiblePendingBookings());
+        statusLabel.setText("Loading appointments...");
+        
+        // Supersedes any load or sync still running, so their pages never reach the list
+        appointmentsBusy = true;
+        tasks.submit(APPOINTMENTS_TASK, context -> {
+            // Note the newest tombstone before loading, so deletes made during the load reach the next sync
+            Long deletionHighWater;
+            try {
+                deletionHighWater = context.await(repository.fetchLatestDeletionIdAsync());
+            } catch (Exception e) {
+                LOG.warn("Deletion feed unavailable, refresh will reload everything: " + e.getMessage());
+                deletionHighWater = null;
+            }
+            final Long mark = deletionHighWater;
+            context.publish(() -> {
+                if (mark == null) {
+                    appointmentSync.invalidate();
+                } else {
+                    appointmentSync.reset(mark);
+                }
+            });
             
+            // Load appointments from the store page by page so the first rows show up immediately
+            return context.await(repository.fetchAppointmentPagesAsync(0, PAGE_SIZE, patientScope(), page -> context.publish(() -> {
+                List<Appointment> visible = new ArrayList<>(page.size());
+                for (Appointment appointment : page) {
+                    Appointment own = appointmentSync.confirmPending(appointment);
+                    if (own != null) {
+                        AppointmentSync.replaceInPlace(appointments, own);
+                        continue;
+                    }
+                    appointmentSync.track(appointment);
+                    if (isVisibleToCurrentUser(appointment)) {
+                        visible.add(appointment);
+                    }
+                }
+                
+                // Only pending bookings are listed before the first page arrives
+                boolean firstPage = appointments.size() <= appointmentSync.getPending().size();
+                appointments.addAll(visible);
+                if (firstPage) {
+                    refreshAppointmentViews();
+                }
+                statusLabel.setText("Loaded " + appointments.size() + " appointments...");
+            })));
+        }, total -> {
+            refreshAppointmentViews();
+            appointmentSync.saveSnapshot();
             statusLabel.setText("Appointments loaded successfully");
-        } catch (Exception e) {
-            statusLabel.setText("Error loading appointments: " + e.getMessage());
-            e.printStackTrace();
+            appointmentsIdle();
+        }, error -> {
+            refreshAppointmentViews();
+            appointmentSync.invalidate();
+            statusLabel.setText("Error loading appointments: " + error.getMessage());
+            LOG.error("Error loading appointments", error);
+            appointmentsIdle();
+        });
+    }
+    
+    // Fetches only rows added and deleted since the last load and merges them into the list.
+    // Syncs triggered by a push are quiet: the status line only changes if rows did
+    private void syncAppointments(boolean announce) {
+        if (announce) {
+            statusLabel.setText("Checking for changes...");
         }
+        
+        appointmentsBusy = true;
+        tasks.submit(APPOINTMENTS_TASK, context -> context.await(appointmentSync.fetchChangesAsync()), changes -> {
+            if (appointmentSync.apply(changes, appointments, this::isVisibleToCurrentUser)) {
+                refreshAppointmentViews();
+                statusLabel.setText("Appointments updated");
+            } else if (announce) {
+                statusLabel.setText("Appointments are up to date");
+            }
+            appointmentsIdle();
+        }, error -> {
+            // Whatever is already on screen stays usable until the connection comes back
+            statusLabel.setText("Offline - showing saved appointments (" + error.getMessage() + ")");
+            LOG.warn("Offline - showing saved appointments", error);
+            appointmentsIdle();
+        });
+    }
+    
+    // The patient whose appointments are loaded, or null to load everyone's
+    private String patientScope() {
+        return Config.isPatient() ? Config.getCurrentUser().getUsername() : null;
+    }
+    
+    // Patients only see their own appointments
+    private boolean isVisibleToCurrentUser(Appointment appointment) {
+        if (!Config.isPatient()) {
+            return true;
+        }
+        return appointment.getPatientName().equals(Config.getCurrentUser().getUsername());
+    }
+    
+    private void refreshAppointmentViews() {
+        // Redraw the calendar from the date index
+        calendarView.refresh();
+        
+        // Update admin dashboard from the running totals
+        updateAdminDashboard();
     }
     
     private void deleteAppointment(Appointment appointment) {
-        try {
-            boolean success = databaseService.deleteAppointment(
-                appointment.getPatientName(), 
-                appointment.getDate()
-            );
-            
+        if (appointment.getId() == 0 && appointment.getClientRef() != null) {
+            deletePendingBooking(appointment);
+            return;
+        }
+        statusLabel.setText("Deleting appointment...");
+        
+        tasks.submit(null, context -> context.await(repository.deleteAppointmentAsync(appointment.getId())), success -> {
             if (success) {
+                appointmentSync.forget(appointment);
                 appointments.remove(appointment);
+                refreshAppointmentViews();
                 statusLabel.setText("Appointment deleted successfully");
             } else {
                 statusLabel.setText("Failed to delete appointment");
             }
-        } catch (Exception e) {
-            statusLabel.setText("Error deleting appointment: " + e.getMessage());
-            e.printStackTrace();
-        }
+        }, error -> {
+            statusLabel.setText("Error deleting appointment: " + error.getMessage());
+            LOG.error("Error deleting appointment", error);
+        });
+    }
+    
+    // A booking the database has not confirmed yet is taken out of the outbox instead
+    private void deletePendingBooking(Appointment appointment) {
+        tasks.submit(null, context -> context.await(bookingOutbox.cancel(appointment.getClientRef())), cancelled -> {
+            if (cancelled) {
+                appointmentSync.dropPending(appointment.getClientRef());
+                appointments.remove(appointment);
+                refreshAppointmentViews();
+                statusLabel.setText("Appointment deleted successfully");
+            } else {
+                statusLabel.setText("This appointment is still being saved - try deleting it again in a moment");
+            }
+        }, error -> {
+            statusLabel.setText("Error deleting appointment: " + error.getMessage());
+            LOG.error("Error deleting appointment", error);
+        });
     }
     
     @FXML
     private void handleBookAppointmentButton(ActionEvent event) {
-        try {
-            // Get input values
-            String patientName = patientNameField.getText().trim();
-            
-            // Validate patient name
-            if (patientName.isEmpty()) {
-                statusLabel.setText("Please enter a patient name");
-                return;
-            }
-            
-            // Validate date selection
-            if (appointmentDatePicker.getValue() == null) {
-                statusLabel.setText("Please select an appointment date");
-                return;
-            }
-            
-            // Format the selected date
-            String formattedDate = appointmentDatePicker.getValue().format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-            
-            // Create new appointment
-            Appointment newAppointment = new Appointment(patientName, formattedDate);
-            
-            statusLabel.setText("Sending appointment to database...");
-            
-            // Save appointment to Supabase - with current user if logged in
-            boolean success = databaseService.insertAppointment(newAppointment, Config.getCurrentUser());
-            
-            if (success) {
-                // Add to local list
-                appointments.add(newAppointment);
-                
-                // Clear input fields
-                if (Config.isAdmin()) {
-                    patientNameField.clear();
+        // Get input values
+        String patientName = patientNameField.getText().trim();
+        
+        // Validate patient name
+        if (patientName.isEmpty()) {
+            statusLabel.setText("Please enter a patient name");
+            return;
+        }
+        
+        // Validate date selection
+        if (appointmentDatePicker.getValue() == null) {
+            statusLabel.setText("Please select an appointment date");
+            return;
+        }
+        
+        // Format the selected date
+        String formattedDate = appointmentDatePicker.getValue().format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+        
+        // Create new appointment, owned by the current user if logged in
+        Appointment newAppointment = new Appointment(patientName, formattedDate);
+        User currentUser = Config.getCurrentUser();
+        if (currentUser != null) {
+            newAppointment.setUserId(currentUser.getId());
+        }
+        
+        // Show the booking straight away; the outbox sends it to the store in the background
+        CompletableFuture<Void> saved = bookingOutbox.enqueue(newAppointment);
+        appointmentSync.trackPending(newAppointment);
+        appointments.add(newAppointment);
+        refreshAppointmentViews();
+        
+        // Clear input fields
+        if (Config.isAdmin()) {
+            patientNameField.clear();
+        }
+        appointmentDatePicker.setValue(null);
+        statusLabel.setText("Appointment booked successfully!");
+        
+        // Only fails if the booking could not be written to disk, in which case it would be lost on exit
+        tasks.submit(null, context -> context.await(saved), ignored -> { }, error -> {
+            appointmentSync.dropPending(newAppointment.getClientRef());
+            appointments.remove(newAppointment);
+            refreshAppointmentViews();
+            statusLabel.setText("Error booking appointment: " + error.getMessage());
+            LOG.error("Error booking appointment", error);
+        });
+    }
+    
+    @FXML
+    private void handleImportCsvButton(ActionEvent event) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Import Appointments");
+        chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV files", "*.csv"));
+        File file = chooser.showOpenDialog(importCsvButton.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        
+        importCsvButton.setDisable(true);
+        statusLabel.setText("Importing " + file.getName() + "...");
+        
+        AppointmentCsvImporter importer = new AppointmentCsvImporter(repository, Config.getCurrentUser());
+        tasks.submit("import", context -> importer.importFile(file.toPath(), rows ->
+                context.publish(() -> statusLabel.setText("Importing " + file.getName() + ": " + rows + " rows read..."))),
+            report -> {
+                importCsvButton.setDisable(false);
+                StringBuilder message = new StringBuilder("Imported " + report.getRowsImported() + " of "
+                        + report.getRowsRead() + " rows");
+                if (report.getRowsFailed() > 0) {
+                    message.append(", ").append(report.getRowsFailed()).append(" failed");
+                    for (AppointmentCsvImporter.RowError rowError : report.getErrors()) {
+                        LOG.warn("CSV import: " + rowError);
+                    }
+                    // Show the first few on screen; the rest are in the console
+                    List<AppointmentCsvImporter.RowError> errors = report.getErrors();
+                    for (int i = 0; i < Math.min(3, errors.size()); i++) {
+                        message.append("\n").append(errors.get(i));
+                    }
                 }
-                appointmentDatePicker.setValue(null);
+                statusLabel.setText(message.toString());
                 
-                // Update status
-                statusLabel.setText("Appointment booked successfully!");
-            } else {
-                statusLabel.setText("Failed to save appointment to database. Check console for details.");
-                System.err.println("API Key length: " + Config.SUPABASE_API_KEY.length());
-                System.err.println("Database URL: " + Config.SUPABASE_URL);
-            }
-            
-        } catch (Exception e) {
-            statusLabel.setText("Error booking appointment: " + e.getMessage());
-            e.printStackTrace();
-        }
+                // Pick up the new rows through the normal delta sync
+                if (appointmentSync.isPrimed()) {
+                    syncAppointments(true);
+                } else {
+                    loadAppointmentsFromDatabase();
+                }
+            }, error -> {
+                importCsvButton.setDisable(false);
+                statusLabel.setText("Error importing appointments: " + error.getMessage());
+                LOG.error("Error importing appointments", error);
+            });
     }
     
     @FXML
     private void handleRefreshButton(ActionEvent event) {
-        loadAppointmentsFromDatabase();
+        // Also retry queued bookings now rather than after their backoff
+        bookingOutbox.flushNow();
+        if (appointmentSync.isPrimed()) {
+            syncAppointments(true);
+        } else {
+            loadAppointmentsFromDatabase();
+        }
     }
     
     @FXML
     private void handleLogoutButton(ActionEvent event) {
+        // Nothing still running should touch this view once it is gone
+        tasks.cancelAll();
+        dashboardRefresh.stop();
+        // Queued bookings stay in the journal and are sent after the next login
+        bookingOutbox.close();
+        if (realtimeChannel != null) {
+            realtimeChannel.close();
+            realtimeChannel = null;
+        }
+        
         // Clear current user
         Config.setCurrentUser(null);
         
@@ -333,7 +893,7 @@ public class DashboardController implements Initializable {
             currentStage.setTitle("Doctor Appointment System - Login");
             
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("Error logging out", e);
             statusLabel.setText("Error logging out: " + e.getMessage());
         }
     }
@@ -0,0 +1,123 @@
+package DoctorAppointmentSystem;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The {@link OperationMetrics} of every {@link DatabaseService} operation.
+ * Each operation is registered with the platform MBean server on first use,
+ * as DoctorAppointmentSystem:type=DatabaseService,operation=name, and a
+ * summary is printed every {@link Config#METRICS_LOG_SECONDS} seconds when
+ * there were calls.
+ */
+public class DatabaseMetrics {
+    private static final Log LOG = Log.get("metrics");
+
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    // Total calls at the last periodic dump, so an idle client stays quiet
+    private long callsAtLastDump;
+
+    public DatabaseMetrics() {
+        if (Config.METRICS_LOG_SECONDS > 0) {
+            ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "database-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            dumper.scheduleAtFixedRate(this::dumpIfActive,
+                    Config.METRICS_LOG_SECONDS, Config.METRICS_LOG_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    public OperationMetrics forOperation(String operation) {
+        return operations.computeIfAbsent(operation, name -> {
+            OperationMetrics metrics = new OperationMetrics(name);
+            register(metrics);
+            return metrics;
+        });
+    }
+
+    private static void register(OperationMetrics metrics) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                    new ObjectName("DoctorAppointmentSystem:type=DatabaseService,operation="
+                            + metrics.getName()));
+        } catch (JMException e) {
+            // Still recorded and dumped, just not visible over JMX
+            LOG.warn("Could not register metrics for " + metrics.getName() + ": " + e.getMessage());
+        }
+    }
+
+    // Starts timing one HTTP request of the given operation
+    Call start(String operation) {
+        return new Call(forOperation(operation));
+    }
+
+    /**
+     * One request in flight. The client calls {@link #headers} when the
+     * response headers arrive and {@link #finish} once the body has been
+     * read or the request failed; later calls to finish are ignored.
+     */
+    static final class Call {
+        private final OperationMetrics metrics;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile long headersNanos;
+        private volatile int status;
+
+        Call(OperationMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        void sent(long bytes) {
+            if (bytes > 0) {
+                metrics.addBytesSent(bytes);
+            }
+        }
+
+        void headers(int status) {
+            this.headersNanos = System.nanoTime() - start;
+            this.status = status;
+        }
+
+        void received(long bytes) {
+            metrics.addBytesReceived(bytes);
+        }
+
+        void finish(boolean failed) {
+            if (finished.compareAndSet(false, true)) {
+                metrics.record(System.nanoTime() - start, headersNanos, status, failed);
+            }
+        }
+    }
+
+    // One line per operation, in name order
+    public String snapshot() {
+        StringBuilder text = new StringBuilder();
+        for (OperationMetrics metrics : new TreeMap<>(operations).values()) {
+            text.append(metrics.summary()).append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+
+    private synchronized void dumpIfActive() {
+        long calls = 0;
+        for (OperationMetrics metrics : operations.values()) {
+            calls += metrics.getCalls();
+        }
+        // A reset over JMX lowers the total; any calls since then still count as activity
+        if (calls != callsAtLastDump) {
+            LOG.info(() -> "Database metrics:" + System.lineSeparator() + snapshot().stripTrailing());
+        }
+        callsAtLastDump = calls;
+    }
+}
@@ -1,437 +1,1001 @@
 package DoctorAppointmentSystem;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URLEncoder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.nio.charset.StandardCharsets;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+public class DatabaseService implements AppointmentRepository {
+    private static final Log LOG = Log.get("database");
 
-public class DatabaseService {
     private static DatabaseService instance;
-    
+
+    // Connections are pooled by the shared client, so these only bound how long a call may hang
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
     private final String SUPABASE_URL;
     private final String SUPABASE_API_KEY;
     private final String APPOINTMENTS_TABLE = "appointments";
     private final String USERS_TABLE = "users";
-    
+    private final String DELETIONS_TABLE = "appointment_deletions";
+
+    // Only the columns the client decodes; created_at and anything added later stay on the server
+    private static final String[] APPOINTMENT_COLUMNS = {"id", "user_id", "patient_name", "appointment_date", "client_ref"};
+    private static final String[] USER_COLUMNS = {"id", "username", "role", "email", "password_hash", "password_salt"};
+
+    private static final PostgrestQuery ALL_APPOINTMENTS = PostgrestQuery.from("appointments")
+            .select(APPOINTMENT_COLUMNS);
+    // Keyset pages: id > cursor, in id order
+    private static final PostgrestQuery APPOINTMENT_PAGE = PostgrestQuery.from("appointments")
+            .select(APPOINTMENT_COLUMNS).where("id", PostgrestQuery.Op.GT).orderBy("id").limited();
+    private static final PostgrestQuery PATIENT_APPOINTMENT_PAGE = PostgrestQuery.from("appointments")
+            .select(APPOINTMENT_COLUMNS).where("id", PostgrestQuery.Op.GT)
+            .where("patient_name", PostgrestQuery.Op.EQ).orderBy("id").limited();
+    private static final PostgrestQuery UPSERT_APPOINTMENTS = PostgrestQuery.from("appointments")
+            .param("on_conflict", "client_ref");
+    private static final PostgrestQuery DELETE_APPOINTMENT = PostgrestQuery.from("appointments")
+            .where("id", PostgrestQuery.Op.EQ);
+    private static final PostgrestQuery DELETIONS_AFTER = PostgrestQuery.from("appointment_deletions")
+            .select("id", "appointment_id").where("id", PostgrestQuery.Op.GT).orderBy("id");
+    private static final PostgrestQuery LATEST_DELETION = PostgrestQuery.from("appointment_deletions")
+            .select("id", "appointment_id").orderBy("id", false).limited();
+    private static final PostgrestQuery USER_BY_NAME = PostgrestQuery.from("users")
+            .select(USER_COLUMNS).where("username", PostgrestQuery.Op.EQ);
+    private static final PostgrestQuery USER_BY_ID = PostgrestQuery.from("users")
+            .where("id", PostgrestQuery.Op.EQ);
+
+    // One client for the whole application: it keeps connections alive between calls
+    // and multiplexes concurrent requests over a single HTTP/2 connection when the server allows it
+    private final HttpClient httpClient;
+
+    // Identical reads that overlap share one request
+    private final SingleFlight reads = new SingleFlight();
+
+    private final DatabaseMetrics metrics = new DatabaseMetrics();
+
+    // Set once the server turns out not to have the change token function, so it is not asked again
+    private volatile boolean changeTokenUnsupported;
+
+    // The last full read of the appointments table and the change token it was taken at
+    private volatile TokenedRows lastFullRead;
+
+    private static class TokenedRows {
+        final long changeToken;
+        final List<Appointment> rows;
+
+        TokenedRows(long changeToken, List<Appointment> rows) {
+            this.changeToken = changeToken;
+            this.rows = rows;
+        }
+    }
+
     private DatabaseService(String supabaseUrl, String supabaseApiKey) {
         this.SUPABASE_URL = supabaseUrl;
         this.SUPABASE_API_KEY = supabaseApiKey;
-        
-        // Debug credentials during initialization
-        System.out.println("DatabaseService initialized with:");
-        System.out.println("URL: " + supabaseUrl);
-        System.out.println("API key length: " + (supabaseApiKey != null ? supabaseApiKey.length() : 0));
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+
+        LOG.info("DatabaseService initialized for " + supabaseUrl);
+        LOG.debug(() -> "API key length: " + (supabaseApiKey != null ? supabaseApiKey.length() : 0));
     }
-    
+
     public static synchronized DatabaseService getInstance(String supabaseUrl, String supabaseApiKey) {
         if (instance == null) {
             instance = new DatabaseService(supabaseUrl, supabaseApiKey);
         }
         return instance;
     }
-    
-    public boolean insertAppointment(Appointment appointment, User user) {
+
+    @Override
+    public String getLocation() {
+        return SUPABASE_URL;
+    }
+
+    private boolean hasCredentials() {
+        return SUPABASE_URL != null && !SUPABASE_URL.isEmpty() &&
+               SUPABASE_API_KEY != null && !SUPABASE_API_KEY.isEmpty();
+    }
+
+    // Base request for a REST endpoint, e.g. "appointments?select=*"
+    private HttpRequest.Builder newRequest(String pathAndQuery) {
+        return HttpRequest.newBuilder(URI.create(SUPABASE_URL + "/rest/v1/" + pathAndQuery))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                // The JDK client does not decompress by itself; see decodedBody
+                .header("Accept-Encoding", "gzip")
+                .header("apikey", SUPABASE_API_KEY)
+                .header("Authorization", "Bearer " + SUPABASE_API_KEY);
+    }
+
+    /**
+     * Sends a request whose response is small enough to decode in full once
+     * it has arrived. The call is timed as {@code operation} in
+     * {@link #getMetrics()}.
+     */
+    private CompletableFuture<HttpResponse<String>> send(String operation, HttpRequest request) {
+        DatabaseMetrics.Call call = startCall(operation, request);
+        return httpClient.sendAsync(request, info -> {
+            call.headers(info.statusCode());
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofByteArray(), bytes -> {
+                call.received(bytes.length);
+                return decodeString(info.headers(), bytes);
+            });
+        }).whenComplete((response, error) -> call.finish(error != null));
+    }
+
+    // For large bodies: the caller reads decodedBody(response) straight from the stream and must close it
+    private CompletableFuture<HttpResponse<InputStream>> sendStreaming(String operation, HttpRequest request) {
+        DatabaseMetrics.Call call = startCall(operation, request);
+        HttpResponse.BodyHandler<InputStream> metered = info -> {
+            call.headers(info.statusCode());
+            return HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(),
+                    body -> new MeteredInputStream(body, call));
+        };
+        return httpClient.sendAsync(request, metered).whenComplete((response, error) -> {
+            // On success the call finishes when the caller has read or closed the body
+            if (error != null) {
+                call.finish(true);
+            }
+        });
+    }
+
+    private DatabaseMetrics.Call startCall(String operation, HttpRequest request) {
+        DatabaseMetrics.Call call = metrics.start(operation);
+        call.sent(request.bodyPublisher().map(HttpRequest.BodyPublisher::contentLength).orElse(0L));
+        return call;
+    }
+
+    // Decompresses a small response once it has arrived in full
+    private static String decodeString(HttpHeaders headers, byte[] bytes) {
+        if (bytes.length == 0) {
+            // e.g. return=minimal; there is no gzip header to read
+            return "";
+        }
+        try (InputStream in = decode(headers, new ByteArrayInputStream(bytes))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Counts the bytes of a streamed body as they arrive, finishing the call at the end or on close
+    private static class MeteredInputStream extends FilterInputStream {
+        private final DatabaseMetrics.Call call;
+
+        MeteredInputStream(InputStream in, DatabaseMetrics.Call call) {
+            super(in);
+            this.call = call;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b < 0) {
+                call.finish(false);
+            } else {
+                call.received(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n;
+            try {
+                n = super.read(buffer, offset, length);
+            } catch (IOException e) {
+                call.finish(true);
+                throw e;
+            }
+            if (n < 0) {
+                call.finish(false);
+            } else {
+                call.received(n);
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            call.finish(false);
+            super.close();
+        }
+    }
+
+    // Timers and counters for each kind of request, also published over JMX
+    public DatabaseMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * The response body with any Content-Encoding removed, decompressed as
+     * it is read so the JSON decoder streams straight from the network.
+     * Must be called on the thread that reads the body, not in a mapper on
+     * the client's own threads, since gzip reads its header on construction.
+     */
+    private static InputStream decodedBody(HttpResponse<InputStream> response) throws IOException {
+        return decode(response.headers(), response.body());
+    }
+
+    private static InputStream decode(HttpHeaders headers, InputStream body) throws IOException {
+        String encoding = headers.firstValue("Content-Encoding").orElse("identity").trim().toLowerCase(Locale.ROOT);
+        switch (encoding) {
+            case "identity":
+            case "":
+                return body;
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(body, 1 << 16);
+            case "deflate":
+                return new InflaterInputStream(body, new Inflater(), 1 << 16);
+            default:
+                body.close();
+                throw new IOException("Unsupported response encoding: " + encoding);
+        }
+    }
+
+    // Bodies smaller than this are sent as they are even when compression is on
+    private static final int COMPRESS_MIN_BYTES = 8 * 1024;
+
+    // A POST of a JSON body, gzip-compressed if enabled and worth it
+    private static HttpRequest.Builder postJson(HttpRequest.Builder builder, String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        if (!Config.COMPRESS_REQUESTS || bytes.length < COMPRESS_MIN_BYTES) {
+            return builder.POST(HttpRequest.BodyPublishers.ofByteArray(bytes));
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, 1 << 16)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            // Cannot happen when writing to memory
+            throw new UncheckedIOException(e);
+        }
+        return builder.header("Content-Encoding", "gzip")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(compressed.toByteArray()));
+    }
+
+    public CompletableFuture<Boolean> insertAppointmentAsync(Appointment appointment, User user) {
         try {
             // Check if credentials are valid
-            if (SUPABASE_URL == null || SUPABASE_URL.isEmpty() || 
-                SUPABASE_API_KEY == null || SUPABASE_API_KEY.isEmpty()) {
-                System.err.println("Error: Supabase credentials are not properly configured");
-                return false;
+            if (!hasCredentials()) {
+                LOG.error("Supabase credentials are not properly configured");
+                return CompletableFuture.completedFuture(false);
             }
-            
+
             // Create JSON payload
-            String json;
-            
-            if (user != null) {
-                json = String.format(
-                    "{\"patient_name\":\"%s\",\"appointment_date\":\"%s\",\"user_id\":%d}",
-                    appointment.getPatientName(), appointment.getDate(), user.getId());
-            } else {
-                json = String.format(
-                    "{\"patient_name\":\"%s\",\"appointment_date\":\"%s\"}",
-                    appointment.getPatientName(), appointment.getDate());
+            String json = writeAppointment(new JsonWriter(), appointment, user).toString();
+
+            LOG.debug(() -> "Sending to " + SUPABASE_URL + "/rest/v1/" + APPOINTMENTS_TABLE + ": " + json);
+
+            HttpRequest request = newRequest(APPOINTMENTS_TABLE)
+                    .header("Prefer", "return=representation")
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .build();
+
+            return send("insertAppointment", request).thenApply(response -> {
+                int responseCode = response.statusCode();
+                if (responseCode >= 400) {
+                    LOG.warn("Inserting appointment failed with response code " + responseCode);
+                    LOG.debug(() -> "Error response: " + response.body());
+                } else {
+                    LOG.debug(() -> "Success response: " + response.body());
+                    assignSavedId(appointment, response.body());
+                }
+
+                return responseCode >= 200 && responseCode < 300;
+            }).exceptionally(e -> {
+                LOG.error("Error inserting appointment: " + e.getMessage(), e);
+                return false;
+            });
+        } catch (Exception e) {
+            LOG.error("Error inserting appointment: " + e.getMessage(), e);
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    // Copies the server-assigned id and owner from a return=representation body onto the local object
+    private void assignSavedId(Appointment appointment, String body) {
+        try {
+            List<Appointment> saved = new ArrayList<>(1);
+            readAppointments(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), saved::add);
+            if (!saved.isEmpty()) {
+                appointment.setId(saved.get(0).getId());
+                appointment.setUserId(saved.get(0).getUserId());
+            }
+        } catch (IOException e) {
+            LOG.warn("Could not read saved appointment id: " + e.getMessage());
+        }
+    }
+
+    private static JsonWriter writeAppointment(JsonWriter json, Appointment appointment, User user) {
+        json.beginObject()
+            .name("patient_name").value(appointment.getPatientName())
+            .name("appointment_date").value(appointment.getDate());
+        int userId = user != null ? user.getId() : appointment.getUserId();
+        if (userId != 0) {
+            json.name("user_id").value(userId);
+        }
+        if (appointment.getClientRef() != null) {
+            json.name("client_ref").value(appointment.getClientRef());
+        }
+        return json.endObject();
+    }
+
+    /**
+     * Inserts several appointments with one POST of a JSON array. PostgREST
+     * applies the array in a single statement, so the batch succeeds or fails
+     * as a whole; on failure the future completes with an IOException that
+     * carries the response code and body.
+     */
+    @Override
+    public CompletableFuture<Void> insertAppointmentBatchAsync(List<Appointment> batch, User user) {
+        try {
+            if (!hasCredentials()) {
+                return CompletableFuture.failedFuture(
+                        new IOException("Supabase credentials are not properly configured"));
             }
-            
-            System.out.println("Sending to Supabase: " + json);
-            System.out.println("URL: " + SUPABASE_URL + "/rest/v1/" + APPOINTMENTS_TABLE);
-            
-            // Create connection
-            URL url = new URL(SUPABASE_URL + "/rest/v1/" + APPOINTMENTS_TABLE);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setRequestProperty("apikey", SUPABASE_API_KEY);
-            conn.setRequestProperty("Authorization", "Bearer " + SUPABASE_API_KEY);
-            conn.setRequestProperty("Prefer", "return=minimal");
-            conn.setDoOutput(true);
-            
-            // Send data
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = json.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
+
+            JsonWriter json = new JsonWriter(new StringBuilder(batch.size() * 96)).beginArray();
+            for (Appointment appointment : batch) {
+                writeAppointment(json, appointment, user);
             }
-            
-            // Get response
-            int responseCode = conn.getResponseCode();
-            System.out.println("Response code: " + responseCode);
-            
-            // Read error response if available
-            if (responseCode >= 400) {
-                try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getErrorStream()))) {
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        response.append(line);
-                    }
-                    System.out.println("Error response: " + response.toString());
+            json.endArray();
+
+            HttpRequest request = postJson(newRequest(APPOINTMENTS_TABLE)
+                    .header("Prefer", "return=minimal"), json.toString())
+                    .build();
+
+            return send("insertAppointmentBatch", request).thenApply(response -> {
+                int responseCode = response.statusCode();
+                if (responseCode < 200 || responseCode >= 300) {
+                    throw new UncheckedIOException(new IOException(
+                            "HTTP " + responseCode + ": " + response.body()));
                 }
-            } else {
-                try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()))) {
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        response.append(line);
+                return null;
+            });
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Inserts a batch of outbox bookings, keyed on their client reference.
+     * Rows that already exist from an earlier attempt are merged rather than
+     * duplicated, so a batch may be resent safely after a timeout. Completes
+     * with the saved rows, including their ids; a rejected request fails with
+     * an {@link HttpStatusException}.
+     */
+    @Override
+    public CompletableFuture<List<Appointment>> upsertAppointmentBatchAsync(List<Appointment> batch) {
+        try {
+            if (!hasCredentials()) {
+                return CompletableFuture.failedFuture(
+                        new IOException("Supabase credentials are not properly configured"));
+            }
+
+            JsonWriter json = new JsonWriter(new StringBuilder(batch.size() * 128)).beginArray();
+            for (Appointment appointment : batch) {
+                writeAppointment(json, appointment, null);
+            }
+            json.endArray();
+
+            HttpRequest request = postJson(newRequest(UPSERT_APPOINTMENTS.bind())
+                    .header("Prefer", "resolution=merge-duplicates,return=representation"), json.toString())
+                    .build();
+
+            return sendStreaming("upsertAppointmentBatch", request).thenApply(response -> {
+                try (InputStream body = decodedBody(response)) {
+                    int responseCode = response.statusCode();
+                    if (responseCode < 200 || responseCode >= 300) {
+                        throw new HttpStatusException(responseCode,
+                                new String(body.readAllBytes(), StandardCharsets.UTF_8));
                     }
-                    System.out.println("Success response: " + response.toString());
+                    List<Appointment> saved = new ArrayList<>(batch.size());
+                    readAppointments(body, saved::add);
+                    metrics.forOperation("upsertAppointmentBatch").addRowsParsed(saved.size());
+                    return saved;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-            }
-            
-            return responseCode >= 200 && responseCode < 300;
-            
+            });
         } catch (Exception e) {
-            System.err.println("Error inserting appointment: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+            return CompletableFuture.failedFuture(e);
         }
     }
-    
+
+    public boolean insertAppointment(Appointment appointment, User user) {
+        return insertAppointmentAsync(appointment, user).join();
+    }
+
     public boolean insertAppointment(Appointment appointment) {
         return insertAppointment(appointment, null);
     }
-    
-    public List<Appointment> getAllAppointments() {
-        List<Appointment> appointments = new ArrayList<>();
-        
-        try {
-            // Create connection
-            URL url = new URL(SUPABASE_URL + "/rest/v1/" + APPOINTMENTS_TABLE + "?select=*");
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setRequestProperty("apikey", SUPABASE_API_KEY);
-            conn.setRequestProperty("Authorization", "Bearer " + SUPABASE_API_KEY);
-            
-            // Get response
-            int responseCode = conn.getResponseCode();
-            
-            if (responseCode == 200) {
-                BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-                String inputLine;
-                StringBuilder response = new StringBuilder();
-                
-                while ((inputLine = in.readLine()) != null) {
-                    response.append(inputLine);
+
+    /**
+     * Reads the whole appointments table. If the change token shows the table
+     * has not changed since the last full read, that read is returned again
+     * without downloading anything; the rows are shared with it, so treat
+     * them as read-only.
+     */
+    @Override
+    public CompletableFuture<List<Appointment>> getAllAppointmentsAsync() {
+        return fetchChangeTokenAsync().thenCompose(token -> {
+            TokenedRows cached = lastFullRead;
+            if (token != null && cached != null && cached.changeToken == token) {
+                return CompletableFuture.completedFuture((List<Appointment>) new ArrayList<>(cached.rows));
+            }
+            return reads.execute(ALL_APPOINTMENTS.bind(), this::fetchAllAppointments).thenApply(rows -> {
+                // The token was read before the rows, so a write in between only causes an extra download later
+                if (token != null) {
+                    lastFullRead = new TokenedRows(token, rows);
                 }
-                in.close();
-                
-                // Parse JSON response (simple parsing without external libraries)
-                String jsonStr = response.toString();
-                
-                // Very simple JSON array parser
-                jsonStr = jsonStr.trim();
-                if (jsonStr.startsWith("[") && jsonStr.endsWith("]")) {
-                    jsonStr = jsonStr.substring(1, jsonStr.length() - 1);
-                    
-                    // Split by objects
-                    if (!jsonStr.isEmpty()) {
-                        int depth = 0;
-                        int start = 0;
-                        
-                        for (int i = 0; i < jsonStr.length(); i++) {
-                            char c = jsonStr.charAt(i);
-                            
-                            if (c == '{') {
-                                if (depth == 0) {
-                                    start = i;
-                                }
-                                depth++;
-                            } else if (c == '}') {
-                                depth--;
-                                if (depth == 0) {
-                                    String obj = jsonStr.substring(start, i + 1);
-                                    parseAppointment(obj, appointments);
-                                }
-                            }
-                        }
+                return (List<Appointment>) new ArrayList<>(rows);
+            });
+        }).exceptionally(e -> {
+            LOG.error("Error fetching appointments: " + e.getMessage(), e);
+            return new ArrayList<>();
+        });
+    }
+
+    private CompletableFuture<List<Appointment>> fetchAllAppointments() {
+        try {
+            HttpRequest request = newRequest(ALL_APPOINTMENTS.bind()).GET().build();
+
+            return sendStreaming("getAllAppointments", request).thenApply(response -> {
+                List<Appointment> appointments = new ArrayList<>();
+
+                try (InputStream body = decodedBody(response)) {
+                    if (response.statusCode() != 200) {
+                        throw new HttpStatusException(response.statusCode(),
+                                new String(body.readAllBytes(), StandardCharsets.UTF_8));
                     }
+                    readAppointments(body, appointments::add);
+                    metrics.forOperation("getAllAppointments").addRowsParsed(appointments.size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
-            }
-            
+
+                return List.copyOf(appointments);
+            });
         } catch (Exception e) {
-            System.err.println("Error fetching appointments: " + e.getMessage());
-            e.printStackTrace();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * A number that changes whenever the appointments table does, from the
+     * appointments_change_token function. It costs one tiny request, so
+     * callers probe it to skip a download when nothing changed. Completes
+     * with null when there is no token to compare: the function is missing
+     * (migration not applied) or the probe failed.
+     */
+    @Override
+    public CompletableFuture<Long> fetchChangeTokenAsync() {
+        if (changeTokenUnsupported || !hasCredentials()) {
+            return CompletableFuture.completedFuture(null);
         }
-        
-        return appointments;
+        return reads.execute("rpc/appointments_change_token", () -> {
+            HttpRequest request = newRequest("rpc/appointments_change_token").GET().build();
+            return send("changeToken", request).thenApply(response -> {
+                if (response.statusCode() == 404) {
+                    LOG.warn("Server has no appointments_change_token function; syncing without it");
+                    changeTokenUnsupported = true;
+                    return null;
+                }
+                String body = response.body().trim();
+                if (response.statusCode() != 200 || body.equals("null")) {
+                    return null;
+                }
+                return Long.valueOf(body);
+            }).exceptionally(e -> null);
+        });
+    }
+
+    public List<Appointment> getAllAppointments() {
+        return getAllAppointmentsAsync().join();
+    }
+
+    /**
+     * Fetches one page of appointments ordered by id, starting after the given id.
+     * Keyset paging keeps every page an index range scan on the server, however
+     * deep into the table the cursor is.
+     */
+    public CompletableFuture<List<Appointment>> fetchAppointmentPageAsync(int afterId, int pageSize) {
+        return fetchAppointmentPageAsync(afterId, pageSize, null);
+    }
+
+    // As above, but only the named patient's rows when patientName is not null
+    public CompletableFuture<List<Appointment>> fetchAppointmentPageAsync(int afterId, int pageSize, String patientName) {
+        String path = patientName == null
+                ? APPOINTMENT_PAGE.bind(afterId, pageSize)
+                : PATIENT_APPOINTMENT_PAGE.bind(afterId, patientName, pageSize);
+        return reads.execute(path, () -> fetchAppointmentPage(path, pageSize));
     }
-    
-    private void parseAppointment(String jsonObj, List<Appointment> appointments) {
+
+    private CompletableFuture<List<Appointment>> fetchAppointmentPage(String path, int pageSize) {
         try {
-            // Simple extraction of values
-            String patientName = extractJsonValue(jsonObj, "patient_name");
-            String appointmentDate = extractJsonValue(jsonObj, "appointment_date");
-            
-            if (patientName != null && appointmentDate != null) {
-                Appointment appointment = new Appointment(patientName, appointmentDate);
-                appointments.add(appointment);
-            }
+            HttpRequest request = newRequest(path).GET().build();
+
+            return sendStreaming("appointmentPage", request).thenApply(response -> {
+                List<Appointment> page = new ArrayList<>(pageSize);
+
+                try (InputStream body = decodedBody(response)) {
+                    if (response.statusCode() != 200) {
+                        throw new IOException("Appointment page request failed with response code "
+                                + response.statusCode());
+                    }
+                    readAppointments(body, page::add);
+                    metrics.forOperation("appointmentPage").addRowsParsed(page.size());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                return page;
+            });
         } catch (Exception e) {
-            System.err.println("Error parsing appointment: " + e.getMessage());
-        }
-    }
-    
-    private String extractJsonValue(String json, String key) {
-        String searchKey = "\"" + key + "\":";
-        int index = json.indexOf(searchKey);
-        
-        if (index != -1) {
-            index += searchKey.length();
-            
-            // Skip whitespace
-            while (index < json.length() && Character.isWhitespace(json.charAt(index))) {
-                index++;
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Walks the whole appointments table page by page, handing each page to
+     * {@code onPage} as soon as it arrives (on a background thread), so callers
+     * can show the first rows before the rest has downloaded. Cancelling the
+     * returned future stops before the next page is requested.
+     *
+     * @return a future with the number of rows delivered
+     */
+    public CompletableFuture<Integer> fetchAppointmentPagesAsync(int pageSize, Consumer<List<Appointment>> onPage) {
+        return fetchAppointmentPagesAsync(0, pageSize, null, onPage);
+    }
+
+    /**
+     * Same as above, but only for rows with an id greater than afterId and,
+     * unless patientName is null, only that patient's rows. The filter is
+     * applied by the server, so other patients' rows are never downloaded.
+     */
+    @Override
+    public CompletableFuture<Integer> fetchAppointmentPagesAsync(int afterId, int pageSize, String patientName,
+                                                                 Consumer<List<Appointment>> onPage) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        fetchRemainingPages(afterId, pageSize, patientName, 0, onPage, result);
+        return result;
+    }
+
+    private void fetchRemainingPages(int afterId, int pageSize, String patientName, int delivered,
+                                     Consumer<List<Appointment>> onPage, CompletableFuture<Integer> result) {
+        if (result.isDone()) {
+            return;
+        }
+
+        fetchAppointmentPageAsync(afterId, pageSize, patientName).whenComplete((page, error) -> {
+            if (error != null) {
+                LOG.warn("Error fetching appointment page: " + error.getMessage());
+                result.completeExceptionally(error);
+                return;
             }
-            
-            if (index < json.length()) {
-                if (json.charAt(index) == '"') {
-                    // String value
-                    int endIndex = json.indexOf('"', index + 1);
-                    if (endIndex != -1) {
-                        return json.substring(index + 1, endIndex);
-                    }
-                } else if (Character.isDigit(json.charAt(index)) || json.charAt(index) == '-') {
-                    // Numeric value
-                    int endIndex = index;
-                    while (endIndex < json.length() && 
-                          (Character.isDigit(json.charAt(endIndex)) || 
-                           json.charAt(endIndex) == '.' || 
-                           json.charAt(endIndex) == '-' ||
-                           json.charAt(endIndex) == 'e' ||
-                           json.charAt(endIndex) == 'E')) {
-                        endIndex++;
-                    }
-                    
-                    if (endIndex > index) {
-                        // Check if we have a comma or closing brace after
-                        if (endIndex == json.length() || 
-                            json.charAt(endIndex) == ',' || 
-                            json.charAt(endIndex) == '}') {
-                            return json.substring(index, endIndex);
-                        }
+            if (result.isDone()) {
+                return;
+            }
+
+            try {
+                if (!page.isEmpty()) {
+                    onPage.accept(page);
+                }
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+                return;
+            }
+
+            int total = delivered + page.size();
+            if (page.size() < pageSize) {
+                result.complete(total);
+            } else {
+                int lastId = page.get(page.size() - 1).getId();
+                fetchRemainingPages(lastId, pageSize, patientName, total, onPage, result);
+            }
+        });
+    }
+
+    // Tombstones recorded after the given tombstone id, oldest first
+    @Override
+    public CompletableFuture<List<AppointmentDeletion>> fetchDeletionsAsync(long afterDeletionId) {
+        return fetchDeletions(DELETIONS_AFTER.bind(afterDeletionId));
+    }
+
+    // Id of the newest tombstone, or 0 if there are none; taken before a full load so no delete is missed
+    @Override
+    public CompletableFuture<Long> fetchLatestDeletionIdAsync() {
+        return fetchDeletions(LATEST_DELETION.bind(1))
+                .thenApply(deletions -> deletions.isEmpty() ? 0L : deletions.get(0).getId());
+    }
+
+    // Push notifications for inserts and deletes on the appointments table; the caller starts and closes it
+    @Override
+    public RealtimeChannel subscribeToAppointmentChanges(RealtimeChannel.Listener listener) {
+        if (!hasCredentials()) {
+            return null;
+        }
+        return new RealtimeChannel(httpClient, RealtimeChannel.realtimeUri(SUPABASE_URL, SUPABASE_API_KEY),
+                APPOINTMENTS_TABLE, SUPABASE_API_KEY, listener);
+    }
+
+    private CompletableFuture<List<AppointmentDeletion>> fetchDeletions(String path) {
+        return reads.execute(path, () -> fetchDeletionsNow(path));
+    }
+
+    private CompletableFuture<List<AppointmentDeletion>> fetchDeletionsNow(String path) {
+        try {
+            HttpRequest request = newRequest(path).GET().build();
+
+            return sendStreaming("deletions", request).thenApply(response -> {
+                try (InputStream body = decodedBody(response)) {
+                    if (response.statusCode() != 200) {
+                        throw new IOException("Deletion feed request failed with response code "
+                                + response.statusCode());
                     }
-                } else if (json.charAt(index) == 'n' && 
-                          index + 4 <= json.length() && 
-                          json.substring(index, index + 4).equals("null")) {
-                    // Null value
-                    return null;
+                    List<AppointmentDeletion> deletions = readDeletions(body);
+                    metrics.forOperation("deletions").addRowsParsed(deletions.size());
+                    return deletions;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static List<AppointmentDeletion> readDeletions(InputStream in) throws IOException {
+        List<AppointmentDeletion> deletions = new ArrayList<>();
+        JsonReader reader = new JsonReader(in);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            long id = 0;
+            int appointmentId = 0;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (name.equals("id")) {
+                    id = reader.nextLong();
+                } else if (name.equals("appointment_id")) {
+                    appointmentId = reader.nextInt();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            deletions.add(new AppointmentDeletion(id, appointmentId));
+        }
+        reader.endArray();
+        return deletions;
+    }
+
+    // Decodes a JSON array of appointment rows, handing each one to the sink as soon as it is parsed
+    static void readAppointments(InputStream in, Consumer<Appointment> sink) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Appointment appointment = readAppointment(reader);
+            if (appointment != null) {
+                sink.accept(appointment);
+            }
+        }
+        reader.endArray();
+    }
+
+    private static Appointment readAppointment(JsonReader reader) throws IOException {
+        int id = 0;
+        int userId = 0;
+        String patientName = null;
+        String appointmentDate = null;
+        String clientRef = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonReader.Token.NULL) {
+                reader.nextNull();
+                continue;
+            }
+
+            switch (name) {
+                case "id":
+                    id = reader.nextInt();
+                    break;
+                case "user_id":
+                    userId = reader.nextInt();
+                    break;
+                case "patient_name":
+                    patientName = reader.nextString();
+                    break;
+                case "appointment_date":
+                    appointmentDate = reader.nextString();
+                    break;
+                case "client_ref":
+                    clientRef = reader.nextString();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (patientName == null || appointmentDate == null) {
+            return null;
+        }
+        Appointment appointment = new Appointment(id, patientName, appointmentDate);
+        appointment.setUserId(userId);
+        appointment.setClientRef(clientRef);
+        return appointment;
+    }
+
+    // A users row as stored, including the credential columns that never leave this class
+    private static class StoredUser {
+        Integer id;
+        String role;
+        String email;
+        String passwordHash;
+        String passwordSalt;
+    }
+
+    private static List<StoredUser> readUsers(InputStream in) throws IOException {
+        List<StoredUser> users = new ArrayList<>();
+        JsonReader reader = new JsonReader(in);
+        reader.beginArray();
+        while (reader.hasNext()) {
+            StoredUser user = new StoredUser();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonReader.Token.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+
+                switch (name) {
+                    case "id":
+                        user.id = reader.nextInt();
+                        break;
+                    case "role":
+                        user.role = reader.nextString();
+                        break;
+                    case "email":
+                        user.email = reader.nextString();
+                        break;
+                    case "password_hash":
+                        user.passwordHash = reader.nextString();
+                        break;
+                    case "password_salt":
+                        user.passwordSalt = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
                 }
             }
+            reader.endObject();
+
+            users.add(user);
         }
-        
-        return null;
+        reader.endArray();
+        return users;
     }
-    
-    public boolean deleteAppointment(String patientName, String date) {
+
+    @Override
+    public CompletableFuture<Boolean> deleteAppointmentAsync(int appointmentId) {
         try {
-            // Create connection - using URL parameters for filtering
-            String filter = String.format("patient_name=eq.%s&appointment_date=eq.%s", 
-                                        patientName, date);
-            URL url = new URL(SUPABASE_URL + "/rest/v1/" + APPOINTMENTS_TABLE + "?" + filter);
-            
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("DELETE");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setRequestProperty("apikey", SUPABASE_API_KEY);
-            conn.setRequestProperty("Authorization", "Bearer " + SUPABASE_API_KEY);
-            
-            // Get response
-            int responseCode = conn.getResponseCode();
-            return responseCode == 200 || responseCode == 204;
-            
+            if (!hasCredentials()) {
+                LOG.error("Supabase credentials are not properly configured");
+                return CompletableFuture.completedFuture(false);
+            }
+
+            // By id, so another booking by the same patient on the same day is left alone
+            HttpRequest request = newRequest(DELETE_APPOINTMENT.bind(appointmentId)).DELETE().build();
+
+            return send("deleteAppointment", request).thenApply(response -> {
+                int responseCode = response.statusCode();
+                return responseCode == 200 || responseCode == 204;
+            }).exceptionally(e -> {
+                LOG.error("Error deleting appointment: " + e.getMessage(), e);
+                return false;
+            });
         } catch (Exception e) {
-            System.err.println("Error deleting appointment: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+            LOG.error("Error deleting appointment: " + e.getMessage(), e);
+            return CompletableFuture.completedFuture(false);
         }
     }
 
-    public User authenticateUser(String username, String password) {
+    public boolean deleteAppointment(int appointmentId) {
+        return deleteAppointmentAsync(appointmentId).join();
+    }
+
+    @Override
+    public CompletableFuture<User> authenticateUserAsync(String username, String password) {
         try {
             // Check if credentials are valid
-            if (SUPABASE_URL == null || SUPABASE_URL.isEmpty() || 
-                SUPABASE_API_KEY == null || SUPABASE_API_KEY.isEmpty()) {
-                System.err.println("Error: Supabase credentials are not properly configured");
-                return null;
+            if (!hasCredentials()) {
+                LOG.error("Supabase credentials are not properly configured");
+                return CompletableFuture.completedFuture(null);
             }
-            
-            System.out.println("Attempting to authenticate user: " + username);
-            
+
+            LOG.debug(() -> "Attempting to authenticate user: " + username);
+
             // First, get the user by username to retrieve the salt
-            String filter = String.format("username=eq.%s", username);
-            URL url = new URL(SUPABASE_URL + "/rest/v1/" + USERS_TABLE + "?select=*&" + filter);
-            
-            System.out.println("Auth URL: " + url.toString());
-            
-            // Create connection
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setRequestProperty("apikey", SUPABASE_API_KEY);
-            conn.setRequestProperty("Authorization", "Bearer " + SUPABASE_API_KEY);
-            
-            // Get response
-            int responseCode = conn.getResponseCode();
-            System.out.println("Auth response code: " + responseCode);
-            
-            if (responseCode == 200) {
-                BufferedReader in = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-                String inputLine;
-                StringBuilder response = new StringBuilder();
-                
-                while ((inputLine = in.readLine()) != null) {
-                    response.append(inputLine);
-                }
-                in.close();
-                
-                String jsonStr = response.toString();
-                System.out.println("Auth response: " + jsonStr);
-                
-                // Parse JSON array response
-                if (jsonStr.startsWith("[") && jsonStr.endsWith("]")) {
-                    // Empty array means no user found
-                    if (jsonStr.equals("[]")) {
-                        System.out.println("No user found with the provided username");
-                        return null;
-                    }
-                    
-                    jsonStr = jsonStr.substring(1, jsonStr.length() - 1);
-                    
-                    // If we have a user object
-                    if (!jsonStr.isEmpty()) {
-                        try {
-                            // Extract user data
-                            String idStr = extractJsonValue(jsonStr, "id");
-                            String role = extractJsonValue(jsonStr, "role");
-                            String email = extractJsonValue(jsonStr, "email");
-                            String storedHash = extractJsonValue(jsonStr, "password_hash");
-                            String salt = extractJsonValue(jsonStr, "password_salt");
-                            
-                            System.out.println("Extracted ID: " + idStr);
-                            System.out.println("Extracted role: " + role);
-                            
-                            if (idStr == null || storedHash == null || salt == null) {
-                                System.err.println("Failed to extract required user data from response");
-                                return null;
-                            }
-                            
-                            // Verify the password
-                            if (!PasswordUtils.verifyPassword(password, storedHash, salt)) {
-                                System.out.println("Password verification failed");
-                                return null;
-                            }
-                            
-                            int id = Integer.parseInt(idStr);
-                            System.out.println("User authenticated successfully - ID: " + id + ", Role: " + role);
-                            return new User(id, username, null, role, email); // Don't store the password in memory
-                        } catch (NumberFormatException e) {
-                            System.err.println("Error parsing user ID: " + e.getMessage());
-                            System.err.println("JSON response: " + jsonStr);
-                            return null;
+            HttpRequest request = newRequest(USER_BY_NAME.bind(username)).GET().build();
+
+            LOG.debug(() -> "Auth URL: " + request.uri());
+
+            return sendStreaming("authenticateUser", request)
+                    .thenApply(response -> readStoredUser(response, username))
+                    // The hash is checked on the hashing pool, not the client's threads
+                    .thenCompose(stored -> stored == null
+                            ? CompletableFuture.completedFuture((User) null)
+                            : PasswordUtils.verifyPasswordAsync(password, stored.passwordHash, stored.passwordSalt)
+                                    .thenApply(valid -> valid ? signedIn(stored, username, password) : null))
+                    .exceptionally(e -> {
+                        // Too many sign-ins at once is worth telling the user, unlike other failures
+                        if (e.getCause() instanceof RejectedExecutionException) {
+                            throw new CompletionException(e.getCause());
                         }
-                    }
-                }
-                
-                // If we get here, the response format was unexpected
-                System.err.println("Unexpected response format: " + jsonStr);
-            } else {
-                System.out.println("Authentication failed with response code: " + responseCode);
-                try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getErrorStream()))) {
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        response.append(line);
-                    }
-                    System.out.println("Error response: " + response.toString());
-                } catch (Exception e) {
-                    System.err.println("Failed to read error stream: " + e.getMessage());
+                        LOG.error("Error authenticating user: " + e.getMessage(), e);
+                        return null;
+                    });
+        } catch (Exception e) {
+            LOG.error("Error authenticating user: " + e.getMessage(), e);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    public User authenticateUser(String username, String password) {
+        return authenticateUserAsync(username, password).join();
+    }
+
+    // The users row for a username lookup, or null if there is none or it cannot be used
+    private StoredUser readStoredUser(HttpResponse<InputStream> response, String username) {
+        int responseCode = response.statusCode();
+        LOG.debug(() -> "Auth response code: " + responseCode);
+
+        try (InputStream body = decodedBody(response)) {
+            if (responseCode != 200) {
+                LOG.warn("Authentication failed with response code: " + responseCode);
+                // The body is only read when someone will see it
+                if (LOG.isEnabled(Log.Level.DEBUG)) {
+                    LOG.debug("Error response: " + new String(body.readAllBytes(), StandardCharsets.UTF_8));
                 }
+                return null;
             }
-            
-            // Authentication failed
-            return null;
-        } catch (Exception e) {
-            System.err.println("Error authenticating user: " + e.getMessage());
-            e.printStackTrace();
+
+            List<StoredUser> users = readUsers(body);
+
+            // Empty array means no user found
+            if (users.isEmpty()) {
+                LOG.debug(() -> "No user found with username " + username);
+                return null;
+            }
+
+            StoredUser stored = users.get(0);
+            if (stored.id == null || stored.passwordHash == null || stored.passwordSalt == null) {
+                LOG.error("Failed to extract required user data from response");
+                return null;
+            }
+
+            return stored;
+        } catch (IOException | NumberFormatException e) {
+            LOG.error("Unexpected response format: " + e.getMessage());
             return null;
         }
     }
 
-    public boolean registerUser(User user) {
+    private User signedIn(StoredUser stored, String username, String password) {
+        if (PasswordUtils.needsRehash(stored.passwordHash)) {
+            rehashPassword(stored.id, username, password);
+        }
+        LOG.debug(() -> "User authenticated successfully - ID: " + stored.id + ", Role: " + stored.role);
+        return new User(stored.id, username, null, stored.role, stored.email); // Don't store the password in memory
+    }
+
+    /**
+     * Replaces an old-format or cheaper hash with one at the current cost,
+     * in the background after a successful sign-in, since that is the only
+     * time the password is known. Failures are logged and retried at the
+     * next sign-in.
+     */
+    private void rehashPassword(int userId, String username, String password) {
+        String salt = PasswordUtils.generateSalt();
+        PasswordUtils.hashPasswordAsync(password, salt).thenCompose(passwordHash -> {
+            String json = new JsonWriter().beginObject()
+                    .name("password_hash").value(passwordHash)
+                    .name("password_salt").value(salt)
+                    .endObject().toString();
+            HttpRequest request = newRequest(USER_BY_ID.bind(userId))
+                    .header("Prefer", "return=minimal")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(json))
+                    .build();
+            return send("rehashPassword", request);
+        }).whenComplete((response, error) -> {
+            if (error != null) {
+                LOG.warn("Could not update the password hash of " + username + ": " + error.getMessage());
+            } else if (response.statusCode() >= 300) {
+                LOG.warn("Could not update the password hash of " + username
+                        + ", response code " + response.statusCode());
+            } else {
+                LOG.info(() -> "Updated the password hash of " + username);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> registerUserAsync(User user) {
+        // Hash the password on the hashing pool, then send it
+        String salt = PasswordUtils.generateSalt();
+        return PasswordUtils.hashPasswordAsync(user.getPassword(), salt)
+                .thenCompose(passwordHash -> postUser(user, passwordHash, salt));
+    }
+
+    private CompletableFuture<Boolean> postUser(User user, String passwordHash, String salt) {
         try {
-            // Generate a salt and hash the password
-            String salt = PasswordUtils.generateSalt();
-            String passwordHash = PasswordUtils.hashPassword(user.getPassword(), salt);
-            
             // Create JSON payload with hashed password and salt
-            String json = String.format(
-                "{\"username\":\"%s\",\"password_hash\":\"%s\",\"password_salt\":\"%s\",\"role\":\"%s\",\"email\":\"%s\"}",
-                user.getUsername(), passwordHash, salt, user.getRole(), user.getEmail());
-            
-            System.out.println("Registering new user: " + user.getUsername() + " with role: " + user.getRole());
-            
-            // Create connection
-            URL url = new URL(SUPABASE_URL + "/rest/v1/" + USERS_TABLE);
-            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", "application/json");
-            conn.setRequestProperty("apikey", SUPABASE_API_KEY);
-            conn.setRequestProperty("Authorization", "Bearer " + SUPABASE_API_KEY);
-            conn.setRequestProperty("Prefer", "return=minimal");
-            conn.setDoOutput(true);
-            
-            // Send data
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = json.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
-            
-            // Get response
-            int responseCode = conn.getResponseCode();
-            System.out.println("Register response code: " + responseCode);
-            
-            if (responseCode >= 400) {
-                try (BufferedReader br = new BufferedReader(new InputStreamReader(conn.getErrorStream()))) {
-                    StringBuilder response = new StringBuilder();
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        response.append(line);
-                    }
-                    System.out.println("Error response: " + response.toString());
+            String json = new JsonWriter().beginObject()
+                    .name("username").value(user.getUsername())
+                    .name("password_hash").value(passwordHash)
+                    .name("password_salt").value(salt)
+                    .name("role").value(user.getRole())
+                    .name("email").value(user.getEmail())
+                    .endObject().toString();
+
+            LOG.info(() -> "Registering new user: " + user.getUsername() + " with role: " + user.getRole());
+
+            HttpRequest request = newRequest(USERS_TABLE)
+                    .header("Prefer", "return=minimal")
+                    .POST(HttpRequest.BodyPublishers.ofString(json))
+                    .build();
+
+            return send("registerUser", request).thenApply(response -> {
+                int responseCode = response.statusCode();
+                if (responseCode >= 400) {
+                    LOG.warn("Registering user failed with response code " + responseCode);
+                    LOG.debug(() -> "Error response: " + response.body());
                 }
-            }
-            
-            return responseCode >= 200 && responseCode < 300;
+
+                return responseCode >= 200 && responseCode < 300;
+            }).exceptionally(e -> {
+                LOG.error("Error registering user: " + e.getMessage(), e);
+                return false;
+            });
         } catch (Exception e) {
-            System.err.println("Error registering user: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+            LOG.error("Error registering user: " + e.getMessage(), e);
+            return CompletableFuture.completedFuture(false);
         }
     }
-} 
\ No newline at end of file
+
+    public boolean registerUser(User user) {
+        return registerUserAsync(user).join();
+    }
+}
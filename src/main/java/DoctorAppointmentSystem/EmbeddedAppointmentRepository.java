@@ -0,0 +1,326 @@
+package DoctorAppointmentSystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * A store in a local file, for clinics that run on one site and do not need
+ * a server. The data lives in an {@link InMemoryAppointmentRepository}, so
+ * reads are answered from its indexes in microseconds; every change is also
+ * appended to a journal, from which the indexes are rebuilt on the next
+ * open.
+ *
+ * Writes made close together share one fsync (group commit). A write's
+ * future completes once its record is on disk, though other callers may see
+ * the change slightly before that. When most of the journal is records that
+ * later ones superseded, it is rewritten with only the live data.
+ */
+public class EmbeddedAppointmentRepository extends InMemoryAppointmentRepository {
+    private static final Log LOG = Log.get("store");
+
+    private static final byte OP_ROW = 1;
+    private static final byte OP_DELETION = 2;
+    private static final byte OP_USER = 3;
+
+    // The journal is rewritten once it holds this many superseded records, and more of them than live ones
+    private static final int COMPACT_AFTER_SUPERSEDED = 10_000;
+
+    private final Path journalPath;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "appointment-store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Group commit: records appended since the last write, and the writes waiting for the next fsync
+    private final Object appendLock = new Object();
+    private final ByteArrayOutputStream unwritten = new ByteArrayOutputStream();
+    private final DataOutputStream unwrittenOut = new DataOutputStream(unwritten);
+    private final List<CompletableFuture<Void>> unsynced = new ArrayList<>();
+    private int unwrittenRecords;
+    private boolean syncScheduled;
+    private boolean closed;
+
+    // Only touched on the writer thread once open
+    private FileChannel journal;
+    private int journalRecords;
+
+    private EmbeddedAppointmentRepository(Path journalPath) {
+        super(journalPath.toAbsolutePath().toString());
+        this.journalPath = journalPath;
+    }
+
+    // Opens the store at the given path, creating it if needed, and loads it into memory
+    public static EmbeddedAppointmentRepository open(Path path) throws IOException {
+        EmbeddedAppointmentRepository repository = new EmbeddedAppointmentRepository(path);
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        repository.journal = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        repository.replay();
+        return repository;
+    }
+
+    // Writes out anything still waiting and closes the file; later writes fail
+    public CompletableFuture<Void> close() {
+        CompletableFuture<Void> closing = commit();
+        synchronized (appendLock) {
+            if (closed) {
+                return closing;
+            }
+            closed = true;
+        }
+        return closing.whenCompleteAsync((done, error) -> {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                LOG.error("Error closing appointment store: " + e.getMessage());
+            }
+            writer.shutdown();
+        }, writer);
+    }
+
+    @Override
+    void rowSaved(Appointment row) {
+        append(out -> writeRow(out, row));
+    }
+
+    @Override
+    void rowDeleted(AppointmentDeletion tombstone) {
+        append(out -> writeDeletion(out, tombstone));
+    }
+
+    @Override
+    void userSaved(StoredUser user) {
+        append(out -> writeUser(out, user));
+    }
+
+    @Override
+    CompletableFuture<Void> commit() {
+        CompletableFuture<Void> durable = new CompletableFuture<>();
+        synchronized (appendLock) {
+            if (closed) {
+                durable.completeExceptionally(new IOException("Appointment store is closed"));
+                return durable;
+            }
+            unsynced.add(durable);
+            // Anything appended before the writer gets to this shares its write and fsync
+            if (!syncScheduled) {
+                syncScheduled = true;
+                writer.execute(this::sync);
+            }
+        }
+        return durable;
+    }
+
+    private interface Record {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    private void append(Record record) {
+        synchronized (appendLock) {
+            try {
+                record.writeTo(unwrittenOut);
+            } catch (IOException e) {
+                // Cannot happen when writing to memory
+                throw new UncheckedIOException(e);
+            }
+            unwrittenRecords++;
+        }
+    }
+
+    private void sync() {
+        byte[] records;
+        int recordCount;
+        List<CompletableFuture<Void>> waiting;
+        synchronized (appendLock) {
+            syncScheduled = false;
+            records = unwritten.toByteArray();
+            recordCount = unwrittenRecords;
+            unwritten.reset();
+            unwrittenRecords = 0;
+            waiting = new ArrayList<>(unsynced);
+            unsynced.clear();
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(records);
+            journal.position(journal.size());
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            journal.force(false);
+            journalRecords += recordCount;
+        } catch (IOException e) {
+            LOG.error("Error writing appointment store: " + e.getMessage());
+            for (CompletableFuture<Void> future : waiting) {
+                future.completeExceptionally(e);
+            }
+            return;
+        }
+        for (CompletableFuture<Void> future : waiting) {
+            future.complete(null);
+        }
+
+        int live = liveRecords();
+        int superseded = journalRecords - live;
+        if (superseded >= COMPACT_AFTER_SUPERSEDED && superseded > live) {
+            try {
+                compact();
+            } catch (IOException e) {
+                LOG.error("Error compacting appointment store: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Rewrites the journal with only the live data and swaps it in
+     * atomically. Changes made while the snapshot is taken are still waiting
+     * to be appended and go to the new journal; a record that is both in the
+     * snapshot and appended again replays to the same state.
+     */
+    private void compact() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(journalRecords * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        int[] count = new int[1];
+        Consumer<Record> snapshotRecord = record -> {
+            try {
+                record.writeTo(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            count[0]++;
+        };
+        try {
+            snapshot(user -> snapshotRecord.accept(o -> writeUser(o, user)),
+                    row -> snapshotRecord.accept(o -> writeRow(o, row)),
+                    tombstone -> snapshotRecord.accept(o -> writeDeletion(o, tombstone)));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Path temp = journalPath.resolveSibling(journalPath.getFileName() + ".tmp");
+        try (FileChannel compacted = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                compacted.write(buffer);
+            }
+            compacted.force(false);
+        }
+        journal.close();
+        Files.move(temp, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal = FileChannel.open(journalPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        journalRecords = count[0];
+    }
+
+    private void replay() throws IOException {
+        ByteBuffer records = ByteBuffer.allocate((int) journal.size());
+        while (records.hasRemaining() && journal.read(records, records.position()) >= 0) {
+            // keep reading until the whole file is in memory
+        }
+        records.flip();
+
+        long intact = 0;
+        try {
+            while (records.hasRemaining()) {
+                byte op = records.get();
+                if (op == OP_ROW) {
+                    restoreRow(readRow(records));
+                } else if (op == OP_DELETION) {
+                    restoreDeletion(new AppointmentDeletion(records.getLong(), records.getInt()));
+                } else if (op == OP_USER) {
+                    restoreUser(readUser(records));
+                } else {
+                    break;
+                }
+                journalRecords++;
+                intact = records.position();
+            }
+        } catch (BufferUnderflowException e) {
+            // The last record was cut short by a crash; everything before it is intact
+        }
+        // Drop a torn tail so new records are not appended after it
+        if (intact < journal.size()) {
+            journal.truncate(intact);
+        }
+    }
+
+    private static void writeRow(DataOutputStream out, Appointment row) throws IOException {
+        out.writeByte(OP_ROW);
+        out.writeInt(row.getId());
+        out.writeInt(row.getUserId());
+        out.writeInt(row.getEpochDay());
+        writeString(out, row.getPatientName());
+        writeString(out, row.getClientRef());
+    }
+
+    private static Appointment readRow(ByteBuffer in) {
+        int id = in.getInt();
+        int userId = in.getInt();
+        int epochDay = in.getInt();
+        Appointment row = new Appointment(id, userId, readString(in), epochDay);
+        row.setClientRef(readString(in));
+        return row;
+    }
+
+    private static void writeDeletion(DataOutputStream out, AppointmentDeletion tombstone) throws IOException {
+        out.writeByte(OP_DELETION);
+        out.writeLong(tombstone.getId());
+        out.writeInt(tombstone.getAppointmentId());
+    }
+
+    private static void writeUser(DataOutputStream out, StoredUser user) throws IOException {
+        out.writeByte(OP_USER);
+        out.writeInt(user.id);
+        writeString(out, user.username);
+        writeString(out, user.role);
+        writeString(out, user.email);
+        writeString(out, user.passwordHash);
+        writeString(out, user.passwordSalt);
+    }
+
+    private static StoredUser readUser(ByteBuffer in) {
+        int id = in.getInt();
+        return new StoredUser(id, readString(in), readString(in), readString(in), readString(in), readString(in));
+    }
+
+    // Length-prefixed UTF-8, with a length of -1 for null
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
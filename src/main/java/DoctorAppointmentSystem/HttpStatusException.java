@@ -0,0 +1,29 @@
+package DoctorAppointmentSystem;
+
+import java.io.IOException;
+
+/**
+ * A request the server answered with an error status, as opposed to one that
+ * never got an answer. Callers use the status to tell a request worth
+ * retrying from one the server will keep rejecting.
+ */
+public class HttpStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int statusCode;
+
+    public HttpStatusException(int statusCode, String body) {
+        super("HTTP " + statusCode + ": " + body);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    // Timeouts, throttling and server errors may succeed later; other client errors will not
+    public boolean isRetryable() {
+        return statusCode == 408 || statusCode == 429 || statusCode >= 500;
+    }
+}
@@ -0,0 +1,73 @@
+package DoctorAppointmentSystem;
+
+/**
+ * Estimates how many distinct strings have been added, in fixed memory
+ * (16 KB) however many there are. The typical error is under 1%.
+ *
+ * Strings cannot be removed again; start a new instance to forget them.
+ */
+public class HyperLogLog {
+
+    // 2^14 registers: standard error 1.04 / sqrt(16384), about 0.8%
+    private static final int PRECISION = 14;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers = new byte[REGISTERS];
+    // Last estimate, until a register changes; -1 when stale
+    private long estimate = -1;
+
+    public void add(String value) {
+        long hash = hash(value);
+        int register = (int) (hash >>> (64 - PRECISION));
+        // Position of the first set bit in the remaining bits, counting from 1
+        long rest = hash << PRECISION;
+        int rank = rest == 0 ? 64 - PRECISION + 1 : Long.numberOfLeadingZeros(rest) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+            estimate = -1;
+        }
+    }
+
+    public long estimate() {
+        if (estimate < 0) {
+            estimate = computeEstimate();
+        }
+        return estimate;
+    }
+
+    private long computeEstimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        // Small cardinalities are better estimated by counting empty registers. The raw
+        // estimate is still biased just above the textbook 2.5x cut-over, so switch later
+        if (zeros > 0) {
+            double linear = REGISTERS * Math.log((double) REGISTERS / zeros);
+            if (linear <= 3 * REGISTERS) {
+                return Math.round(linear);
+            }
+        }
+        return Math.round(ALPHA * REGISTERS * REGISTERS / sum);
+    }
+
+    // 64-bit FNV-1a over the chars, finished with the MurmurHash3 mixer
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93e7ed5e7cbL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
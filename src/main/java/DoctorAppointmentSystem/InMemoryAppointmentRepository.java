@@ -0,0 +1,481 @@
+package DoctorAppointmentSystem;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Appointments and users kept in memory, indexed the way the queries use
+ * them: rows by id for keyset paging, by patient for patient-scoped pages
+ * and deletes, by client reference for upserts, and users by name. Nothing
+ * is persisted, so the data lasts as long as the object; it serves
+ * benchmarks directly and is the in-memory half of
+ * {@link EmbeddedAppointmentRepository}.
+ *
+ * Reads share a read lock and writes take the write lock. Every operation
+ * runs on the calling thread and returns a completed future, except the
+ * page walk, which runs in the background so it can be cancelled between
+ * pages, and password hashing, for sign-in and registration, which runs on
+ * {@link PasswordUtils}' pool. Stored rows are private copies; callers are
+ * only ever given copies of them.
+ */
+public class InMemoryAppointmentRepository implements AppointmentRepository {
+    private static final Log LOG = Log.get("store");
+
+    // Page walks, one thread each, so a large store never holds up the caller
+    private static final ExecutorService PAGE_WALKS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "appointment-pages");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // A users row, including the credential columns that are never handed out
+    static final class StoredUser {
+        final int id;
+        final String username;
+        final String role;
+        final String email;
+        final String passwordHash;
+        final String passwordSalt;
+
+        StoredUser(int id, String username, String role, String email, String passwordHash, String passwordSalt) {
+            this.id = id;
+            this.username = username;
+            this.role = role;
+            this.email = email;
+            this.passwordHash = passwordHash;
+            this.passwordSalt = passwordSalt;
+        }
+    }
+
+    private final String location;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // The fields below are guarded by lock
+    private final TreeMap<Integer, Appointment> byId = new TreeMap<>();
+    private final Map<String, TreeMap<Integer, Appointment>> byPatient = new HashMap<>();
+    private final Map<String, Appointment> byClientRef = new HashMap<>();
+    private final Map<String, StoredUser> usersByName = new HashMap<>();
+    // Tombstones in id order, for the deletion feed
+    private final List<AppointmentDeletion> deletions = new ArrayList<>();
+    private int lastAppointmentId;
+    private long lastDeletionId;
+    private int lastUserId;
+    private long changeToken;
+
+    public InMemoryAppointmentRepository(String location) {
+        this.location = location;
+    }
+
+    @Override
+    public String getLocation() {
+        return location;
+    }
+
+    @Override
+    public CompletableFuture<Void> insertAppointmentBatchAsync(List<Appointment> batch, User user) {
+        List<Appointment> rows = new ArrayList<>(batch.size());
+        for (Appointment appointment : batch) {
+            Appointment row = new Appointment(appointment);
+            if (user != null) {
+                row.setUserId(user.getId());
+            }
+            rows.add(row);
+        }
+
+        lock.writeLock().lock();
+        try {
+            // Check every row first, so a bad one leaves the whole batch unsaved
+            Set<String> clientRefs = new HashSet<>();
+            for (Appointment row : rows) {
+                checkRow(row);
+                if (row.getClientRef() != null
+                        && (byClientRef.containsKey(row.getClientRef()) || !clientRefs.add(row.getClientRef()))) {
+                    throw new IllegalStateException("Duplicate client reference " + row.getClientRef());
+                }
+            }
+            for (Appointment row : rows) {
+                row.setId(++lastAppointmentId);
+                put(row);
+                rowSaved(row);
+            }
+            changeToken++;
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return commit();
+    }
+
+    @Override
+    public CompletableFuture<List<Appointment>> upsertAppointmentBatchAsync(List<Appointment> batch) {
+        List<Appointment> saved = new ArrayList<>(batch.size());
+
+        lock.writeLock().lock();
+        try {
+            for (Appointment appointment : batch) {
+                checkRow(appointment);
+            }
+            for (Appointment appointment : batch) {
+                Appointment row = new Appointment(appointment);
+                Appointment existing = row.getClientRef() == null ? null : byClientRef.get(row.getClientRef());
+                if (existing == null) {
+                    row.setId(++lastAppointmentId);
+                } else {
+                    // Merge onto the row saved by an earlier attempt, as on_conflict=client_ref does
+                    row.setId(existing.getId());
+                    if (row.getUserId() == 0) {
+                        row.setUserId(existing.getUserId());
+                    }
+                }
+                put(row);
+                rowSaved(row);
+                saved.add(new Appointment(row));
+            }
+            changeToken++;
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return commit().thenApply(done -> saved);
+    }
+
+    @Override
+    public CompletableFuture<List<Appointment>> getAllAppointmentsAsync() {
+        lock.readLock().lock();
+        try {
+            return CompletableFuture.completedFuture(copyOf(byId.values(), byId.size()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Integer> fetchAppointmentPagesAsync(int afterId, int pageSize, String patientName,
+                                                                 Consumer<List<Appointment>> onPage) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        PAGE_WALKS.execute(() -> {
+            int cursor = afterId;
+            int delivered = 0;
+            // Cancelling or completing the result from outside ends the walk before the next page
+            while (!result.isDone()) {
+                // The lock is only held while a page is copied, not while the caller handles it
+                List<Appointment> page = page(cursor, pageSize, patientName);
+                try {
+                    if (!page.isEmpty()) {
+                        onPage.accept(page);
+                    }
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                delivered += page.size();
+                if (page.size() < pageSize) {
+                    result.complete(delivered);
+                    return;
+                }
+                cursor = page.get(page.size() - 1).getId();
+            }
+        });
+        return result;
+    }
+
+    // Rows with an id above afterId in id order, at most pageSize of them
+    private List<Appointment> page(int afterId, int pageSize, String patientName) {
+        lock.readLock().lock();
+        try {
+            NavigableMap<Integer, Appointment> rows = patientName == null ? byId : byPatient.get(patientName);
+            if (rows == null) {
+                return new ArrayList<>();
+            }
+            return copyOf(rows.tailMap(afterId, false).values(), pageSize);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> fetchChangeTokenAsync() {
+        lock.readLock().lock();
+        try {
+            return CompletableFuture.completedFuture(changeToken);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<List<AppointmentDeletion>> fetchDeletionsAsync(long afterDeletionId) {
+        lock.readLock().lock();
+        try {
+            // Tombstone ids only grow, so the ones wanted are a tail of the list
+            int low = 0;
+            int high = deletions.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (deletions.get(middle).getId() <= afterDeletionId) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return CompletableFuture.completedFuture(new ArrayList<>(deletions.subList(low, deletions.size())));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> fetchLatestDeletionIdAsync() {
+        lock.readLock().lock();
+        try {
+            return CompletableFuture.completedFuture(lastDeletionId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> deleteAppointmentAsync(int appointmentId) {
+        lock.writeLock().lock();
+        try {
+            Appointment row = byId.get(appointmentId);
+            if (row == null) {
+                return CompletableFuture.completedFuture(true);
+            }
+            remove(row.getId());
+            AppointmentDeletion tombstone = new AppointmentDeletion(++lastDeletionId, row.getId());
+            deletions.add(tombstone);
+            rowDeleted(tombstone);
+            changeToken++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return commit().thenApply(done -> true);
+    }
+
+    @Override
+    public CompletableFuture<User> authenticateUserAsync(String username, String password) {
+        StoredUser stored = findUser(username);
+        if (stored == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // The hash is checked outside the lock; it is deliberately the slow part
+        return PasswordUtils.verifyPasswordAsync(password, stored.passwordHash, stored.passwordSalt)
+                .thenApply(valid -> {
+                    if (!valid) {
+                        return null;
+                    }
+                    if (PasswordUtils.needsRehash(stored.passwordHash)) {
+                        rehashPassword(stored, password);
+                    }
+                    return new User(stored.id, stored.username, null, stored.role, stored.email);
+                });
+    }
+
+    // Signing in is the only time the password is known, so old hashes are upgraded then, without holding it up
+    private void rehashPassword(StoredUser stored, String password) {
+        String salt = PasswordUtils.generateSalt();
+        PasswordUtils.hashPasswordAsync(password, salt)
+                .thenCompose(passwordHash -> replacePassword(stored, passwordHash, salt))
+                .whenComplete((done, error) -> {
+                    if (error != null) {
+                        LOG.warn("Could not update the password hash of " + stored.username + ": " + error.getMessage());
+                    } else {
+                        LOG.info(() -> "Updated the password hash of " + stored.username);
+                    }
+                });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> registerUserAsync(User user) {
+        String salt = PasswordUtils.generateSalt();
+        return PasswordUtils.hashPasswordAsync(user.getPassword(), salt).thenCompose(passwordHash -> {
+            if (addUser(user.getUsername(), user.getRole(), user.getEmail(), passwordHash, salt) == null) {
+                return CompletableFuture.completedFuture(false);
+            }
+            return commit().thenApply(done -> true);
+        });
+    }
+
+    // Stores a new hash for a user, unless the user has changed since it was read
+    private CompletableFuture<Void> replacePassword(StoredUser stored, String passwordHash, String passwordSalt) {
+        lock.writeLock().lock();
+        try {
+            if (usersByName.get(stored.username) != stored) {
+                return CompletableFuture.completedFuture(null);
+            }
+            StoredUser updated = new StoredUser(stored.id, stored.username, stored.role, stored.email,
+                    passwordHash, passwordSalt);
+            usersByName.put(stored.username, updated);
+            userSaved(updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return commit();
+    }
+
+    // Adds a user with an already hashed password; null if the name is taken, as usernames are unique
+    private StoredUser addUser(String username, String role, String email, String passwordHash, String passwordSalt) {
+        lock.writeLock().lock();
+        try {
+            if (usersByName.containsKey(username)) {
+                return null;
+            }
+            StoredUser stored = new StoredUser(++lastUserId, username, role, email, passwordHash, passwordSalt);
+            usersByName.put(username, stored);
+            userSaved(stored);
+            return stored;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private StoredUser findUser(String username) {
+        lock.readLock().lock();
+        try {
+            return usersByName.get(username);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Called with the write lock held after each change, in order, so a subclass in this package can persist it
+    void rowSaved(Appointment row) {
+    }
+
+    void rowDeleted(AppointmentDeletion tombstone) {
+    }
+
+    void userSaved(StoredUser user) {
+    }
+
+    // Completes once every change made so far is durable; memory has nothing to wait for
+    CompletableFuture<Void> commit() {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    // Loading a persisted copy; the restore methods skip the change hooks and are idempotent
+    void restoreRow(Appointment row) {
+        lock.writeLock().lock();
+        try {
+            put(new Appointment(row));
+            lastAppointmentId = Math.max(lastAppointmentId, row.getId());
+            changeToken++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void restoreDeletion(AppointmentDeletion tombstone) {
+        lock.writeLock().lock();
+        try {
+            remove(tombstone.getAppointmentId());
+            lastAppointmentId = Math.max(lastAppointmentId, tombstone.getAppointmentId());
+            if (tombstone.getId() > lastDeletionId) {
+                deletions.add(tombstone);
+                lastDeletionId = tombstone.getId();
+            }
+            changeToken++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void restoreUser(StoredUser user) {
+        lock.writeLock().lock();
+        try {
+            usersByName.put(user.username, user);
+            lastUserId = Math.max(lastUserId, user.id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Hands every live record to the consumers under the read lock, so no change can interleave
+    void snapshot(Consumer<StoredUser> users, Consumer<Appointment> rows, Consumer<AppointmentDeletion> tombstones) {
+        lock.readLock().lock();
+        try {
+            usersByName.values().forEach(users);
+            byId.values().forEach(rows);
+            deletions.forEach(tombstones);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Number of records a snapshot would hold
+    int liveRecords() {
+        lock.readLock().lock();
+        try {
+            return usersByName.size() + byId.size() + deletions.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(Appointment row) {
+        Appointment old = byId.put(row.getId(), row);
+        if (old != null) {
+            unindex(old);
+        }
+        byPatient.computeIfAbsent(row.getPatientName(), name -> new TreeMap<>()).put(row.getId(), row);
+        if (row.getClientRef() != null) {
+            byClientRef.put(row.getClientRef(), row);
+        }
+    }
+
+    private void remove(int id) {
+        Appointment old = byId.remove(id);
+        if (old != null) {
+            unindex(old);
+        }
+    }
+
+    private void unindex(Appointment row) {
+        TreeMap<Integer, Appointment> rows = byPatient.get(row.getPatientName());
+        if (rows != null) {
+            rows.remove(row.getId(), row);
+            if (rows.isEmpty()) {
+                byPatient.remove(row.getPatientName());
+            }
+        }
+        if (row.getClientRef() != null) {
+            byClientRef.remove(row.getClientRef(), row);
+        }
+    }
+
+    // The not-null constraints of the appointments table
+    private static void checkRow(Appointment row) {
+        if (row.getPatientName() == null || row.getPatientName().isEmpty()) {
+            throw new IllegalArgumentException("Appointment has no patient name");
+        }
+        if (!row.hasDate()) {
+            throw new IllegalArgumentException("Invalid appointment date: " + row.getDate());
+        }
+    }
+
+    private static List<Appointment> copyOf(Iterable<Appointment> rows, int limit) {
+        List<Appointment> copies = new ArrayList<>(Math.min(limit, 1024));
+        for (Appointment row : rows) {
+            if (copies.size() == limit) {
+                break;
+            }
+            copies.add(new Appointment(row));
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,301 @@
+package DoctorAppointmentSystem;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Console logging that never makes the caller wait for the console.
+ * Messages go into a fixed-size ring buffer and a background thread writes
+ * them out; if the writer falls behind and the ring fills up, new messages
+ * are dropped and counted rather than blocking, e.g. the FX thread.
+ *
+ * Each class logs under a category with its own level, set with
+ * {@link #configure(String)} (see {@link Config#LOG_LEVEL}). A disabled
+ * statement costs one field read; pass a {@link Supplier} when building the
+ * message is expensive, so it is only built when the level is enabled.
+ */
+public final class Log {
+
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    private static final Level DEFAULT_LEVEL = Level.INFO;
+    private static final int CAPACITY = 8192;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    private static final Map<String, Log> logs = new ConcurrentHashMap<>();
+    // Explicitly configured levels; categories not listed use defaultLevel
+    private static volatile Map<String, Level> levels = Map.of();
+    private static volatile Level defaultLevel = DEFAULT_LEVEL;
+
+    // The ring: entries from head to head + size, guarded by itself
+    private static final Entry[] ring = new Entry[CAPACITY];
+    private static int head;
+    private static int size;
+    private static long dropped;
+    private static long queued;
+    private static long written;
+
+    // Held while writing, so the shutdown hook and the writer thread do not interleave lines
+    private static final Object output = new Object();
+
+    private static final Thread writer = new Thread(Log::drainForever, "log-writer");
+
+    static {
+        writer.setDaemon(true);
+        writer.start();
+        // Whatever is still queued at exit is written before the JVM stops
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::drain, "log-flush"));
+    }
+
+    private static final class Entry {
+        final long millis;
+        final Level level;
+        final String category;
+        final String thread;
+        final String message;
+        final Throwable error;
+
+        Entry(Level level, String category, String message, Throwable error) {
+            this.millis = System.currentTimeMillis();
+            this.level = level;
+            this.category = category;
+            this.thread = Thread.currentThread().getName();
+            this.message = message;
+            this.error = error;
+        }
+    }
+
+    private final String category;
+    // Copied from the configuration so the check on every statement is a single read
+    private volatile Level threshold;
+
+    private Log(String category) {
+        this.category = category;
+        this.threshold = levelFor(category);
+    }
+
+    // The shared log for a category, e.g. "database"
+    public static Log get(String category) {
+        return logs.computeIfAbsent(category, Log::new);
+    }
+
+    /**
+     * Sets levels from a comma-separated list such as
+     * {@code "info,database=debug,realtime=warn"}: a bare level is the
+     * default, {@code category=level} overrides it for one category.
+     * Unreadable entries are reported and skipped.
+     */
+    public static synchronized void configure(String spec) {
+        Level newDefault = DEFAULT_LEVEL;
+        Map<String, Level> newLevels = new ConcurrentHashMap<>();
+        for (String part : spec.split(",")) {
+            String item = part.trim();
+            if (item.isEmpty()) {
+                continue;
+            }
+            int equals = item.indexOf('=');
+            try {
+                if (equals < 0) {
+                    newDefault = parseLevel(item);
+                } else {
+                    newLevels.put(item.substring(0, equals).trim(), parseLevel(item.substring(equals + 1)));
+                }
+            } catch (IllegalArgumentException e) {
+                get("log").warn("Ignoring log level '" + item + "'");
+            }
+        }
+        defaultLevel = newDefault;
+        levels = newLevels;
+        for (Log log : logs.values()) {
+            log.threshold = levelFor(log.category);
+        }
+    }
+
+    public static synchronized void setLevel(String category, Level level) {
+        Map<String, Level> newLevels = new ConcurrentHashMap<>(levels);
+        newLevels.put(category, level);
+        levels = newLevels;
+        get(category).threshold = level;
+    }
+
+    private static Level parseLevel(String name) {
+        return Level.valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+
+    private static Level levelFor(String category) {
+        return levels.getOrDefault(category, defaultLevel);
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.compareTo(threshold) >= 0 && level != Level.OFF;
+    }
+
+    public void debug(String message) {
+        log(Level.DEBUG, message, null);
+    }
+
+    public void debug(Supplier<String> message) {
+        if (isEnabled(Level.DEBUG)) {
+            enqueue(new Entry(Level.DEBUG, category, message.get(), null));
+        }
+    }
+
+    public void info(String message) {
+        log(Level.INFO, message, null);
+    }
+
+    public void info(Supplier<String> message) {
+        if (isEnabled(Level.INFO)) {
+            enqueue(new Entry(Level.INFO, category, message.get(), null));
+        }
+    }
+
+    public void warn(String message) {
+        log(Level.WARN, message, null);
+    }
+
+    public void warn(String message, Throwable error) {
+        log(Level.WARN, message, error);
+    }
+
+    public void error(String message) {
+        log(Level.ERROR, message, null);
+    }
+
+    // The stack trace is printed by the writer thread, not the caller
+    public void error(String message, Throwable error) {
+        log(Level.ERROR, message, error);
+    }
+
+    private void log(Level level, String message, Throwable error) {
+        if (isEnabled(level)) {
+            enqueue(new Entry(level, category, message, error));
+        }
+    }
+
+    private static void enqueue(Entry entry) {
+        synchronized (ring) {
+            if (size == CAPACITY) {
+                dropped++;
+                return;
+            }
+            ring[(head + size) % CAPACITY] = entry;
+            size++;
+            queued++;
+            if (size == 1) {
+                ring.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Waits, up to a second, until everything logged before this call has
+     * been written. For command-line tools that print a report right after
+     * logging.
+     */
+    public static void flush() {
+        long deadline = System.nanoTime() + 1_000_000_000L;
+        synchronized (ring) {
+            long target = queued;
+            while (written < target) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return;
+                }
+                try {
+                    ring.wait(Math.max(1, remaining / 1_000_000));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void drainForever() {
+        while (true) {
+            synchronized (ring) {
+                while (size == 0) {
+                    try {
+                        ring.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+            drain();
+        }
+    }
+
+    // Writes everything queued so far, holding the ring only to take the entries
+    private static void drain() {
+        synchronized (output) {
+            drainLocked();
+        }
+    }
+
+    private static void drainLocked() {
+        Entry[] batch;
+        long lost;
+        synchronized (ring) {
+            batch = new Entry[size];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = ring[head];
+                ring[head] = null;
+                head = (head + 1) % CAPACITY;
+            }
+            size = 0;
+            lost = dropped;
+            dropped = 0;
+        }
+
+        if (lost > 0) {
+            System.err.println(LocalTime.now().format(TIME) + " WARN  [log-writer] log: "
+                    + lost + " messages dropped, the console could not keep up");
+        }
+        StringBuilder pending = new StringBuilder();
+        PrintStream pendingStream = null;
+        for (Entry entry : batch) {
+            // Warnings and errors go to stderr as before; consecutive lines for a stream are written together
+            PrintStream stream = entry.level.compareTo(Level.WARN) >= 0 ? System.err : System.out;
+            if (stream != pendingStream && pendingStream != null) {
+                pendingStream.print(pending);
+                pending.setLength(0);
+            }
+            pendingStream = stream;
+            format(pending, entry);
+        }
+        if (pendingStream != null) {
+            pendingStream.print(pending);
+        }
+        System.out.flush();
+        System.err.flush();
+
+        synchronized (ring) {
+            written += batch.length;
+            ring.notifyAll();
+        }
+    }
+
+    private static void format(StringBuilder line, Entry entry) {
+        line.append(LocalTime.ofInstant(Instant.ofEpochMilli(entry.millis), ZoneId.systemDefault()).format(TIME))
+                .append(' ').append(String.format(Locale.ROOT, "%-5s", entry.level))
+                .append(" [").append(entry.thread).append("] ")
+                .append(entry.category).append(": ").append(entry.message)
+                .append(System.lineSeparator());
+        if (entry.error != null) {
+            StringWriter trace = new StringWriter();
+            entry.error.printStackTrace(new PrintWriter(trace));
+            line.append(trace);
+        }
+    }
+}
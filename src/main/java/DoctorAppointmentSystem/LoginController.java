@@ -11,6 +11,7 @@ import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
 public class LoginController {
+    private static final Log LOG = Log.get("login");
     
     // Login form
     @FXML
@@ -59,15 +60,14 @@ public class LoginController {
     @FXML
     private StackPane contentStack;
     
-    private DatabaseService databaseService;
+    private AppointmentRepository repository;
+    
+    private final TaskRunner tasks = new TaskRunner();
     
     @FXML
     private void initialize() {
-        // Initialize database service
-        databaseService = DatabaseService.getInstance(
-            Config.SUPABASE_URL,
-            Config.SUPABASE_API_KEY
-        );
+        // The configured store: Supabase, or a local one for single-site clinics
+        repository = Config.getRepository();
     }
     
     @FXML
@@ -82,16 +82,27 @@ public class LoginController {
         }
         
         loginErrorLabel.setText("Authenticating...");
-        
-        System.out.println("Attempting login with username: " + username);
-        
-        // Try to authenticate with Supabase
-        User user = databaseService.authenticateUser(username, password);
-        
-        System.out.println("Authentication result: " + (user != null ? "Success" : "Failed"));
-        
+        loginButton.setDisable(true);
+        
+        LOG.debug(() -> "Attempting login with username: " + username);
+        
+        // Try to authenticate in the background so the window stays responsive
+        tasks.submit("login",
+            context -> context.await(repository.authenticateUserAsync(username, password)),
+            user -> {
+                loginButton.setDisable(false);
+                onAuthenticated(user);
+            },
+            error -> {
+                loginButton.setDisable(false);
+                loginErrorLabel.setText("Login failed: " + error.getMessage());
+                LOG.error("Login failed", error);
+            });
+    }
+    
+    private void onAuthenticated(User user) {
         if (user != null) {
-            System.out.println("User authenticated as: " + user.getUsername() + " with role: " + user.getRole());
+            LOG.info(() -> "User authenticated as: " + user.getUsername() + " with role: " + user.getRole());
             
             // Store the current user in Config
             Config.setCurrentUser(user);
@@ -112,7 +123,7 @@ public class LoginController {
                 currentStage.setTitle("Doctor Appointment System - Dashboard (" + user.getRole() + ")");
                 
             } catch (Exception e) {
-                e.printStackTrace();
+                LOG.error("Error loading dashboard", e);
                 loginErrorLabel.setText("Error loading dashboard: " + e.getMessage());
             }
         } else {
@@ -185,19 +196,25 @@ public class LoginController {
         // Create new user
         User newUser = new User(0, username, password, role, email);
         
-        // Register user
-        boolean success = databaseService.registerUser(newUser);
-        
-        if (success) {
-            // Show success message and switch back to login
-            loginErrorLabel.setText("Registration successful! Please login.");
-            handleBackToLoginButton(null);
-            
-            // Pre-fill the login fields
-            usernameField.setText(username);
-            passwordField.clear();
-        } else {
-            registerErrorLabel.setText("Registration failed. Username may be taken.");
-        }
+        // Register user in the background; hashing and the round trip both stay off the FX thread
+        tasks.submit("register",
+            context -> context.await(repository.registerUserAsync(newUser)),
+            success -> {
+                if (success) {
+                    // Show success message and switch back to login
+                    loginErrorLabel.setText("Registration successful! Please login.");
+                    handleBackToLoginButton(null);
+                    
+                    // Pre-fill the login fields
+                    usernameField.setText(username);
+                    passwordField.clear();
+                } else {
+                    registerErrorLabel.setText("Registration failed. Username may be taken.");
+                }
+            },
+            error -> {
+                registerErrorLabel.setText("Registration failed: " + error.getMessage());
+                LOG.error("Registration failed", error);
+            });
     }
 } 
\ No newline at end of file
@@ -10,6 +10,9 @@ public class Main extends Application {
     
     @Override
     public void start(Stage primaryStage) throws Exception {
+        // Measure the password hashing cost while the login screen is shown, not at the first sign-in
+        PasswordUtils.calibrateInBackground();
+        
         // Load the FXML file from resources directory
         Parent root = FXMLLoader.load(getClass().getResource("/login.fxml"));
         primaryStage.setTitle("Doctor Appointment System");
@@ -17,6 +20,11 @@ public class Main extends Application {
         primaryStage.show();
     }
     
+    @Override
+    public void stop() {
+        Config.closeRepository();
+    }
+    
     public static void main(String[] args) {
         launch(args);
     }
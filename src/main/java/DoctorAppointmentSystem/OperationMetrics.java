@@ -0,0 +1,181 @@
+package DoctorAppointmentSystem;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timers and counters for one data-layer operation, such as reading an
+ * appointment page. Recording is cheap and thread-safe; {@link #reset()}
+ * starts a fresh set, so readers may briefly see a mix of the old and new.
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+    // Everything recorded since the last reset, swapped out as a whole
+    private static final class Counts {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+        final LatencyHistogram bodyRead = new LatencyHistogram();
+        final LongAdder errors = new LongAdder();
+        // Keyed by HTTP status, with 0 for calls that got no response
+        final Map<Integer, LongAdder> errorsByStatus = new ConcurrentHashMap<>();
+        final LongAdder bytesSent = new LongAdder();
+        final LongAdder bytesReceived = new LongAdder();
+        final LongAdder rowsParsed = new LongAdder();
+        final LongAdder bodyReadNanos = new LongAdder();
+    }
+
+    private final String name;
+    private volatile Counts counts = new Counts();
+
+    public OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records one finished call. {@code headersNanos} is the time until
+     * the response headers arrived and {@code status} their HTTP status;
+     * both are 0 if there was no response.
+     */
+    void record(long totalNanos, long headersNanos, int status, boolean failed) {
+        Counts current = counts;
+        current.latency.record(totalNanos);
+        if (status != 0) {
+            current.timeToFirstByte.record(headersNanos);
+            current.bodyRead.record(totalNanos - headersNanos);
+            current.bodyReadNanos.add(totalNanos - headersNanos);
+        }
+        if (failed || status >= 400) {
+            current.errors.increment();
+            current.errorsByStatus.computeIfAbsent(status >= 400 ? status : 0, key -> new LongAdder()).increment();
+        }
+    }
+
+    void addBytesSent(long bytes) {
+        counts.bytesSent.add(bytes);
+    }
+
+    void addBytesReceived(long bytes) {
+        counts.bytesReceived.add(bytes);
+    }
+
+    void addRowsParsed(long rows) {
+        counts.rowsParsed.add(rows);
+    }
+
+    @Override
+    public long getCalls() {
+        return counts.latency.getCount();
+    }
+
+    @Override
+    public long getErrors() {
+        return counts.errors.sum();
+    }
+
+    @Override
+    public String getErrorsByStatus() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<Integer, LongAdder> entry : new TreeMap<>(counts.errorsByStatus).entrySet()) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(entry.getKey() == 0 ? "none" : entry.getKey()).append('=').append(entry.getValue().sum());
+        }
+        return text.toString();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return counts.latency.getMean() / 1e6;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return millis(counts.latency, 50);
+    }
+
+    @Override
+    public double getP95Millis() {
+        return millis(counts.latency, 95);
+    }
+
+    @Override
+    public double getP99Millis() {
+        return millis(counts.latency, 99);
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return counts.latency.getMax() / 1e6;
+    }
+
+    @Override
+    public double getTimeToFirstByteP50Millis() {
+        return millis(counts.timeToFirstByte, 50);
+    }
+
+    @Override
+    public double getTimeToFirstByteP99Millis() {
+        return millis(counts.timeToFirstByte, 99);
+    }
+
+    @Override
+    public double getBodyReadP50Millis() {
+        return millis(counts.bodyRead, 50);
+    }
+
+    @Override
+    public double getBodyReadP99Millis() {
+        return millis(counts.bodyRead, 99);
+    }
+
+    @Override
+    public long getBytesSent() {
+        return counts.bytesSent.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return counts.bytesReceived.sum();
+    }
+
+    @Override
+    public long getRowsParsed() {
+        return counts.rowsParsed.sum();
+    }
+
+    @Override
+    public double getRowsParsedPerSecond() {
+        Counts current = counts;
+        long nanos = current.bodyReadNanos.sum();
+        return nanos == 0 ? 0 : current.rowsParsed.sum() * 1e9 / nanos;
+    }
+
+    @Override
+    public void reset() {
+        counts = new Counts();
+    }
+
+    // One line for the periodic dump
+    public String summary() {
+        String line = String.format(Locale.ROOT,
+                "%s calls=%d errors=%d p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms ttfb.p99=%.1fms body.p99=%.1fms"
+                        + " sent=%dB received=%dB rows=%d (%.0f rows/s)",
+                name, getCalls(), getErrors(), getP50Millis(), getP95Millis(), getP99Millis(), getMaxMillis(),
+                getTimeToFirstByteP99Millis(), getBodyReadP99Millis(), getBytesSent(), getBytesReceived(),
+                getRowsParsed(), getRowsParsedPerSecond());
+        String errorsByStatus = getErrorsByStatus();
+        return errorsByStatus.isEmpty() ? line : line + " statuses={" + errorsByStatus + "}";
+    }
+
+    private static double millis(LatencyHistogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1e6;
+    }
+}
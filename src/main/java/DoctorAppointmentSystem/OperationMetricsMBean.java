@@ -0,0 +1,49 @@
+package DoctorAppointmentSystem;
+
+/**
+ * What JMX shows for one data-layer operation, e.g. in JConsole under
+ * DoctorAppointmentSystem/DatabaseService. Times are in milliseconds and
+ * cover everything since start or the last reset.
+ */
+public interface OperationMetricsMBean {
+
+    long getCalls();
+
+    // Failed calls: HTTP status 400 and above, or no response at all
+    long getErrors();
+
+    // e.g. "404=2, 503=1, none=3"; none counts timeouts and network failures
+    String getErrorsByStatus();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    // From sending the request until the response headers arrive, including any connection setup
+    double getTimeToFirstByteP50Millis();
+
+    double getTimeToFirstByteP99Millis();
+
+    // From the response headers until the body has been read and decoded
+    double getBodyReadP50Millis();
+
+    double getBodyReadP99Millis();
+
+    long getBytesSent();
+
+    // As received, i.e. compressed when the server compressed it
+    long getBytesReceived();
+
+    long getRowsParsed();
+
+    // Rows decoded per second of body-read time
+    double getRowsParsedPerSecond();
+
+    void reset();
+}
@@ -4,33 +4,231 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
 import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 
+/**
+ * Password hashing for the users table. Hashes are PBKDF2-HMAC-SHA256,
+ * stored in password_hash as "pbkdf2-sha256$iterations$hash" next to the
+ * salt in password_salt. The iteration count is chosen on first use so one
+ * hash takes about {@link Config#PASSWORD_HASH_MILLIS} on this machine, and
+ * is kept in each hash, so hashes made elsewhere or earlier still verify.
+ *
+ * Hashes from before this format, a single salted SHA-256, still verify;
+ * {@link #needsRehash} reports them, and weaker iteration counts, so a
+ * successful login can store a fresh hash.
+ *
+ * The async methods run on a small bounded pool, so a burst of logins
+ * queues behind a few cores instead of taking all of them, and fails fast
+ * with a {@link RejectedExecutionException} once the queue is full.
+ */
 public class PasswordUtils {
-    
+    private static final Log LOG = Log.get("passwords");
+
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String FORMAT = "pbkdf2-sha256";
+    private static final int HASH_BITS = 256;
+
+    // Never fewer than this, however slow the host, so a weak machine does not make weak hashes
+    static final int MIN_ITERATIONS = 100_000;
+    private static final int CALIBRATION_ITERATIONS = 5_000;
+    private static final long CALIBRATION_MIN_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long CALIBRATION_SETTLE_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long CALIBRATION_MAX_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    // Logins waiting for a hashing thread before further ones are turned away
+    private static final int QUEUE_CAPACITY = 64;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final AtomicLong rejected = new AtomicLong();
+
+    // Iterations for new hashes; 0 until calibrated. Guarded by the class
+    private static int iterations;
+
+    private static final ThreadPoolExecutor hashing = newHashingPool();
+
+    private static ThreadPoolExecutor newHashingPool() {
+        int threads = Config.PASSWORD_HASH_THREADS > 0
+                ? Config.PASSWORD_HASH_THREADS
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
     // Generate a secure random salt for each user
     public static String generateSalt() {
-        SecureRandom random = new SecureRandom();
         byte[] salt = new byte[16];
-        random.nextBytes(salt);
+        RANDOM.nextBytes(salt);
         return Base64.getEncoder().encodeToString(salt);
     }
-    
-    // Hash a password with a salt using SHA-256
+
+    // Hash a password with a salt at the calibrated cost; blocks for as long as that takes
     public static String hashPassword(String password, String salt) {
+        return hashPassword(password, salt, currentIterations());
+    }
+
+    public static String hashPassword(String password, String salt, int iterations) {
+        return FORMAT + "$" + iterations + "$"
+                + Base64.getEncoder().encodeToString(pbkdf2(password, salt, iterations));
+    }
+
+    // Verify a password against a stored hash and salt, in either format
+    public static boolean verifyPassword(String password, String storedHash, String salt) {
+        byte[] expected;
+        byte[] actual;
+        try {
+            if (storedHash.startsWith(FORMAT + "$")) {
+                String[] parts = storedHash.split("\\$");
+                if (parts.length != 3) {
+                    return false;
+                }
+                expected = Base64.getDecoder().decode(parts[2]);
+                actual = pbkdf2(password, salt, Integer.parseInt(parts[1]));
+            } else {
+                expected = Base64.getDecoder().decode(storedHash);
+                actual = legacyHash(password, salt);
+            }
+        } catch (IllegalArgumentException e) {
+            // Not Base64 or not a number: a corrupt row matches no password
+            return false;
+        }
+        // Compares every byte whatever the first difference, so timing does not leak how much matched
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    // Whether a hash that just verified should be replaced by one at the current cost
+    public static boolean needsRehash(String storedHash) {
+        if (!storedHash.startsWith(FORMAT + "$")) {
+            return true;
+        }
+        String[] parts = storedHash.split("\\$");
+        try {
+            return parts.length != 3 || Integer.parseInt(parts[1]) < currentIterations();
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    // As hashPassword, on the hashing pool
+    public static CompletableFuture<String> hashPasswordAsync(String password, String salt) {
+        return submit(() -> hashPassword(password, salt));
+    }
+
+    // As verifyPassword, on the hashing pool
+    public static CompletableFuture<Boolean> verifyPasswordAsync(String password, String storedHash, String salt) {
+        return submit(() -> verifyPassword(password, storedHash, salt));
+    }
+
+    private static <T> CompletableFuture<T> submit(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, hashing);
+        } catch (RejectedExecutionException e) {
+            // A brute-force burst would otherwise flood the log; report the 1st, 2nd, 4th, 8th... only
+            long count = rejected.incrementAndGet();
+            if (Long.bitCount(count) == 1) {
+                LOG.warn("Password hashing queue is full; " + count + " requests turned away so far");
+            }
+            return CompletableFuture.failedFuture(
+                    new RejectedExecutionException("Too many sign-ins at once, please try again in a moment"));
+        }
+    }
+
+    /**
+     * Settles the cost for new hashes on the hashing pool, ahead of the
+     * first sign-in or registration; they queue behind it rather than
+     * calibrating themselves.
+     */
+    public static void calibrateInBackground() {
+        submit(PasswordUtils::currentIterations);
+    }
+
+    // Iterations for new hashes: Config.PASSWORD_HASH_ITERATIONS, or measured once on first use
+    static synchronized int currentIterations() {
+        if (iterations == 0) {
+            iterations = Config.PASSWORD_HASH_ITERATIONS > 0
+                    ? Config.PASSWORD_HASH_ITERATIONS
+                    : calibrate(Config.PASSWORD_HASH_MILLIS);
+        }
+        return iterations;
+    }
+
+    /**
+     * The iteration count that takes about {@code targetMillis} here,
+     * rounded to a thousand and at least {@link #MIN_ITERATIONS}. Short runs
+     * are repeated until the fastest has not improved for half a second,
+     * since the JIT compiles the hash in stages and timing an early stage
+     * would undercount several times; then one full-length hash checks the
+     * estimate.
+     */
+    static int calibrate(long targetMillis) {
+        String salt = Base64.getEncoder().encodeToString(new byte[16]);
+        long best = Long.MAX_VALUE;
+        long started = System.nanoTime();
+        long improved = started;
+        long now = started;
+        while (now - started < CALIBRATION_MAX_NANOS
+                && (now - started < CALIBRATION_MIN_NANOS || now - improved < CALIBRATION_SETTLE_NANOS)) {
+            pbkdf2("calibration", salt, CALIBRATION_ITERATIONS);
+            long elapsed = System.nanoTime() - now;
+            now += elapsed;
+            // Only a real speed-up counts, not noise of a percent or two
+            if (elapsed < best - best / 50) {
+                improved = now;
+            }
+            best = Math.min(best, elapsed);
+        }
+        long target = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+        long estimate = Math.min(Integer.MAX_VALUE, target * CALIBRATION_ITERATIONS / Math.max(1, best));
+
+        // The fastest short run flatters the machine; one hash at full length corrects the estimate
+        long start = System.nanoTime();
+        pbkdf2("calibration", salt, (int) Math.max(1, estimate));
+        long actual = Math.max(1, System.nanoTime() - start);
+        long wanted = (long) (estimate * ((double) target / actual));
+        int calibrated = (int) Math.max(MIN_ITERATIONS, Math.min(Integer.MAX_VALUE, wanted / 1000 * 1000));
+        LOG.info("Password hashing calibrated to " + calibrated + " iterations for about " + targetMillis + " ms");
+        return calibrated;
+    }
+
+    private static byte[] pbkdf2(String password, String salt, int iterations) {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("Iterations must be positive: " + iterations);
+        }
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt.getBytes(StandardCharsets.UTF_8),
+                iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
+            throw new RuntimeException("Error hashing password", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    // The original format: SHA-256 of the salt followed by the password, kept to verify existing rows
+    private static byte[] legacyHash(String password, String salt) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
             md.update(salt.getBytes(StandardCharsets.UTF_8));
-            byte[] hashedPassword = md.digest(password.getBytes(StandardCharsets.UTF_8));
-            return Base64.getEncoder().encodeToString(hashedPassword);
+            return md.digest(password.getBytes(StandardCharsets.UTF_8));
         } catch (NoSuchAlgorithmException e) {
             throw new RuntimeException("Error hashing password", e);
         }
     }
-    
-    // Verify a password against a stored hash and salt
-    public static boolean verifyPassword(String password, String storedHash, String salt) {
-        String newHash = hashPassword(password, salt);
-        return newHash.equals(storedHash);
-    }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,211 @@
+package DoctorAppointmentSystem;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Builds PostgREST request paths: which columns to select, which rows to
+ * filter on the server, in what order and how many.
+ *
+ * A query is built once, usually into a constant, and then bound to values
+ * for each request. Everything that does not change between requests (the
+ * table, projection, operators and ordering) is rendered when the query is
+ * built, so binding only encodes the values:
+ *
+ * <pre>
+ * static final PostgrestQuery PAGE = PostgrestQuery.from("appointments")
+ *         .select("id", "patient_name").where("id", Op.GT).orderBy("id").limited();
+ * String path = PAGE.bind(afterId, pageSize);  // appointments?select=id,patient_name&amp;id=gt.0&amp;order=id.asc&amp;limit=1000
+ * </pre>
+ *
+ * Values are URL-encoded, and values inside {@code in.(...)} lists are also
+ * quoted when they contain characters PostgREST treats as syntax, so names
+ * with spaces, commas or ampersands reach the server intact.
+ */
+public final class PostgrestQuery {
+
+    public enum Op {
+        EQ("eq"), NEQ("neq"), GT("gt"), GTE("gte"), LT("lt"), LTE("lte"), IN("in"), ILIKE("ilike");
+
+        private final String operator;
+
+        Op(String operator) {
+            this.operator = operator;
+        }
+    }
+
+    private final String table;
+    private final List<String> select = new ArrayList<>();
+    // Rendered query parameters; null entries are placeholders filled in by bind
+    private final List<String> parts = new ArrayList<>();
+    private final List<Op> placeholders = new ArrayList<>();
+    private final List<String> order = new ArrayList<>();
+    private String extra = "";
+    private boolean limited;
+
+    // The fixed text between placeholders, rendered by build()
+    private String[] segments;
+
+    private PostgrestQuery(String table) {
+        this.table = table;
+    }
+
+    public static PostgrestQuery from(String table) {
+        return new PostgrestQuery(table);
+    }
+
+    // Columns to return; without a select PostgREST returns every column
+    public PostgrestQuery select(String... columns) {
+        checkOpen();
+        select.addAll(List.of(columns));
+        return this;
+    }
+
+    // A filter whose value is supplied to bind, in the order the filters were added
+    public PostgrestQuery where(String column, Op op) {
+        checkOpen();
+        parts.add(column + "=" + op.operator + ".");
+        parts.add(null);
+        placeholders.add(op);
+        return this;
+    }
+
+    // A filter with a fixed value
+    public PostgrestQuery where(String column, Op op, Object value) {
+        checkOpen();
+        parts.add(column + "=" + op.operator + "." + encodeValue(op, value));
+        return this;
+    }
+
+    public PostgrestQuery orderBy(String column) {
+        return orderBy(column, true);
+    }
+
+    public PostgrestQuery orderBy(String column, boolean ascending) {
+        checkOpen();
+        order.add(column + (ascending ? ".asc" : ".desc"));
+        return this;
+    }
+
+    // The row limit is supplied to bind, after the filter values
+    public PostgrestQuery limited() {
+        checkOpen();
+        limited = true;
+        return this;
+    }
+
+    // Any other fixed parameter, e.g. on_conflict=client_ref for upserts
+    public PostgrestQuery param(String name, String value) {
+        checkOpen();
+        extra += "&" + name + "=" + encode(value);
+        return this;
+    }
+
+    /**
+     * Renders the path for the given values: one per {@link #where(String, Op)}
+     * placeholder, then the limit if {@link #limited()} was called. Values for
+     * {@code IN} must be collections.
+     */
+    public String bind(Object... values) {
+        String[] fixed = build();
+        int expected = placeholders.size() + (limited ? 1 : 0);
+        if (values.length != expected) {
+            throw new IllegalArgumentException("Expected " + expected + " values for " + table
+                    + " query, got " + values.length);
+        }
+
+        StringBuilder path = new StringBuilder(fixed[0].length() + 32 * values.length);
+        path.append(fixed[0]);
+        for (int i = 0; i < placeholders.size(); i++) {
+            path.append(encodeValue(placeholders.get(i), values[i])).append(fixed[i + 1]);
+        }
+        if (limited) {
+            path.append(path.indexOf("?") < 0 ? '?' : '&').append("limit=").append(((Number) values[values.length - 1]).longValue());
+        }
+        return path.toString();
+    }
+
+    // Renders the fixed text once; the query cannot be changed afterwards
+    private synchronized String[] build() {
+        if (segments != null) {
+            return segments;
+        }
+        List<String> rendered = new ArrayList<>();
+        StringBuilder current = new StringBuilder(table);
+        char separator = '?';
+        if (!select.isEmpty()) {
+            current.append(separator).append("select=").append(String.join(",", select));
+            separator = '&';
+        }
+        for (String part : parts) {
+            if (part == null) {
+                rendered.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(separator).append(part);
+                separator = '&';
+            }
+        }
+        if (!order.isEmpty()) {
+            current.append(separator).append("order=").append(String.join(",", order));
+            separator = '&';
+        }
+        if (!extra.isEmpty()) {
+            current.append(separator).append(extra, 1, extra.length());
+        }
+        rendered.add(current.toString());
+        segments = rendered.toArray(new String[0]);
+        return segments;
+    }
+
+    private synchronized void checkOpen() {
+        if (segments != null) {
+            throw new IllegalStateException("Query has already been used");
+        }
+    }
+
+    private static String encodeValue(Op op, Object value) {
+        if (op != Op.IN) {
+            return encode(String.valueOf(value));
+        }
+        if (!(value instanceof Collection)) {
+            throw new IllegalArgumentException("in. filters take a collection");
+        }
+        StringBuilder list = new StringBuilder("(");
+        for (Object item : (Collection<?>) value) {
+            if (list.length() > 1) {
+                list.append(',');
+            }
+            list.append(quoteListItem(String.valueOf(item)));
+        }
+        return encode(list.append(')').toString());
+    }
+
+    // Items with reserved characters are double-quoted, with quotes and backslashes escaped
+    private static String quoteListItem(String item) {
+        boolean plain = !item.isEmpty();
+        for (int i = 0; i < item.length() && plain; i++) {
+            char c = item.charAt(i);
+            plain = c != ',' && c != '(' && c != ')' && c != '"' && c != '\\' && c != '.' && c != ':'
+                    && !Character.isWhitespace(c);
+        }
+        if (plain) {
+            return item;
+        }
+        return '"' + item.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    // Query string encoding, with spaces as %20 since '+' is not decoded as a space everywhere
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    // The path with {} where values go, for logging
+    @Override
+    public String toString() {
+        return String.join("{}", build()) + (limited ? "&limit={}" : "");
+    }
+}
@@ -0,0 +1,366 @@
+package DoctorAppointmentSystem;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subscription to changes in one table over Supabase Realtime, which speaks
+ * the Phoenix channel protocol on a websocket.
+ *
+ * Change events are treated as a signal only. Events that arrive in a burst
+ * are coalesced into one {@link Listener#onChanges} call per pulse, and the
+ * listener fetches the actual rows with a delta sync. That also makes
+ * reconnecting simple: after a dropped connection the first pulse is marked
+ * as resumed, and the delta sync from the client's high-water mark picks up
+ * whatever happened in between.
+ */
+public class RealtimeChannel {
+    private static final Log LOG = Log.get("realtime");
+
+    // Called on the channel's own thread; hand off to the FX thread before touching the UI
+    public interface Listener {
+        void onChanges(int changeCount, boolean resumed);
+
+        default void onConnectionChanged(boolean connected) {
+        }
+    }
+
+    // Changes arriving within this window after the first one share a pulse
+    private static final long PULSE_MILLIS = 300;
+    private static final long HEARTBEAT_SECONDS = 25;
+    private static final long INITIAL_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final HttpClient httpClient;
+    private final URI uri;
+    private final String topic;
+    private final String table;
+    private final String accessToken;
+    private final Listener listener;
+
+    // Every state change happens on this thread, so the fields below need no locking
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "realtime-" + Integer.toHexString(System.identityHashCode(this)));
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private WebSocket socket;
+    private ScheduledFuture<?> heartbeat;
+    private String pendingHeartbeatRef;
+    private String joinRef;
+    private int nextRef;
+    private int failedAttempts;
+    private boolean joinedBefore;
+    private boolean closed;
+
+    private int pendingChanges;
+    private boolean pendingResume;
+    private boolean pulseScheduled;
+
+    RealtimeChannel(HttpClient httpClient, URI uri, String table, String accessToken, Listener listener) {
+        this.httpClient = httpClient;
+        this.uri = uri;
+        this.table = table;
+        this.topic = "realtime:public:" + table;
+        this.accessToken = accessToken;
+        this.listener = listener;
+    }
+
+    // Websocket address of the Realtime service for a Supabase project URL
+    static URI realtimeUri(String supabaseUrl, String apiKey) {
+        String base = supabaseUrl.replaceFirst("^http", "ws");
+        return URI.create(base + "/realtime/v1/websocket?apikey=" + apiKey + "&vsn=1.0.0");
+    }
+
+    public void start() {
+        runOnChannel(this::connect);
+    }
+
+    // Safe to call more than once; the channel thread stops once the socket has been told to close
+    public void close() {
+        runOnChannel(() -> {
+            closed = true;
+            stopHeartbeat();
+            if (socket != null) {
+                socket.sendClose(WebSocket.NORMAL_CLOSURE, "");
+                socket = null;
+            }
+            scheduler.shutdown();
+        });
+    }
+
+    private void connect() {
+        if (closed) {
+            return;
+        }
+        httpClient.newWebSocketBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .buildAsync(uri, new SocketListener())
+                .whenComplete((webSocket, error) -> {
+                    boolean handedOff = runOnChannel(() -> {
+                        if (error != null) {
+                            LOG.warn("Realtime connection failed: " + error.getMessage());
+                            reconnectLater();
+                        } else if (closed) {
+                            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "");
+                        } else {
+                            opened(webSocket);
+                        }
+                    });
+                    if (!handedOff && webSocket != null) {
+                        // Connected after the channel was closed and its thread stopped; nothing will use it
+                        webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "");
+                    }
+                });
+    }
+
+    /**
+     * Hands work to the channel thread. Returns false, dropping the work, once
+     * close has stopped that thread: callbacks from the HTTP client, such as
+     * the onClose our own sendClose triggers, can still arrive after that.
+     */
+    private boolean runOnChannel(Runnable task) {
+        try {
+            scheduler.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private void opened(WebSocket webSocket) {
+        socket = webSocket;
+        joinRef = nextRef();
+        send(new JsonWriter().beginObject()
+                .name("topic").value(topic)
+                .name("event").value("phx_join")
+                .name("payload").beginObject()
+                    .name("config").beginObject()
+                        .name("postgres_changes").beginArray()
+                            .beginObject()
+                                .name("event").value("*")
+                                .name("schema").value("public")
+                                .name("table").value(table)
+                            .endObject()
+                        .endArray()
+                    .endObject()
+                    .name("access_token").value(accessToken)
+                .endObject()
+                .name("ref").value(joinRef)
+                .name("join_ref").value(joinRef)
+                .endObject().toString());
+
+        pendingHeartbeatRef = null;
+        heartbeat = scheduler.scheduleAtFixedRate(this::sendHeartbeat,
+                HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private void sendHeartbeat() {
+        if (pendingHeartbeatRef != null) {
+            // The last heartbeat was never answered, so the connection is dead even if TCP has not noticed
+            LOG.warn("Realtime heartbeat timed out, reconnecting");
+            socket.abort();
+            connectionLost();
+            return;
+        }
+        pendingHeartbeatRef = nextRef();
+        send(new JsonWriter().beginObject()
+                .name("topic").value("phoenix")
+                .name("event").value("heartbeat")
+                .name("payload").beginObject().endObject()
+                .name("ref").value(pendingHeartbeatRef)
+                .endObject().toString());
+    }
+
+    private void received(String text) {
+        String event = null;
+        String ref = null;
+        String status = null;
+        try (JsonReader reader = new JsonReader(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonReader.Token.NULL) {
+                    reader.nextNull();
+                } else if (name.equals("event")) {
+                    event = reader.nextString();
+                } else if (name.equals("ref")) {
+                    ref = reader.nextString();
+                } else if (name.equals("payload") && reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("status") && reader.peek() == JsonReader.Token.STRING) {
+                            status = reader.nextString();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Ignoring unreadable realtime message: " + e.getMessage());
+            return;
+        }
+
+        if ("phx_reply".equals(event)) {
+            if (ref != null && ref.equals(pendingHeartbeatRef)) {
+                pendingHeartbeatRef = null;
+            } else if (ref != null && ref.equals(joinRef)) {
+                joined("ok".equals(status));
+            }
+        } else if ("postgres_changes".equals(event)
+                || "INSERT".equals(event) || "UPDATE".equals(event) || "DELETE".equals(event)) {
+            // Older Realtime servers name the event after the operation
+            changed();
+        } else if ("phx_error".equals(event) || "phx_close".equals(event)) {
+            LOG.warn("Realtime channel closed by server (" + event + "), reconnecting");
+            socket.abort();
+            connectionLost();
+        }
+    }
+
+    private void joined(boolean ok) {
+        if (!ok) {
+            LOG.warn("Realtime subscription to " + table + " was refused");
+            socket.abort();
+            connectionLost();
+            return;
+        }
+        failedAttempts = 0;
+        listener.onConnectionChanged(true);
+        if (joinedBefore) {
+            // Changes may have been missed while disconnected; the next pulse catches up on them
+            pendingResume = true;
+            schedulePulse();
+        }
+        joinedBefore = true;
+    }
+
+    private void changed() {
+        pendingChanges++;
+        schedulePulse();
+    }
+
+    private void schedulePulse() {
+        if (!pulseScheduled) {
+            pulseScheduled = true;
+            scheduler.schedule(this::pulse, PULSE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void pulse() {
+        int changes = pendingChanges;
+        boolean resumed = pendingResume;
+        pendingChanges = 0;
+        pendingResume = false;
+        pulseScheduled = false;
+        if (!closed) {
+            listener.onChanges(changes, resumed);
+        }
+    }
+
+    private void connectionLost() {
+        if (socket == null) {
+            return;
+        }
+        socket = null;
+        stopHeartbeat();
+        listener.onConnectionChanged(false);
+        reconnectLater();
+    }
+
+    // Exponential backoff with jitter, so clients dropped together do not all return at once
+    private void reconnectLater() {
+        if (closed) {
+            return;
+        }
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << Math.min(failedAttempts, 5));
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        failedAttempts++;
+        scheduler.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void stopHeartbeat() {
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+            heartbeat = null;
+        }
+    }
+
+    private void send(String message) {
+        WebSocket current = socket;
+        if (current == null) {
+            return;
+        }
+        current.sendText(message, true).whenComplete((ignored, error) -> {
+            if (error != null) {
+                runOnChannel(() -> {
+                    if (socket == current) {
+                        connectionLost();
+                    }
+                });
+            }
+        });
+    }
+
+    private String nextRef() {
+        return Integer.toString(++nextRef);
+    }
+
+    private class SocketListener implements WebSocket.Listener {
+        // Messages may arrive in several parts
+        private final StringBuilder message = new StringBuilder();
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            message.append(data);
+            if (last) {
+                String text = message.toString();
+                message.setLength(0);
+                runOnChannel(() -> {
+                    if (socket == webSocket) {
+                        received(text);
+                    }
+                });
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            runOnChannel(() -> {
+                if (socket == webSocket) {
+                    connectionLost();
+                }
+            });
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            LOG.warn("Realtime connection error: " + error.getMessage());
+            runOnChannel(() -> {
+                if (socket == webSocket) {
+                    connectionLost();
+                }
+            });
+        }
+    }
+}
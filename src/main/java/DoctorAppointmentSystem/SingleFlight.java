@@ -0,0 +1,56 @@
+package DoctorAppointmentSystem;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Collapses identical concurrent calls into one. While a call for a key is
+ * in flight, further calls with the same key join it instead of starting
+ * their own; once it completes, the next call starts afresh. Nothing is
+ * cached beyond that.
+ *
+ * Joined callers share the result object, so results must be treated as
+ * read-only. Each caller gets its own future: cancelling it detaches that
+ * caller without cancelling the shared call for the others.
+ */
+public class SingleFlight {
+
+    private final Map<String, CompletableFuture<?>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Runs {@code call}, or joins the one already running under {@code key}.
+     * The key must determine the result type, e.g. the request URL.
+     */
+    @SuppressWarnings("unchecked")
+    public <V> CompletableFuture<V> execute(String key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> started = new CompletableFuture<>();
+        CompletableFuture<V> shared = (CompletableFuture<V>) inFlight.putIfAbsent(key, started);
+        if (shared != null) {
+            return shared.copy();
+        }
+
+        CompletableFuture<V> result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((value, error) -> {
+            // Leave before completing, so a caller reacting to the result starts a fresh call
+            inFlight.remove(key, started);
+            if (error != null) {
+                started.completeExceptionally(error);
+            } else {
+                started.complete(value);
+            }
+        });
+        return started.copy();
+    }
+
+    // Number of distinct calls currently running, for diagnostics
+    public int size() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,176 @@
+package DoctorAppointmentSystem;
+
+import javafx.application.Platform;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Runs blocking work (database calls, disk I/O) off the JavaFX application
+ * thread and hands results back to it.
+ *
+ * Work submitted under a key supersedes any earlier work with the same key:
+ * the old task is cancelled and its results are never delivered. Callbacks
+ * and {@link Context#publish} updates always run on the FX thread.
+ */
+public class TaskRunner {
+
+    // Cheap enough to start one thread per task, so a slow request never queues behind another
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    public interface Work<T> {
+        T run(Context context) throws Exception;
+    }
+
+    // Handed to running work so it can check for cancellation and post UI updates
+    public static class Context {
+        private volatile boolean cancelled;
+        private volatile Future<?> thread;
+        private volatile CompletableFuture<?> pending;
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            Future<?> runningThread = thread;
+            if (runningThread != null) {
+                runningThread.cancel(true);
+            }
+            CompletableFuture<?> pendingFuture = pending;
+            if (pendingFuture != null) {
+                pendingFuture.cancel(true);
+            }
+        }
+
+        // Runs the update on the FX thread unless this work has been cancelled or superseded by then
+        public void publish(Runnable update) {
+            Platform.runLater(() -> {
+                if (!cancelled) {
+                    update.run();
+                }
+            });
+        }
+
+        // Waits for an asynchronous call; cancelling this work also cancels the call
+        public <V> V await(CompletableFuture<V> future) throws Exception {
+            pending = future;
+            if (cancelled) {
+                future.cancel(true);
+            }
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            } finally {
+                pending = null;
+            }
+        }
+    }
+
+    private final Map<String, Context> running = new ConcurrentHashMap<>();
+    // Work submitted without a key, tracked only so cancelAll can reach it
+    private final Set<Context> independent = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Starts work in the background. {@code onSuccess} or {@code onFailure} is
+     * called on the FX thread when it finishes, unless it was cancelled first.
+     *
+     * @param key work with the same key is superseded; null for independent work
+     */
+    public <T> Context submit(String key, Work<T> work, Consumer<T> onSuccess, Consumer<Throwable> onFailure) {
+        Context context = new Context();
+        if (key != null) {
+            Context previous = running.put(key, context);
+            if (previous != null) {
+                previous.cancel();
+            }
+        } else {
+            independent.add(context);
+        }
+
+        context.thread = EXECUTOR.submit(() -> {
+            try {
+                T result = work.run(context);
+                context.publish(() -> onSuccess.accept(result));
+            } catch (Throwable e) {
+                Throwable cause = unwrap(e);
+                if (!context.cancelled && !(cause instanceof CancellationException)
+                        && !(cause instanceof InterruptedException)) {
+                    context.publish(() -> onFailure.accept(cause));
+                }
+            } finally {
+                // Queued behind the callback, so until it has run cancelAll can still stop it
+                Platform.runLater(() -> forget(key, context));
+            }
+        });
+        if (context.cancelled) {
+            context.thread.cancel(true);
+        }
+        return context;
+    }
+
+    public void cancel(String key) {
+        Context context = running.remove(key);
+        if (context != null) {
+            context.cancel();
+        }
+    }
+
+    // Used when the view goes away, e.g. on logout; stops keyed and independent work alike
+    public void cancelAll() {
+        for (String key : running.keySet()) {
+            cancel(key);
+        }
+        for (Context context : independent) {
+            independent.remove(context);
+            context.cancel();
+        }
+    }
+
+    private void forget(String key, Context context) {
+        if (key != null) {
+            running.remove(key, context);
+        } else {
+            independent.remove(context);
+        }
+    }
+
+    // For background work that does not go through a runner, such as a blocking import
+    public static Executor backgroundExecutor() {
+        return EXECUTOR;
+    }
+
+    private static Exception unwrap(Throwable e) {
+        while ((e instanceof ExecutionException || e instanceof CompletionException) && e.getCause() != null) {
+            e = e.getCause();
+        }
+        return e instanceof Exception ? (Exception) e : new RuntimeException(e);
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            // Virtual threads need Java 21; the Gradle build still targets 11, hence the lookup
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "background-task");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
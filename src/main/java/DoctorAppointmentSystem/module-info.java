@@ -1,6 +1,8 @@
 module DoctorAppointmentSystem {
     requires javafx.controls;
     requires javafx.fxml;
+    requires java.net.http;
+    requires java.management;
     
     opens DoctorAppointmentSystem to javafx.fxml;
     exports DoctorAppointmentSystem;
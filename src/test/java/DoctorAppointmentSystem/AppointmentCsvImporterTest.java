@@ -0,0 +1,59 @@
+package DoctorAppointmentSystem;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AppointmentCsvImporterTest {
+
+    private static List<List<String>> readAll(String csv) throws IOException {
+        AppointmentCsvImporter.CsvReader reader = new AppointmentCsvImporter.CsvReader(new StringReader(csv));
+        List<List<String>> records = new ArrayList<>();
+        List<String> record;
+        while ((record = reader.nextRecord()) != null) {
+            records.add(record);
+        }
+        return records;
+    }
+
+    @Test
+    void keepsCrlfInsideQuotedField() throws IOException {
+        List<List<String>> records = readAll("name,notes\r\n\"Ann\",\"first line\r\nsecond line\"\r\nBob,plain\r\n");
+
+        assertEquals(List.of(
+                List.of("name", "notes"),
+                List.of("Ann", "first line\r\nsecond line"),
+                List.of("Bob", "plain")), records);
+    }
+
+    @Test
+    void acceptsCrlfLfAndBareCrBetweenRecords() throws IOException {
+        assertEquals(List.of(List.of("a"), List.of("b"), List.of("c"), List.of("d")), readAll("a\r\nb\nc\rd"));
+    }
+
+    @Test
+    void unescapesDoubledQuotesAndKeepsQuotedCommas() throws IOException {
+        assertEquals(List.of(List.of("say \"hi\"", "Smith, J", "")), readAll("\"say \"\"hi\"\"\",\"Smith, J\",\"\"\r\n"));
+    }
+
+    @Test
+    void keepsEmptyFields() throws IOException {
+        assertEquals(List.of(List.of("", "x", "")), readAll(",x,\n"));
+    }
+
+    @Test
+    void quoteInsideUnquotedFieldIsLiteral() throws IOException {
+        assertEquals(List.of(List.of("5\" tall")), readAll("5\" tall\n"));
+    }
+
+    @Test
+    void rejectsUnterminatedQuotedField() {
+        assertThrows(IOException.class, () -> readAll("\"open\r\nnever closed"));
+    }
+}
@@ -0,0 +1,60 @@
+package DoctorAppointmentSystem;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HyperLogLogTest {
+
+    private static HyperLogLog withDistinct(int count) {
+        HyperLogLog counter = new HyperLogLog();
+        for (int i = 0; i < count; i++) {
+            counter.add("patient-" + i);
+        }
+        return counter;
+    }
+
+    private static void assertWithin(double tolerance, long expected, long actual) {
+        assertEquals(expected, actual, Math.max(1, expected * tolerance),
+                "estimate for " + expected + " distinct values");
+    }
+
+    @Test
+    void emptyCounterEstimatesZero() {
+        assertEquals(0, new HyperLogLog().estimate());
+    }
+
+    @Test
+    void smallRangeIsCountedFromEmptyRegisters() {
+        // Without the linear-counting correction the raw estimate is far off at these sizes
+        assertEquals(1, withDistinct(1).estimate());
+        assertWithin(0.01, 10, withDistinct(10).estimate());
+        assertWithin(0.01, 100, withDistinct(100).estimate());
+        assertWithin(0.01, 1_000, withDistinct(1_000).estimate());
+        assertWithin(0.02, 10_000, withDistinct(10_000).estimate());
+    }
+
+    @Test
+    void estimateStaysCloseAcrossTheSmallRangeCutOver() {
+        // Around the switch from counting empty registers to the raw estimate, at 3 * 16384
+        for (int count = 40_000; count <= 58_000; count += 3_000) {
+            assertWithin(0.03, count, withDistinct(count).estimate());
+        }
+    }
+
+    @Test
+    void largeRangeUsesTheRawEstimate() {
+        assertWithin(0.03, 500_000, withDistinct(500_000).estimate());
+    }
+
+    @Test
+    void duplicatesAreNotCountedAgain() {
+        HyperLogLog counter = withDistinct(5_000);
+        long before = counter.estimate();
+        for (int i = 0; i < 5_000; i++) {
+            counter.add("patient-" + i);
+        }
+
+        assertEquals(before, counter.estimate());
+    }
+}
@@ -0,0 +1,87 @@
+package DoctorAppointmentSystem;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JsonReaderTest {
+
+    // Hands out one character per read, so every escape straddles a buffer refill
+    private static class TrickleReader extends Reader {
+        private final Reader in;
+
+        TrickleReader(String text) {
+            this.in = new StringReader(text);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            return in.read(buffer, offset, Math.min(length, 1));
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static String readString(Reader json) throws IOException {
+        try (JsonReader reader = new JsonReader(json)) {
+            return reader.nextString();
+        }
+    }
+
+    @Test
+    void decodesSimpleEscapes() throws IOException {
+        String json = "\"a\\\"b\\\\c\\/d\\be\\ff\\ng\\rh\\ti\"";
+
+        assertEquals("a\"b\\c/d\be\ff\ng\rh\ti", readString(new StringReader(json)));
+    }
+
+    @Test
+    void decodesUnicodeEscapes() throws IOException {
+        assertEquals("Zoë Ångström", readString(new StringReader("\"Zo\\u00eb \\u00C5ngstr\\u00f6m\"")));
+    }
+
+    @Test
+    void joinsEscapedSurrogatePair() throws IOException {
+        String decoded = readString(new StringReader("\"smile \\ud83d\\ude00\""));
+
+        assertEquals("smile \uD83D\uDE00", decoded);
+        assertEquals(0x1F600, decoded.codePointAt(6));
+    }
+
+    @Test
+    void keepsRawSurrogatePair() throws IOException {
+        assertEquals("\uD83D\uDE00!", readString(new StringReader("\"\uD83D\uDE00!\"")));
+    }
+
+    @Test
+    void decodesEscapesSplitAcrossReads() throws IOException {
+        String json = "\"x\\u00e9\\ud83d\\ude00\\n\\\"y\"";
+
+        assertEquals("x\u00e9\uD83D\uDE00\n\"y", readString(new TrickleReader(json)));
+    }
+
+    @Test
+    void decodesEscapedFieldNames() throws IOException {
+        try (JsonReader reader = new JsonReader(new StringReader("{\"patient\\u005fname\":\"A\\tB\"}"))) {
+            reader.beginObject();
+            assertEquals("patient_name", reader.nextName());
+            assertEquals("A\tB", reader.nextString());
+            reader.endObject();
+        }
+    }
+
+    @Test
+    void rejectsInvalidEscapes() {
+        assertThrows(IOException.class, () -> readString(new StringReader("\"\\x41\"")));
+        assertThrows(IOException.class, () -> readString(new StringReader("\"\\u00g1\"")));
+        assertThrows(IOException.class, () -> readString(new StringReader("\"\\u00")));
+    }
+}
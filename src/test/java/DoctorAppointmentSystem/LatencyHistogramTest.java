@@ -0,0 +1,75 @@
+package DoctorAppointmentSystem;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void smallValuesHaveTheirOwnBucket() {
+        for (long value = 0; value < 256; value++) {
+            assertEquals(value, LatencyHistogram.index(value));
+            assertEquals(value, LatencyHistogram.highestValueAt((int) value));
+        }
+    }
+
+    @Test
+    void firstLogarithmicBucketsAreTwoWide() {
+        assertEquals(256, LatencyHistogram.index(256));
+        assertEquals(256, LatencyHistogram.index(257));
+        assertEquals(257, LatencyHistogram.index(258));
+        assertEquals(257, LatencyHistogram.highestValueAt(256));
+        assertEquals(383, LatencyHistogram.index(511));
+        assertEquals(511, LatencyHistogram.highestValueAt(383));
+        // The next power of two doubles the width
+        assertEquals(384, LatencyHistogram.index(512));
+        assertEquals(384, LatencyHistogram.index(515));
+        assertEquals(385, LatencyHistogram.index(516));
+    }
+
+    @Test
+    void bucketsAreContiguousUpToLongMax() {
+        int last = LatencyHistogram.index(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueAt(last));
+        for (int i = 0; i < last; i++) {
+            long top = LatencyHistogram.highestValueAt(i);
+            assertEquals(i, LatencyHistogram.index(top), "top of bucket " + i);
+            assertEquals(i + 1, LatencyHistogram.index(top + 1), "value after bucket " + i);
+        }
+    }
+
+    @Test
+    void bucketTopIsWithinResolution() {
+        for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+            long top = LatencyHistogram.highestValueAt(LatencyHistogram.index(value));
+            assertTrue(top >= value);
+            assertTrue(top - value <= value / 128, "value " + value + " reported as " + top);
+        }
+    }
+
+    @Test
+    void percentilesUseRankAndAreCappedAtMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        histogram.record(1_000_003);
+
+        assertEquals(51, histogram.getValueAtPercentile(50));
+        assertEquals(100, histogram.getValueAtPercentile(99));
+        assertEquals(1_000_003, histogram.getValueAtPercentile(100));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(0, new LatencyHistogram().getValueAtPercentile(99));
+    }
+
+    @Test
+    void negativeValuesCountAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getValueAtPercentile(100));
+    }
+}
@@ -0,0 +1,70 @@
+package DoctorAppointmentSystem;
+
+import DoctorAppointmentSystem.PostgrestQuery.Op;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PostgrestQueryTest {
+
+    @Test
+    void rendersFixedPartsAndLimit() {
+        PostgrestQuery page = PostgrestQuery.from("appointments")
+                .select("id", "patient_name").where("id", Op.GT).orderBy("id").limited();
+
+        assertEquals("appointments?select=id,patient_name&id=gt.0&order=id.asc&limit=1000", page.bind(0, 1000));
+    }
+
+    @Test
+    void encodesReservedCharactersInValues() {
+        PostgrestQuery byName = PostgrestQuery.from("appointments").where("patient_name", Op.EQ);
+
+        assertEquals("appointments?patient_name=eq.Ann%20%26%20Bob%3D%2B1", byName.bind("Ann & Bob=+1"));
+        assertEquals("appointments?patient_name=eq.Zo%C3%AB", byName.bind("Zoë"));
+    }
+
+    @Test
+    void leavesPlainListItemsUnquoted() {
+        PostgrestQuery byIds = PostgrestQuery.from("appointments").where("id", Op.IN);
+
+        assertEquals("appointments?id=in.%281%2C2%2C3%29", byIds.bind(List.of(1, 2, 3)));
+    }
+
+    @Test
+    void quotesListItemsWithPostgrestSyntax() {
+        PostgrestQuery byNames = PostgrestQuery.from("appointments").where("patient_name", Op.IN);
+
+        // in.("Smith, J","Dr. Who",plain,"(x)")
+        assertEquals("appointments?patient_name=in.%28%22Smith%2C%20J%22%2C%22Dr.%20Who%22%2Cplain%2C%22%28x%29%22%29",
+                byNames.bind(List.of("Smith, J", "Dr. Who", "plain", "(x)")));
+    }
+
+    @Test
+    void escapesQuotesAndBackslashesInListItems() {
+        PostgrestQuery byNames = PostgrestQuery.from("appointments").where("patient_name", Op.IN);
+
+        // in.("say \"hi\"","a\\b","")
+        assertEquals("appointments?patient_name=in.%28%22say%20%5C%22hi%5C%22%22%2C%22a%5C%5Cb%22%2C%22%22%29",
+                byNames.bind(List.of("say \"hi\"", "a\\b", "")));
+    }
+
+    @Test
+    void encodesFixedValuesAndParams() {
+        PostgrestQuery upsert = PostgrestQuery.from("appointments")
+                .where("status", Op.NEQ, "no show").param("on_conflict", "client_ref");
+
+        assertEquals("appointments?status=neq.no%20show&on_conflict=client_ref", upsert.bind());
+    }
+
+    @Test
+    void rejectsWrongValueCountAndNonCollectionLists() {
+        PostgrestQuery byIds = PostgrestQuery.from("appointments").where("id", Op.IN);
+
+        assertThrows(IllegalArgumentException.class, () -> byIds.bind());
+        assertThrows(IllegalArgumentException.class, () -> byIds.bind(1));
+        assertThrows(IllegalStateException.class, () -> byIds.limited());
+    }
+}
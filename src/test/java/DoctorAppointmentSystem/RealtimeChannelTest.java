@@ -0,0 +1,126 @@
+package DoctorAppointmentSystem;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpClient;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RealtimeChannelTest {
+
+    private RealtimeStandInServer server;
+    private RealtimeChannel channel;
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = new RealtimeStandInServer();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        if (channel != null) {
+            channel.close();
+        }
+        server.close();
+    }
+
+    // Records what the channel reports as "changes n resumed" and "connected true|false"
+    private RealtimeChannel open() {
+        channel = new RealtimeChannel(HttpClient.newHttpClient(),
+                RealtimeChannel.realtimeUri(server.getUrl(), "test-key"), "appointments", "token",
+                new RealtimeChannel.Listener() {
+                    @Override
+                    public void onChanges(int changeCount, boolean resumed) {
+                        events.add("changes " + changeCount + " " + resumed);
+                    }
+
+                    @Override
+                    public void onConnectionChanged(boolean connected) {
+                        events.add("connected " + connected);
+                    }
+                });
+        channel.start();
+        return channel;
+    }
+
+    private String nextEvent() throws InterruptedException {
+        return events.poll(5, TimeUnit.SECONDS);
+    }
+
+    private void awaitConnections(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.getConnectionCount() != count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, server.getConnectionCount());
+    }
+
+    @Test
+    void changesInABurstShareOnePulse() throws Exception {
+        open();
+        assertEquals("connected true", nextEvent());
+
+        server.pushChange("INSERT");
+        server.pushChange("UPDATE");
+        server.pushChange("DELETE");
+
+        assertEquals("changes 3 false", nextEvent());
+        assertNull(events.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void reconnectsAfterADroppedConnectionAndMarksTheNextPulseResumed() throws Exception {
+        open();
+        assertEquals("connected true", nextEvent());
+
+        server.dropConnections();
+
+        assertEquals("connected false", nextEvent());
+        assertEquals("connected true", nextEvent());
+        // Nothing was pushed; the pulse only asks the listener to catch up
+        assertEquals("changes 0 true", nextEvent());
+    }
+
+    @Test
+    void refusedJoinIsRetried() throws Exception {
+        server.setRefuseJoins(true);
+        open();
+
+        // The refusal drops the socket, and the channel comes back on its own once joins are accepted
+        assertEquals("connected false", nextEvent());
+        server.setRefuseJoins(false);
+
+        assertEquals("connected true", nextEvent());
+    }
+
+    @Test
+    void closeTwiceClosesTheSocket() throws Exception {
+        open();
+        assertEquals("connected true", nextEvent());
+
+        channel.close();
+        channel.close();
+
+        awaitConnections(0);
+        server.pushChange("INSERT");
+        assertNull(events.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void socketThatConnectsAfterCloseIsClosed() throws Exception {
+        open();
+        // Closed while the handshake may still be under way
+        channel.close();
+
+        Thread.sleep(500);
+        awaitConnections(0);
+        assertNull(events.poll());
+    }
+}
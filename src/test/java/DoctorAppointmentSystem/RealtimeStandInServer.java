@@ -0,0 +1,295 @@
+package DoctorAppointmentSystem;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal local stand-in for the Supabase Realtime websocket, for testing
+ * the push path without a Supabase project. It accepts channel joins and
+ * heartbeats, broadcasts change events on request and can drop every
+ * connection to exercise reconnecting.
+ *
+ * Only what {@link RealtimeChannel} uses is implemented: unfragmented text
+ * frames, ping and close. Point a channel at {@link #getUrl()}.
+ */
+public class RealtimeStandInServer implements AutoCloseable {
+
+    private static final Log LOG = Log.get("realtime");
+
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final Pattern KEY_HEADER = Pattern.compile("(?im)^Sec-WebSocket-Key:\\s*(\\S+)");
+    private static final Pattern TOPIC = Pattern.compile("\"topic\"\\s*:\\s*\"([^\"]*)\"");
+    private static final Pattern REF = Pattern.compile("\"ref\"\\s*:\\s*\"([^\"]*)\"");
+
+    private final ServerSocket serverSocket;
+    private final List<Connection> connections = new CopyOnWriteArrayList<>();
+    private volatile boolean refuseJoins;
+
+    public RealtimeStandInServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::acceptLoop, "realtime-stand-in");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    // Base URL to use in place of the Supabase project URL
+    public String getUrl() {
+        return "http://127.0.0.1:" + serverSocket.getLocalPort();
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    // Reject channel joins from now on, as the server does for a bad access token
+    public void setRefuseJoins(boolean refuseJoins) {
+        this.refuseJoins = refuseJoins;
+    }
+
+    // Sends a change event for the given operation (INSERT, UPDATE or DELETE) to every joined channel
+    public void pushChange(String type) {
+        for (Connection connection : connections) {
+            if (connection.topic != null) {
+                connection.sendText(new JsonWriter().beginObject()
+                        .name("topic").value(connection.topic)
+                        .name("event").value("postgres_changes")
+                        .name("payload").beginObject()
+                            .name("data").beginObject()
+                                .name("schema").value("public")
+                                .name("table").value("appointments")
+                                .name("type").value(type)
+                            .endObject()
+                        .endObject()
+                        .endObject().toString());
+            }
+        }
+    }
+
+    // Closes every connection without a close frame, as a network failure would
+    public void dropConnections() {
+        for (Connection connection : connections) {
+            connection.drop();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        dropConnections();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread reader = new Thread(() -> serve(socket), "realtime-stand-in-connection");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    LOG.warn("Realtime stand-in accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        Connection connection = null;
+        try {
+            InputStream in = socket.getInputStream();
+            String request = readHeaders(in);
+            Matcher key = KEY_HEADER.matcher(request);
+            if (!key.find()) {
+                socket.getOutputStream().write("HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\n\r\n"
+                        .getBytes(StandardCharsets.US_ASCII));
+                socket.close();
+                return;
+            }
+            socket.getOutputStream().write(("HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Upgrade: websocket\r\n"
+                    + "Connection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + acceptKey(key.group(1)) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+
+            connection = new Connection(socket);
+            connections.add(connection);
+            connection.readFrames(in);
+        } catch (IOException e) {
+            // The client went away or the connection was dropped on purpose
+        } finally {
+            if (connection != null) {
+                connections.remove(connection);
+                connection.drop();
+            }
+        }
+    }
+
+    private void handle(Connection connection, String text) {
+        String event = text.contains("\"phx_join\"") ? "phx_join"
+                : text.contains("\"heartbeat\"") ? "heartbeat" : null;
+        if (event == null) {
+            return;
+        }
+        Matcher topicMatcher = TOPIC.matcher(text);
+        Matcher refMatcher = REF.matcher(text);
+        String topic = topicMatcher.find() ? topicMatcher.group(1) : "";
+        String ref = refMatcher.find() ? refMatcher.group(1) : null;
+
+        boolean ok = !(event.equals("phx_join") && refuseJoins);
+        if (event.equals("phx_join") && ok) {
+            connection.topic = topic;
+        }
+        connection.sendText(new JsonWriter().beginObject()
+                .name("topic").value(topic)
+                .name("event").value("phx_reply")
+                .name("payload").beginObject()
+                    .name("status").value(ok ? "ok" : "error")
+                    .name("response").beginObject().endObject()
+                .endObject()
+                .name("ref").value(ref)
+                .endObject().toString());
+    }
+
+    private static String readHeaders(InputStream in) throws IOException {
+        ByteArrayOutputStream headers = new ByteArrayOutputStream();
+        int matched = 0;
+        while (matched < 4) {
+            int b = in.read();
+            if (b < 0) {
+                throw new IOException("Connection closed during handshake");
+            }
+            headers.write(b);
+            matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+        }
+        return headers.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha1.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not available", e);
+        }
+    }
+
+    private class Connection {
+        private final Socket socket;
+        private volatile String topic;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        void readFrames(InputStream in) throws IOException {
+            while (true) {
+                int first = readByte(in);
+                int second = readByte(in);
+                int opcode = first & 0x0F;
+                long length = second & 0x7F;
+                if (length == 126) {
+                    length = (readByte(in) << 8) | readByte(in);
+                } else if (length == 127) {
+                    length = 0;
+                    for (int i = 0; i < 8; i++) {
+                        length = (length << 8) | readByte(in);
+                    }
+                }
+                // Client frames are always masked
+                byte[] mask = new byte[4];
+                if ((second & 0x80) != 0) {
+                    readFully(in, mask);
+                }
+                byte[] payload = new byte[(int) length];
+                readFully(in, payload);
+                for (int i = 0; i < payload.length; i++) {
+                    payload[i] ^= mask[i % 4];
+                }
+
+                switch (opcode) {
+                    case 0x1:
+                        handle(this, new String(payload, StandardCharsets.UTF_8));
+                        break;
+                    case 0x8:
+                        sendFrame(0x8, payload);
+                        return;
+                    case 0x9:
+                        sendFrame(0xA, payload);
+                        break;
+                    default:
+                        // Binary, continuation and pong frames are not used by the channel
+                        break;
+                }
+            }
+        }
+
+        void sendText(String text) {
+            try {
+                sendFrame(0x1, text.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                drop();
+            }
+        }
+
+        // Server frames are unmasked
+        synchronized void sendFrame(int opcode, byte[] payload) throws IOException {
+            OutputStream out = socket.getOutputStream();
+            out.write(0x80 | opcode);
+            if (payload.length < 126) {
+                out.write(payload.length);
+            } else if (payload.length <= 0xFFFF) {
+                out.write(126);
+                out.write(payload.length >>> 8);
+                out.write(payload.length & 0xFF);
+            } else {
+                out.write(127);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    out.write((int) ((long) payload.length >>> shift) & 0xFF);
+                }
+            }
+            out.write(payload);
+            out.flush();
+        }
+
+        void drop() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+        }
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new IOException("Connection closed");
+        }
+        return b;
+    }
+
+    private static void readFully(InputStream in, byte[] buffer) throws IOException {
+        int read = 0;
+        while (read < buffer.length) {
+            int n = in.read(buffer, read, buffer.length - read);
+            if (n < 0) {
+                throw new IOException("Connection closed");
+            }
+            read += n;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+-- Tombstone feed for appointment deletes, so clients can sync incrementally
+-- instead of reloading the whole appointments table to notice removed rows.
+CREATE TABLE IF NOT EXISTS appointment_deletions (
+  id BIGSERIAL PRIMARY KEY,
+  appointment_id INTEGER NOT NULL,
+  deleted_at TIMESTAMPTZ DEFAULT NOW()
+);
+
+CREATE OR REPLACE FUNCTION record_appointment_deletion() RETURNS TRIGGER AS $$
+BEGIN
+  INSERT INTO appointment_deletions (appointment_id) VALUES (OLD.id);
+  RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS appointments_record_deletion ON appointments;
+CREATE TRIGGER appointments_record_deletion
+  AFTER DELETE ON appointments
+  FOR EACH ROW EXECUTE FUNCTION record_appointment_deletion();
+
+-- Tombstones older than any client's last sync can be pruned, e.g.
+-- DELETE FROM appointment_deletions WHERE deleted_at < NOW() - INTERVAL '30 days';
@@ -0,0 +1,4 @@
+-- Publish appointment changes to Supabase Realtime, so open dashboards hear
+-- about inserts and deletes instead of waiting for someone to press Refresh.
+-- The client only treats events as a signal and fetches the rows itself.
+ALTER PUBLICATION supabase_realtime ADD TABLE appointments;
@@ -0,0 +1,5 @@
+-- Idempotency key for bookings sent from a client's local outbox. The client
+-- picks a random UUID when the booking is made and upserts on it, so a batch
+-- that is retried after a timeout never creates the same appointment twice.
+ALTER TABLE appointments ADD COLUMN IF NOT EXISTS client_ref UUID;
+CREATE UNIQUE INDEX IF NOT EXISTS appointments_client_ref_key ON appointments (client_ref);
@@ -0,0 +1,27 @@
+-- Change token for the appointments table: a counter bumped once per
+-- statement that writes to it. Clients read it through
+-- rpc/appointments_change_token before syncing and skip the download when
+-- it has not moved since their last sync.
+CREATE TABLE IF NOT EXISTS table_versions (
+  table_name TEXT PRIMARY KEY,
+  version BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO table_versions (table_name) VALUES ('appointments') ON CONFLICT DO NOTHING;
+
+CREATE OR REPLACE FUNCTION bump_table_version() RETURNS TRIGGER AS $$
+BEGIN
+  UPDATE table_versions SET version = version + 1 WHERE table_name = TG_TABLE_NAME;
+  RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Per statement rather than per row, so a bulk import bumps it once
+DROP TRIGGER IF EXISTS appointments_bump_version ON appointments;
+CREATE TRIGGER appointments_bump_version
+  AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON appointments
+  FOR EACH STATEMENT EXECUTE FUNCTION bump_table_version();
+
+CREATE OR REPLACE FUNCTION appointments_change_token() RETURNS BIGINT AS $$
+  SELECT version FROM table_versions WHERE table_name = 'appointments';
+$$ LANGUAGE sql STABLE;